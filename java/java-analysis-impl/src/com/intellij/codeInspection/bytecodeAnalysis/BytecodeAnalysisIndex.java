@@ -17,6 +17,7 @@ package com.intellij.codeInspection.bytecodeAnalysis;
 
 import com.intellij.ide.highlighter.JavaClassFileType;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.impl.cache.impl.id.IdIndex;
 import com.intellij.util.SystemProperties;
 import com.intellij.util.indexing.*;
 import com.intellij.util.io.DataExternalizer;
@@ -40,7 +41,7 @@ public class BytecodeAnalysisIndex extends FileBasedIndexExtension<Bytes, HEquat
   private static final ClassDataIndexer INDEXER = new ClassDataIndexer();
   private static final HKeyDescriptor KEY_DESCRIPTOR = new HKeyDescriptor();
 
-  private static final int ourInternalVersion = 4;
+  private static final int ourInternalVersion = 5;
   private static boolean ourEnabled = SystemProperties.getBooleanProperty("idea.enable.bytecode.contract.inference", true);
 
   @NotNull
@@ -85,7 +86,17 @@ public class BytecodeAnalysisIndex extends FileBasedIndexExtension<Bytes, HEquat
 
   @Override
   public int getVersion() {
-    return ourInternalVersion + (ourEnabled ? 0xFF : 0);
+    // the flags must not add up to the same version, thus the enabled flag is counted in the second byte
+    return ourInternalVersion + (ourEnabled ? 0xFF00 : 0) + (IdIndex.ourSnapshotMappingsEnabled ? 0xFF : 0);
+  }
+
+  /**
+   * The equations depend on the class file content only, so the same class met in several libraries or projects
+   * (e.g. a jar in several local repositories) is analyzed once.
+   */
+  @Override
+  public boolean hasSnapshotMapping() {
+    return true;
   }
 
   /**
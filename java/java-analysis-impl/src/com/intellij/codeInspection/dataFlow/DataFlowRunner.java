@@ -56,6 +56,10 @@ public class DataFlowRunner {
   // is executed more than this limit times.
   public static final int MAX_STATES_PER_BRANCH = 300;
 
+  // After this many different states processed at an instruction the following ones are widened (see StateMerger#widen)
+  // so that the analysis converges instead of hitting MAX_STATES_PER_BRANCH or the time limit.
+  private static final int WIDEN_AFTER_STATES_PER_BRANCH = 100;
+
   protected DataFlowRunner(PsiElement block) {
     this(block, false);
   }
@@ -150,6 +154,7 @@ public class DataFlowRunner {
 
       MultiMap<BranchingInstruction, DfaMemoryState> processedStates = MultiMap.createSet();
       MultiMap<BranchingInstruction, DfaMemoryState> incomingStates = MultiMap.createSet();
+      StateMerger widening = Registry.is("ide.dfa.state.widening") ? new StateMerger() : null;
 
       long msLimit = shouldCheckTimeLimit() ? Registry.intValue("ide.dfa.time.limit.online") : Registry.intValue("ide.dfa.time.limit.offline");
       WorkingTimeMeasurer measurer = new WorkingTimeMeasurer(msLimit * 1000 * 1000);
@@ -176,6 +181,15 @@ public class DataFlowRunner {
             if (processed.contains(instructionState.getMemoryState())) {
               continue;
             }
+            if (widening != null && processed.size() > WIDEN_AFTER_STATES_PER_BRANCH) {
+              DfaMemoryStateImpl widened = widening.widen((DfaMemoryStateImpl)instructionState.getMemoryState(), processed);
+              if (widened != instructionState.getMemoryState()) {
+                if (processed.contains(widened)) {
+                  continue;
+                }
+                instructionState = new DfaInstructionState(instruction, widened);
+              }
+            }
             if (processed.size() > MAX_STATES_PER_BRANCH) {
               LOG.debug("Too complex because too many different possible states");
               return RunnerResult.TOO_COMPLEX; // Too complex :(
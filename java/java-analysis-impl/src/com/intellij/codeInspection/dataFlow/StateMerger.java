@@ -241,13 +241,63 @@ class StateMerger {
     return state1.getVariableState(var).withNullability(Nullness.UNKNOWN).equals(state2.getVariableState(var).withNullability(Nullness.UNKNOWN));
   }
 
+  /**
+   * Widening for the instructions reached in too many different states: forgets what the given state knows about the variables
+   * whose facts, states or unknown-ness differ in any already processed state with the same stack, so that the subsequent
+   * states reaching the instruction become equal instead of multiplying. The processed states are assumed to stay unchanged,
+   * their facts are cached.
+   */
+  DfaMemoryStateImpl widen(DfaMemoryStateImpl state, Collection<DfaMemoryState> processed) {
+    LinkedHashSet<Fact> facts = collectFacts(state);
+    Object key = state.getSuperficialKey();
+    Set<DfaVariableValue> unstable = ContainerUtil.newLinkedHashSet();
+    for (DfaMemoryState memoryState : processed) {
+      ProgressManager.checkCanceled();
+      DfaMemoryStateImpl other = (DfaMemoryStateImpl)memoryState;
+      if (!key.equals(other.getSuperficialKey())) continue;
+
+      LinkedHashSet<Fact> otherFacts = getFacts(other);
+      addVariablesOfMissingFacts(facts, otherFacts, unstable);
+      addVariablesOfMissingFacts(otherFacts, facts, unstable);
+      for (DfaVariableValue var : ContainerUtil.concat(state.getChangedVariables(), other.getChangedVariables())) {
+        if (!state.getVariableState(var).equals(other.getVariableState(var))) {
+          unstable.add(var);
+        }
+      }
+      if (!state.equalsByUnknownVariables(other)) {
+        addMissing(state.getUnknownVariables(), other.getUnknownVariables(), unstable);
+        addMissing(other.getUnknownVariables(), state.getUnknownVariables(), unstable);
+      }
+    }
+    return unstable.isEmpty() ? state : withUnknownVariables(state, unstable);
+  }
+
+  private static void addVariablesOfMissingFacts(Set<Fact> facts, Set<Fact> anotherFacts, Set<DfaVariableValue> result) {
+    for (Fact fact : facts) {
+      if (!anotherFacts.contains(fact)) {
+        result.add(fact.myVar);
+      }
+    }
+  }
+
+  private static void addMissing(Set<DfaVariableValue> vars, Set<DfaVariableValue> anotherVars, Set<DfaVariableValue> result) {
+    for (DfaVariableValue var : vars) {
+      if (!anotherVars.contains(var)) {
+        result.add(var);
+      }
+    }
+  }
+
   private LinkedHashSet<Fact> getFacts(DfaMemoryStateImpl state) {
     LinkedHashSet<Fact> result = myFacts.get(state);
-    if (result != null) {
-      return result;
+    if (result == null) {
+      myFacts.put(state, result = collectFacts(state));
     }
-    
-    result = ContainerUtil.newLinkedHashSet();
+    return result;
+  }
+
+  private static LinkedHashSet<Fact> collectFacts(DfaMemoryStateImpl state) {
+    LinkedHashSet<Fact> result = ContainerUtil.newLinkedHashSet();
     for (EqClass eqClass : state.getNonTrivialEqClasses()) {
       DfaValue constant = eqClass.findConstant(true);
       List<DfaVariableValue> vars = eqClass.getVariables(false);
@@ -296,7 +346,6 @@ class StateMerger {
       }
     }
 
-    myFacts.put(state, result);
     return result;
   }
 
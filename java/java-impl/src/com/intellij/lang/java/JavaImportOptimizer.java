@@ -16,7 +16,7 @@
 
 package com.intellij.lang.java;
 
-import com.intellij.lang.ImportOptimizer;
+import com.intellij.lang.ConcurrentImportOptimizer;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.Project;
@@ -32,7 +32,7 @@ import org.jetbrains.annotations.NotNull;
 /**
  * @author max
  */
-public class JavaImportOptimizer implements ImportOptimizer {
+public class JavaImportOptimizer implements ConcurrentImportOptimizer {
   private static final Logger LOG = Logger.getInstance("#com.intellij.lang.java.JavaImportOptimizer");
 
   @Override
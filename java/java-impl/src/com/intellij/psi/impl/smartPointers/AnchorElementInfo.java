@@ -69,6 +69,17 @@ class AnchorElementInfo extends SelfElementInfo {
     PsiElement anchor = file.findElementAt(getSyncStartOffset());
     if (anchor == null) return null;
 
+    return restoreFromLeaf(anchor);
+  }
+
+  @Override
+  protected boolean isRestoredFromLeaf() {
+    return stubId == -1 && super.isRestoredFromLeaf();
+  }
+
+  @Nullable
+  @Override
+  protected PsiElement restoreFromLeaf(@NotNull PsiElement anchor) {
     TextRange range = anchor.getTextRange();
     if (range.getStartOffset() != getSyncStartOffset() || range.getEndOffset() != getSyncEndOffset()) return null;
 
@@ -22,22 +22,25 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PsiSearchScopeUtil;
 import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.reference.SoftReference;
 import com.intellij.util.Processor;
 import com.intellij.util.Query;
 import com.intellij.util.QueryExecutor;
 import com.intellij.util.containers.Stack;
+import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.ref.Reference;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author max
@@ -209,6 +212,22 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
       });
     }
 
+    final boolean cacheable = parameters.isCheckInheritance() && parameters.myInheritanceChecker == InheritanceChecker.DEFAULT;
+    final PsiModificationTracker tracker = PsiModificationTracker.SERVICE.getInstance(PsiUtilCore.getProjectInReadAction(baseClass));
+    if (cacheable) {
+      CachedInheritors cached = getCachedInheritors(baseClass, parameters, tracker);
+      if (cached != null) {
+        Boolean result = processCachedInheritors(consumer, cached, searchScope, parameters);
+        if (result != null) return result.booleanValue();
+        // some inheritor couldn't be restored, the search below reports the rest (the query drops the repeated ones)
+      }
+    }
+    final long modificationCount = tracker.getJavaStructureModificationCount();
+    // all the inheritors regardless of the scope and name condition, mapped to whether they inherit the base class directly;
+    // collected to the end even if the consumer stops the search, so that a findFirst() also fills the cache
+    final Map<PsiClass, Boolean> allInheritors = cacheable ? new LinkedHashMap<PsiClass, Boolean>() : null;
+    final boolean[] stopped = {false};
+
     final Ref<PsiClass> currentBase = Ref.create(null);
     final Stack<Pair<Reference<PsiClass>, String>> stack = new Stack<Pair<Reference<PsiClass>, String>>();
     // there are two sets for memory optimization: it's cheaper to hold FQN than PsiClass
@@ -232,14 +251,17 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
                 return;
               }
             }
+            if (allInheritors != null && !allInheritors.containsKey(candidate)) {
+              allInheritors.put(candidate, currentBase.get() == baseClass);
+            }
 
             if (PsiSearchScopeUtil.isInScope(searchScope, candidate)) {
               if (candidate instanceof PsiAnonymousClass) {
-                result.set(consumer.process(candidate));
+                result.set(report(candidate));
               }
               else {
                 final String name = candidate.getName();
-                if (name != null && parameters.getNameCondition().value(name) && !consumer.process(candidate)) result.set(false);
+                if (name != null && parameters.getNameCondition().value(name) && !report(candidate)) result.set(false);
               }
             }
           }
@@ -253,6 +275,13 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
 
         return true;
       }
+
+      private boolean report(@NotNull PsiClass candidate) {
+        if (stopped[0] || consumer.process(candidate)) return true;
+        if (allInheritors == null) return false;
+        stopped[0] = true;
+        return true;
+      }
     };
     stack.push(Pair.create(createHardReference(baseClass), qname));
     final GlobalSearchScope projectScope = GlobalSearchScope.allScope(PsiUtilCore.getProjectInReadAction(baseClass));
@@ -282,7 +311,151 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
       currentBase.set(psiClass);
       if (!DirectClassInheritorsSearch.search(psiClass, projectScope, parameters.isIncludeAnonymous(), false).forEach(processor)) return false;
     }
-    return true;
+    if (allInheritors != null) {
+      cacheInheritors(baseClass, allInheritors, parameters, modificationCount);
+    }
+    return !stopped[0];
+  }
+
+  private static void cacheInheritors(@NotNull final PsiClass baseClass,
+                                      @NotNull final Map<PsiClass, Boolean> inheritors,
+                                      @NotNull final SearchParameters parameters,
+                                      final long modificationCount) {
+    ApplicationManager.getApplication().runReadAction(new Runnable() {
+      @Override
+      public void run() {
+        CachedInheritors existing = SoftReference.dereference(baseClass.getUserData(CACHED_INHERITORS_KEY));
+        if (existing != null && existing.myDeep && !parameters.isCheckDeep() && existing.myModificationCount == modificationCount) {
+          return; // serves this search as well
+        }
+
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(baseClass.getProject());
+        List<CachedInheritor> cached = new ArrayList<CachedInheritor>(inheritors.size());
+        for (Map.Entry<PsiClass, Boolean> entry : inheritors.entrySet()) {
+          PsiClass inheritor = entry.getKey();
+          boolean direct = entry.getValue().booleanValue();
+          String qName = inheritor.getQualifiedName();
+          PsiFile file = inheritor.getContainingFile();
+          VirtualFile vFile = file == null ? null : file.getVirtualFile();
+          if (qName != null && vFile != null && file instanceof PsiClassOwner) {
+            cached.add(new CachedInheritor(vFile, qName, null, direct));
+          }
+          else {
+            cached.add(new CachedInheritor(null, null, pointerManager.createSmartPsiElementPointer(inheritor), direct));
+          }
+        }
+        baseClass.putUserData(CACHED_INHERITORS_KEY, new SoftReference<CachedInheritors>(
+          new CachedInheritors(modificationCount, parameters.isCheckDeep(), parameters.isIncludeAnonymous(), cached)));
+      }
+    });
+  }
+
+  /**
+   * @return the inheritors found by the last complete search which covers the given one (it was as deep and included anonymous classes
+   * if the given one does), if no class structure has changed since then
+   */
+  @Nullable
+  private static CachedInheritors getCachedInheritors(@NotNull final PsiClass baseClass,
+                                                      @NotNull SearchParameters parameters,
+                                                      @NotNull PsiModificationTracker tracker) {
+    CachedInheritors cached = SoftReference.dereference(baseClass.getUserData(CACHED_INHERITORS_KEY));
+    if (cached == null || cached.myModificationCount != tracker.getJavaStructureModificationCount()) return null;
+    if (parameters.isCheckDeep() && !cached.myDeep || parameters.isIncludeAnonymous() && !cached.myIncludeAnonymous) return null;
+    return cached;
+  }
+
+  /**
+   * @return the consumer's result, or null if some inheritor can't be restored any more
+   */
+  @Nullable
+  private static Boolean processCachedInheritors(@NotNull final Processor<PsiClass> consumer,
+                                                 @NotNull CachedInheritors cached,
+                                                 @NotNull final SearchScope searchScope,
+                                                 @NotNull final SearchParameters parameters) {
+    final Map<VirtualFile, PsiFile> files = new THashMap<VirtualFile, PsiFile>();
+    for (final CachedInheritor cachedInheritor : cached.myInheritors) {
+      ProgressIndicatorProvider.checkCanceled();
+      if (!parameters.isCheckDeep() && !cachedInheritor.myDirect) continue;
+      Boolean result = ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+        @Override
+        public Boolean compute() {
+          PsiClass inheritor = cachedInheritor.restore(files, parameters.getClassToProcess().getManager());
+          if (inheritor == null) return null;
+          if (!PsiSearchScopeUtil.isInScope(searchScope, inheritor)) return Boolean.TRUE;
+          if (inheritor instanceof PsiAnonymousClass) {
+            return !parameters.isIncludeAnonymous() || consumer.process(inheritor);
+          }
+          String name = inheritor.getName();
+          return name == null || !parameters.getNameCondition().value(name) || consumer.process(inheritor);
+        }
+      });
+      if (result == null || !result.booleanValue()) return result;
+    }
+    return Boolean.TRUE;
+  }
+
+  private static final Key<Reference<CachedInheritors>> CACHED_INHERITORS_KEY = Key.create("CACHED_INHERITORS");
+
+  private static class CachedInheritors {
+    private final long myModificationCount;
+    private final boolean myDeep;
+    private final boolean myIncludeAnonymous;
+    private final List<CachedInheritor> myInheritors;
+
+    private CachedInheritors(long modificationCount, boolean deep, boolean includeAnonymous, @NotNull List<CachedInheritor> inheritors) {
+      myModificationCount = modificationCount;
+      myDeep = deep;
+      myIncludeAnonymous = includeAnonymous;
+      myInheritors = inheritors;
+    }
+  }
+
+  /**
+   * An inheritor is kept as its file and qualified name, which don't hold its PSI in memory and are restored through the file stubs;
+   * only local and anonymous classes, having no qualified name, are kept as smart pointers.
+   */
+  private static class CachedInheritor {
+    @Nullable private final VirtualFile myFile;
+    @Nullable private final String myQualifiedName;
+    @Nullable private final SmartPsiElementPointer<PsiClass> myPointer;
+    private final boolean myDirect;
+
+    private CachedInheritor(@Nullable VirtualFile file,
+                            @Nullable String qualifiedName,
+                            @Nullable SmartPsiElementPointer<PsiClass> pointer,
+                            boolean direct) {
+      myFile = file;
+      myQualifiedName = qualifiedName;
+      myPointer = pointer;
+      myDirect = direct;
+    }
+
+    @Nullable
+    private PsiClass restore(@NotNull Map<VirtualFile, PsiFile> files, @NotNull PsiManager manager) {
+      if (myPointer != null) return myPointer.getElement();
+      if (myFile == null || myQualifiedName == null || !myFile.isValid()) return null;
+
+      PsiFile file = files.get(myFile);
+      if (file == null) {
+        file = manager.findFile(myFile);
+        if (file == null) return null;
+        files.put(myFile, file);
+      }
+      return file instanceof PsiClassOwner ? findClass(((PsiClassOwner)file).getClasses(), myQualifiedName) : null;
+    }
+
+    @Nullable
+    private static PsiClass findClass(@NotNull PsiClass[] classes, @NotNull String qualifiedName) {
+      for (PsiClass aClass : classes) {
+        String name = aClass.getQualifiedName();
+        if (name == null) continue;
+        if (name.equals(qualifiedName)) return aClass;
+        if (qualifiedName.startsWith(name) && qualifiedName.length() > name.length() && qualifiedName.charAt(name.length()) == '.') {
+          return findClass(aClass.getInnerClasses(), qualifiedName);
+        }
+      }
+      return null;
+    }
   }
 
   private static Reference<PsiClass> createHardReference(final PsiClass candidate) {
@@ -17,20 +17,25 @@ package com.intellij.psi.impl.file.impl;
 
 import com.intellij.ProjectTopics;
 import com.intellij.ide.highlighter.JavaClassFileType;
+import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.*;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileWithId;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.PsiManagerEx;
+import com.intellij.psi.impl.PsiModificationTrackerImpl;
 import com.intellij.psi.impl.file.PsiPackageImpl;
 import com.intellij.psi.impl.java.stubs.index.JavaFullClassNameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiUtilCore;
-import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Query;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
@@ -45,7 +50,10 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class JavaFileManagerImpl implements JavaFileManager, Disposable {
   private static final Logger LOG = Logger.getInstance("#com.intellij.psi.impl.file.impl.JavaFileManagerImpl");
-  private final ConcurrentMap<GlobalSearchScope, PsiClass> myCachedObjectClassMap = ContainerUtil.newConcurrentMap();
+  private final ConcurrentMap<GlobalSearchScope, CachedObjectClass> myCachedObjectClassMap = ContainerUtil.newConcurrentMap();
+  @Nullable private final PsiModificationTrackerImpl myModificationTracker;
+  // JavaFullClassNameIndex contains only Java classes, so changes in files of other languages don't affect the cached classes
+  @Nullable private final ModificationTracker myJavaModificationTracker;
   private final PsiManagerEx myManager;
   private volatile Set<String> myNontrivialPackagePrefixes = null;
   private boolean myDisposed = false;
@@ -61,12 +69,21 @@ public class JavaFileManagerImpl implements JavaFileManager, Disposable {
       }
     });
 
-    myManager.registerRunnableToRunOnChange(new Runnable() {
-      @Override
-      public void run() {
-        myCachedObjectClassMap.clear();
-      }
-    });
+    PsiModificationTracker modificationTracker = myManager.getModificationTracker();
+    if (modificationTracker instanceof PsiModificationTrackerImpl) {
+      myModificationTracker = (PsiModificationTrackerImpl)modificationTracker;
+      myJavaModificationTracker = myModificationTracker.getOutOfCodeBlockModificationTracker(JavaLanguage.INSTANCE);
+    }
+    else {
+      myModificationTracker = null;
+      myJavaModificationTracker = null;
+      myManager.registerRunnableToRunOnChange(new Runnable() {
+        @Override
+        public void run() {
+          myCachedObjectClassMap.clear();
+        }
+      });
+    }
   }
 
   @Override
@@ -124,20 +141,66 @@ public class JavaFileManagerImpl implements JavaFileManager, Disposable {
     LOG.assertTrue(!myDisposed);
 
     if (CommonClassNames.JAVA_LANG_OBJECT.equals(qName)) { // optimization
-      PsiClass cached = myCachedObjectClassMap.get(scope);
-      if (cached == null) {
-        cached = findClassInIndex(qName, scope);
-        if (cached != null) {
-          cached = ConcurrencyUtil.cacheOrGet(myCachedObjectClassMap, scope, cached);
-        }
+      CachedObjectClass cached = myCachedObjectClassMap.get(scope);
+      if (cached != null) {
+        if (cached.isUpToDate() && cached.myClass.isValid()) return cached.myClass;
+        myCachedObjectClassMap.remove(scope, cached);
       }
 
-      return cached;
+      // the stamps are taken before the search, so that a concurrent change makes the found class stale rather than lost
+      ModificationTracker modulesTracker = getModulesTracker(scope);
+      long javaStamp = myJavaModificationTracker == null ? -1 : myJavaModificationTracker.getModificationCount();
+      long modulesStamp = modulesTracker == null ? -1 : modulesTracker.getModificationCount();
+      PsiClass aClass = findClassInIndex(qName, scope);
+      if (aClass != null) {
+        myCachedObjectClassMap.put(scope, new CachedObjectClass(aClass, javaStamp, modulesTracker, modulesStamp));
+      }
+      return aClass;
     }
 
     return findClassInIndex(qName, scope);
   }
 
+  /**
+   * @return tracker of the modules whose sources the scope includes, as only the changes in those and in the files outside of modules
+   * can change the class found in the scope
+   */
+  @Nullable
+  private ModificationTracker getModulesTracker(@NotNull GlobalSearchScope scope) {
+    if (myModificationTracker == null) return null;
+    List<Module> modules = new ArrayList<Module>();
+    for (Module module : ModuleManager.getInstance(myManager.getProject()).getModules()) {
+      if (scope.isSearchInModuleContent(module)) {
+        modules.add(module);
+      }
+    }
+    return myModificationTracker.getOutOfCodeBlockModificationTracker(modules);
+  }
+
+  /**
+   * A cached java.lang.Object is up to date unless there's been a Java change in one of the modules of its scope: that's checked as
+   * "either no Java change anywhere or no change in those modules", so that in a big project neither editing other languages
+   * nor editing Java in unrelated modules drops it.
+   */
+  private class CachedObjectClass {
+    @NotNull private final PsiClass myClass;
+    private final long myJavaStamp;
+    @Nullable private final ModificationTracker myModulesTracker;
+    private final long myModulesStamp;
+
+    private CachedObjectClass(@NotNull PsiClass aClass, long javaStamp, @Nullable ModificationTracker modulesTracker, long modulesStamp) {
+      myClass = aClass;
+      myJavaStamp = javaStamp;
+      myModulesTracker = modulesTracker;
+      myModulesStamp = modulesStamp;
+    }
+
+    private boolean isUpToDate() {
+      if (myJavaModificationTracker == null || myModulesTracker == null) return true; // dropped by the runnable run on any change
+      return myJavaModificationTracker.getModificationCount() == myJavaStamp || myModulesTracker.getModificationCount() == myModulesStamp;
+    }
+  }
+
   @Nullable
   private PsiClass findClassInIndex(String qName, GlobalSearchScope scope) {
     VirtualFile bestFile = null;
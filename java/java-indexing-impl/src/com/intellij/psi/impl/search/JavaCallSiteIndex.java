@@ -0,0 +1,209 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.search;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.lang.java.lexer.JavaLexer;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.impl.source.tree.ElementType;
+import com.intellij.psi.search.DelegatingGlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import gnu.trove.TIntHashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Maps names of methods to the Java files which may reference them. A call is indexed as {@code name/argumentCount};
+ * a method reference, a name in a static import or an annotation attribute name, as well as a call whose arguments
+ * can't be counted reliably by the lexer (e.g. they contain generic type arguments), is indexed by the bare name,
+ * meaning "any number of arguments".
+ * Lets {@link MethodUsagesSearcher} skip the files which call only the overloads of other arities.
+ */
+public class JavaCallSiteIndex extends ScalarIndexExtension<String> {
+  public static final ID<String, Void> INDEX_ID = ID.create("java.call.sites");
+
+  private static final FileBasedIndex.InputFilter INPUT_FILTER = new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+
+  /**
+   * @return a scope which excludes the Java files of the given scope not referencing any of the methods
+   * (the text in them may still be needed for non-code search contexts), or null if the methods can't be looked up in the index
+   */
+  @Nullable
+  static GlobalSearchScope restrictToCallSites(@NotNull GlobalSearchScope scope, @NotNull String name, @NotNull PsiMethod[] methods) {
+    if (!Registry.is("find.usages.java.call.site.index")) return null;
+
+    TIntHashSet argumentCounts = new TIntHashSet();
+    for (PsiMethod method : methods) {
+      if (method.isVarArgs()) return null;
+      argumentCounts.add(method.getParameterList().getParametersCount());
+    }
+
+    final List<String> keys = new ArrayList<String>();
+    keys.add(name);
+    for (int count : argumentCounts.toArray()) {
+      keys.add(callKey(name, count));
+    }
+
+    FileBasedIndex index = FileBasedIndex.getInstance();
+    final Set<VirtualFile> files = new THashSet<VirtualFile>();
+    for (String key : keys) {
+      files.addAll(index.getContainingFiles(INDEX_ID, key, scope));
+    }
+    return new DelegatingGlobalSearchScope(scope, keys) {
+      @Override
+      public boolean contains(@NotNull VirtualFile file) {
+        return super.contains(file) && (file.getFileType() != JavaFileType.INSTANCE || files.contains(file));
+      }
+    };
+  }
+
+  @NotNull
+  private static String callKey(@NotNull String name, int argumentCount) {
+    return name + "/" + argumentCount;
+  }
+
+  @NotNull
+  @Override
+  public ID<String, Void> getName() {
+    return INDEX_ID;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, Void, FileContent> getIndexer() {
+    return new DataIndexer<String, Void, FileContent>() {
+      @NotNull
+      @Override
+      public Map<String, Void> map(@NotNull FileContent inputData) {
+        return collectCallSites(inputData.getContentAsText());
+      }
+    };
+  }
+
+  @NotNull
+  static Map<String, Void> collectCallSites(@NotNull CharSequence text) {
+    Map<String, Void> result = new THashMap<String, Void>();
+    Deque<CallFrame> frames = new ArrayDeque<CallFrame>();
+    JavaLexer lexer = new JavaLexer(LanguageLevel.HIGHEST);
+    lexer.start(text);
+
+    String pendingName = null;
+    boolean pendingReferenceOnly = false;
+    IElementType previous = null;
+    boolean inStaticImport = false;
+    for (IElementType type; (type = lexer.getTokenType()) != null; lexer.advance()) {
+      if (ElementType.JAVA_COMMENT_OR_WHITESPACE_BIT_SET.contains(type)) continue;
+
+      CallFrame top = frames.peek();
+      if (top != null && !isClosingBracket(type)) {
+        top.myHasArguments = true;
+        if (type == JavaTokenType.COMMA) top.myCommas++;
+        else if (type == JavaTokenType.LT) top.myCountUnknown = true;
+      }
+
+      String callName = null;
+      if (pendingName != null) {
+        if (type == JavaTokenType.LPARENTH) {
+          callName = pendingName;
+        }
+        else if (pendingReferenceOnly || inStaticImport || type == JavaTokenType.EQ) {
+          result.put(pendingName, null);
+        }
+        pendingName = null;
+      }
+
+      if (type == JavaTokenType.IDENTIFIER) {
+        pendingName = lexer.getTokenText();
+        pendingReferenceOnly = previous == JavaTokenType.DOUBLE_COLON;
+      }
+      else if (type == JavaTokenType.STATIC_KEYWORD && previous == JavaTokenType.IMPORT_KEYWORD) {
+        inStaticImport = true;
+      }
+      else if (type == JavaTokenType.SEMICOLON) {
+        inStaticImport = false;
+      }
+      else if (type == JavaTokenType.LPARENTH || type == JavaTokenType.LBRACKET || type == JavaTokenType.LBRACE) {
+        frames.push(new CallFrame(callName));
+      }
+      else if (isClosingBracket(type) && top != null) {
+        frames.pop();
+        if (top.myName != null) {
+          result.put(top.myCountUnknown ? top.myName : callKey(top.myName, top.myHasArguments ? top.myCommas + 1 : 0), null);
+        }
+      }
+      previous = type;
+    }
+
+    if (pendingName != null && (pendingReferenceOnly || inStaticImport)) {
+      result.put(pendingName, null);
+    }
+    for (CallFrame frame : frames) {
+      if (frame.myName != null) {
+        result.put(frame.myName, null);
+      }
+    }
+    return result;
+  }
+
+  private static boolean isClosingBracket(IElementType type) {
+    return type == JavaTokenType.RPARENTH || type == JavaTokenType.RBRACKET || type == JavaTokenType.RBRACE;
+  }
+
+  private static class CallFrame {
+    @Nullable private final String myName;
+    private int myCommas;
+    private boolean myHasArguments;
+    private boolean myCountUnknown;
+
+    private CallFrame(@Nullable String name) {
+      myName = name;
+    }
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return INPUT_FILTER;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+}
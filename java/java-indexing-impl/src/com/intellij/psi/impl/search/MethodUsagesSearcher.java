@@ -20,6 +20,7 @@ import com.intellij.openapi.application.QueryExecutorBase;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.SearchRequestCollector;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.UsageSearchContext;
@@ -98,8 +99,18 @@ public class MethodUsagesSearcher extends QueryExecutorBase<PsiReference, Method
         SearchScope restrictedByAccessScope = searchScope.intersectWith(accessScope);
 
         short searchContext = UsageSearchContext.IN_CODE | UsageSearchContext.IN_COMMENTS | UsageSearchContext.IN_FOREIGN_LANGUAGES;
-        collector.searchWord(methodName[0], restrictedByAccessScope, searchContext, true, method,
-                             getTextOccurrenceProcessor(methods, aClass, strictSignatureSearch));
+        MethodTextOccurrenceProcessor processor = getTextOccurrenceProcessor(methods, aClass, strictSignatureSearch);
+        GlobalSearchScope callSiteScope = isConstructor[0] || !(restrictedByAccessScope instanceof GlobalSearchScope) ? null :
+                                          JavaCallSiteIndex.restrictToCallSites((GlobalSearchScope)restrictedByAccessScope, methodName[0], methods);
+        if (callSiteScope != null) {
+          // the Java files not calling the method can still mention it in comments or injected languages
+          GlobalSearchScope noCallSiteScope = ((GlobalSearchScope)restrictedByAccessScope).intersectWith(GlobalSearchScope.notScope(callSiteScope));
+          collector.searchWord(methodName[0], callSiteScope, searchContext, true, method, processor);
+          collector.searchWord(methodName[0], noCallSiteScope, (short)(searchContext & ~UsageSearchContext.IN_CODE), true, method, processor);
+        }
+        else {
+          collector.searchWord(methodName[0], restrictedByAccessScope, searchContext, true, method, processor);
+        }
 
         SimpleAccessorReferenceSearcher.addPropertyAccessUsages(method, restrictedByAccessScope, collector);
       }
@@ -23,7 +23,9 @@ import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.FileIndexFacade;
 import com.intellij.openapi.roots.PackageIndex;
+import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileFilter;
@@ -59,6 +61,13 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
   private volatile PsiElementFinder[] myElementFinders;
   private final PsiConstantEvaluationHelper myConstantEvaluationHelper;
   private volatile SoftReference<ConcurrentMap<String, PsiPackage>> myPackageCache;
+  /**
+   * Packages found by {@link PsiElementFinderImpl}, which are defined by directories and roots only, so there's no need to drop them
+   * on Java structure changes caused by editing Groovy or other class owner files, as {@link #myPackageCache} does.
+   */
+  private volatile SoftReference<ConcurrentMap<String, PsiPackage>> myDirectoryPackageCache;
+  @Nullable private final ModificationTracker myDirectoryPackageTracker;
+  private volatile long myDirectoryPackageStamp = -1;
   private final Project myProject;
   private final JavaFileManager myFileManager;
 
@@ -71,6 +80,9 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
     myConstantEvaluationHelper = new PsiConstantEvaluationHelperImpl();
 
     final PsiModificationTracker modificationTracker = psiManager.getModificationTracker();
+    myDirectoryPackageTracker = modificationTracker instanceof PsiModificationTrackerImpl
+                                ? ((PsiModificationTrackerImpl)modificationTracker).getOutOfCodeBlockModificationTracker(JavaLanguage.INSTANCE)
+                                : null;
 
     if (bus != null) {
       bus.connect().subscribe(PsiModificationTracker.TOPIC, new PsiModificationTracker.Listener() {
@@ -174,12 +186,18 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
 
   @Override
   public PsiPackage findPackage(@NotNull String qualifiedName) {
+    ConcurrentMap<String, PsiPackage> directoryCache = getDirectoryPackageCache();
+    PsiPackage aPackage = directoryCache == null ? null : directoryCache.get(qualifiedName);
+    if (aPackage != null) {
+      return aPackage;
+    }
+
     ConcurrentMap<String, PsiPackage> cache = SoftReference.dereference(myPackageCache);
     if (cache == null) {
       myPackageCache = new SoftReference<ConcurrentMap<String, PsiPackage>>(cache = ContainerUtil.newConcurrentMap());
     }
 
-    PsiPackage aPackage = cache.get(qualifiedName);
+    aPackage = cache.get(qualifiedName);
     if (aPackage != null) {
       return aPackage;
     }
@@ -187,6 +205,9 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
     for (PsiElementFinder finder : filteredFinders()) {
       aPackage = finder.findPackage(qualifiedName);
       if (aPackage != null) {
+        if (directoryCache != null && finder instanceof PsiElementFinderImpl) {
+          return ConcurrencyUtil.cacheOrGet(directoryCache, qualifiedName, aPackage);
+        }
         return ConcurrencyUtil.cacheOrGet(cache, qualifiedName, aPackage);
       }
     }
@@ -194,6 +215,19 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
     return null;
   }
 
+  @Nullable
+  private ConcurrentMap<String, PsiPackage> getDirectoryPackageCache() {
+    if (myDirectoryPackageTracker == null) return null;
+
+    long stamp = myDirectoryPackageTracker.getModificationCount();
+    ConcurrentMap<String, PsiPackage> cache = SoftReference.dereference(myDirectoryPackageCache);
+    if (cache == null || stamp != myDirectoryPackageStamp) {
+      myDirectoryPackageCache = new SoftReference<ConcurrentMap<String, PsiPackage>>(cache = ContainerUtil.newConcurrentMap());
+      myDirectoryPackageStamp = stamp;
+    }
+    return cache;
+  }
+
   @NotNull
   private PsiElementFinder[] filteredFinders() {
     DumbService dumbService = DumbService.getInstance(getProject());
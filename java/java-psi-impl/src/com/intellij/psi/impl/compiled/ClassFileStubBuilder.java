@@ -18,30 +18,41 @@ package com.intellij.psi.impl.compiled;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.openapi.vfs.StandardFileSystems;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.ClassFileViewProvider;
 import com.intellij.psi.compiled.ClassFileDecompilers;
 import com.intellij.psi.stubs.BinaryFileStubBuilder;
 import com.intellij.psi.stubs.PsiFileStub;
 import com.intellij.psi.stubs.StubElement;
+import com.intellij.reference.SoftReference;
+import com.intellij.util.SmartList;
 import com.intellij.util.cls.ClsFormatException;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.indexing.FileContent;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 import static com.intellij.psi.compiled.ClassFileDecompilers.Full;
 
 /**
  * @author max
  */
-public class ClassFileStubBuilder implements BinaryFileStubBuilder {
+public class ClassFileStubBuilder implements BinaryFileStubBuilder.CacheableByContent {
   private static final Logger LOG = Logger.getInstance("#com.intellij.psi.impl.compiled.ClassFileStubBuilder");
 
   public static final int STUB_VERSION = 12;
 
+  private static final Key<SoftReference<InnerClassesGrouping>> INNER_CLASSES_KEY = Key.create("cls.inner.classes.by.outer.name");
+
   @Override
   public boolean acceptsFile(@NotNull VirtualFile file) {
     return true;
@@ -90,6 +101,113 @@ public class ClassFileStubBuilder implements BinaryFileStubBuilder {
     return null;
   }
 
+  /**
+   * Only the stubs of library classes built by {@link ClsFileImpl#buildFileStub} are shared: decompilers and factories may
+   * build stubs depending on the project, and the classes of the project output change too often to be worth caching.
+   */
+  @SuppressWarnings("deprecation")
+  @Override
+  public boolean isCacheable(@NotNull FileContent fileContent) {
+    VirtualFile file = fileContent.getFile();
+    if (file.getParent() == null ||
+        !StandardFileSystems.JAR_PROTOCOL.equals(file.getFileSystem().getProtocol()) ||
+        ClassFileViewProvider.isInnerClass(file)) {
+      return false;
+    }
+
+    if (ClassFileDecompilers.find(file) instanceof Full) return false;
+    byte[] content = fileContent.getContent();
+    for (ClsStubBuilderFactory factory : Extensions.getExtensions(ClsStubBuilderFactory.EP_NAME)) {
+      if (!factory.isInnerClass(file) && factory.canBeProcessed(file, content)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * The stub of a class includes its inner classes, so the contents of {@code Outer$*.class} files are added to the digest.
+   */
+  @Override
+  public boolean updateContentDigest(@NotNull FileContent fileContent, @NotNull MessageDigest digest) {
+    VirtualFile file = fileContent.getFile();
+    VirtualFile dir = file.getParent();
+    if (dir == null) return false;
+
+    try {
+      digest.update(file.getName().getBytes(CharsetToolkit.UTF8_CHARSET));
+      for (VirtualFile innerClass : getInnerClasses(dir, file.getNameWithoutExtension())) {
+        digest.update((byte)0);
+        digest.update(innerClass.getName().getBytes(CharsetToolkit.UTF8_CHARSET));
+        digest.update((byte)0);
+        digest.update(innerClass.contentsToByteArray());
+      }
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Children of a library directory are grouped by the outer class name once, instead of being scanned for every class in it.
+   * The grouping is stamped with the modification count of the directory and rebuilt when its children may have changed.
+   */
+  @NotNull
+  private static List<VirtualFile> getInnerClasses(@NotNull VirtualFile dir, @NotNull String outerName) {
+    long stamp = dir.getModificationCount();
+    InnerClassesGrouping grouping = SoftReference.dereference(dir.getUserData(INNER_CLASSES_KEY));
+    List<VirtualFile> result = grouping == null || grouping.myStamp != stamp ? null : grouping.myInnerClasses.get(outerName);
+    if (grouping == null || grouping.myStamp != stamp || result != null && !allValid(result)) {
+      grouping = new InnerClassesGrouping(stamp, groupByOuterName(dir.getChildren()));
+      dir.putUserData(INNER_CLASSES_KEY, new SoftReference<InnerClassesGrouping>(grouping));
+      result = grouping.myInnerClasses.get(outerName);
+    }
+    return result != null ? result : Collections.<VirtualFile>emptyList();
+  }
+
+  private static class InnerClassesGrouping {
+    private final long myStamp;
+    private final Map<String, List<VirtualFile>> myInnerClasses;
+
+    private InnerClassesGrouping(long stamp, @NotNull Map<String, List<VirtualFile>> innerClasses) {
+      myStamp = stamp;
+      myInnerClasses = innerClasses;
+    }
+  }
+
+  private static boolean allValid(@NotNull List<VirtualFile> files) {
+    for (VirtualFile file : files) {
+      if (!file.isValid()) return false;
+    }
+    return true;
+  }
+
+  @NotNull
+  private static Map<String, List<VirtualFile>> groupByOuterName(@NotNull VirtualFile[] children) {
+    Map<String, List<VirtualFile>> result = ContainerUtil.newHashMap();
+    for (VirtualFile child : children) {
+      String name = child.getName();
+      for (int i = name.indexOf('$'); i > 0; i = name.indexOf('$', i + 1)) {
+        String outerName = name.substring(0, i);
+        List<VirtualFile> innerClasses = result.get(outerName);
+        if (innerClasses == null) {
+          innerClasses = new SmartList<VirtualFile>();
+          result.put(outerName, innerClasses);
+        }
+        innerClasses.add(child);
+      }
+    }
+    for (List<VirtualFile> innerClasses : result.values()) {
+      Collections.sort(innerClasses, new Comparator<VirtualFile>() {
+        @Override
+        public int compare(VirtualFile o1, VirtualFile o2) {
+          return o1.getName().compareTo(o2.getName());
+        }
+      });
+    }
+    return result;
+  }
+
   private static final Comparator<Object> CLASS_NAME_COMPARATOR = new Comparator<Object>() {
     @Override
     public int compare(Object o1, Object o2) {
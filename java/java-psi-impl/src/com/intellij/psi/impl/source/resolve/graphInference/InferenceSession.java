@@ -67,6 +67,12 @@ public class InferenceSession {
 
   private PsiSubstitutor myInferenceSubstitution = PsiSubstitutor.EMPTY;
   private Map<PsiElement, InferenceSession> myNestedSessions = new HashMap<PsiElement, InferenceSession>();
+
+  /**
+   * Resolve results of the nested calls collected by the session: a poly call is resolved both to check that it's a poly expression
+   * and to collect its own nested constraints, and without the cache the work doubles with each level of nesting
+   */
+  private final Map<PsiCallExpression, JavaResolveResult> myResolvedCalls = new HashMap<PsiCallExpression, JavaResolveResult>();
   public void registerNestedSession(InferenceSession session) {
     propagateVariables(session.getInferenceVariables());
     myNestedSessions.put(session.getContext(), session);
@@ -300,7 +306,7 @@ public class InferenceSession {
     }
   }
 
-  private static PsiMethod getCalledMethod(PsiCallExpression arg) {
+  private PsiMethod getCalledMethod(PsiCallExpression arg) {
     final PsiExpressionList argumentList = arg.getArgumentList();
     if (argumentList == null || argumentList.getExpressions().length == 0) {
       return null;
@@ -385,7 +391,23 @@ public class InferenceSession {
     }
   }
 
-  private static JavaResolveResult getMethodResult(final PsiCallExpression callExpression) {
+  private JavaResolveResult getMethodResult(final PsiCallExpression callExpression) {
+    final PsiExpressionList argumentList = callExpression.getArgumentList();
+    if (MethodCandidateInfo.getCurrentMethod(argumentList) != null) {
+      return null;
+    }
+
+    JavaResolveResult result = myResolvedCalls.get(callExpression);
+    if (result == null) {
+      result = resolveMethodResult(callExpression);
+      if (result != null) {
+        myResolvedCalls.put(callExpression, result);
+      }
+    }
+    return result;
+  }
+
+  private static JavaResolveResult resolveMethodResult(final PsiCallExpression callExpression) {
     final PsiExpressionList argumentList = callExpression.getArgumentList();
 
     final PsiLambdaExpression expression = PsiTreeUtil.getParentOfType(argumentList, PsiLambdaExpression.class);
@@ -395,9 +417,7 @@ public class InferenceSession {
         return callExpression.resolveMethodGenerics();
       }
     };
-    MethodCandidateInfo.CurrentCandidateProperties properties = MethodCandidateInfo.getCurrentMethod(argumentList);
-    return properties != null ? null :
-           expression == null || !PsiResolveHelper.ourGraphGuard.currentStack().contains(expression)
+    return expression == null || !PsiResolveHelper.ourGraphGuard.currentStack().contains(expression)
            ? computableResolve.compute()
            : PsiResolveHelper.ourGraphGuard.doPreventingRecursion(expression, false, computableResolve);
   }
@@ -0,0 +1,63 @@
+import java.util.Map;
+
+abstract class DeeplyNestedCollectors<E> {
+
+  Map<String, Map<String, Map<String, Map<String, Map<String, Map<String, Long>>>>>> group() {
+    return collect(groupingBy((E e) -> e.toString(),
+                              groupingBy((E e) -> e.toString(),
+                                         groupingBy((E e) -> e.toString(),
+                                                    groupingBy((E e) -> e.toString(),
+                                                               groupingBy((E e) -> e.toString(),
+                                                                          groupingBy((E e) -> e.toString(), counting())))))));
+  }
+
+  Map<String, Map<String, Map<String, Integer>>> mapAndFinish() {
+    return collect(groupingBy((E e) -> e.toString(),
+                              mapping((E e) -> e.toString(),
+                                      groupingBy((String s) -> s.trim(),
+                                                 collectingAndThen(mapping((String s) -> s.length(),
+                                                                           groupingBy((Integer i) -> i.toString(),
+                                                                                      collectingAndThen(counting(), Long::intValue))),
+                                                                   m -> m)))));
+  }
+
+  Map<String, Map<String, Map<String, Map<String, Long>>>> groupByOverloadedReferences() {
+    return collect(groupingBy(DeeplyNestedCollectors::key,
+                              groupingBy(DeeplyNestedCollectors::key,
+                                         groupingBy(String::valueOf,
+                                                    groupingBy(DeeplyNestedCollectors::key, counting())))));
+  }
+
+  Map<String, Map<String, Map<String, Integer>>> groupByImplicitLambdas() {
+    return collect(groupingBy(e -> e.toString(),
+                              collectingAndThen(groupingBy(e -> String.valueOf(e.hashCode()),
+                                                           collectingAndThen(groupingBy(e -> key(e),
+                                                                                        collectingAndThen(counting(), c -> c.intValue())),
+                                                                             m -> m)),
+                                                m -> m)));
+  }
+
+  static String key(Object o) {
+    return String.valueOf(o);
+  }
+
+  static String key(String s) {
+    return s;
+  }
+
+  static String key(Object o, Object other) {
+    return String.valueOf(other);
+  }
+
+  abstract <R> R collect(Collector<? super E, R> collector);
+  abstract <T, K, D> Collector<T, Map<K, D>> groupingBy(Fn<? super T, ? extends K> classifier, Collector<? super T, D> downstream);
+  abstract <T, U, R> Collector<T, R> mapping(Fn<? super T, ? extends U> mapper, Collector<? super U, R> downstream);
+  abstract <T, R, RR> Collector<T, RR> collectingAndThen(Collector<T, R> downstream, Fn<R, RR> finisher);
+  abstract <T> Collector<T, Long> counting();
+
+  interface Fn<A, B> {
+    B apply(A a);
+  }
+
+  interface Collector<T, R> {}
+}
@@ -0,0 +1,21 @@
+import org.jetbrains.annotations.Nullable;
+
+class Generated {
+  int compute(@Nullable String s, boolean b1, boolean b2, boolean b3, boolean b4, boolean b5, boolean b6, boolean b7, boolean b8, boolean b9, boolean b10, boolean b11, boolean b12, boolean b13, boolean b14) {
+    int x1 = b1 ? 1 : -1;
+    int x2 = b2 ? 2 : -2;
+    int x3 = b3 ? 3 : -3;
+    int x4 = b4 ? 4 : -4;
+    int x5 = b5 ? 5 : -5;
+    int x6 = b6 ? 6 : -6;
+    int x7 = b7 ? 7 : -7;
+    int x8 = b8 ? 8 : -8;
+    int x9 = b9 ? 9 : -9;
+    int x10 = b10 ? 10 : -10;
+    int x11 = b11 ? 11 : -11;
+    int x12 = b12 ? 12 : -12;
+    int x13 = b13 ? 13 : -13;
+    int x14 = b14 ? 14 : -14;
+    return x1 + x2 + x3 + x4 + x5 + x6 + x7 + x8 + x9 + x10 + x11 + x12 + x13 + x14 + <warning descr="Method invocation 's.length()' may produce 'java.lang.NullPointerException'">s.length()</warning>;
+  }
+}
@@ -0,0 +1,7 @@
+public class A {
+  public void foo(int i) {
+  }
+
+  public void foo(int i, int j) {
+  }
+}
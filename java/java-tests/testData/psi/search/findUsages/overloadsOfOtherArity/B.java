@@ -0,0 +1,5 @@
+class B {
+  void bar(A a) {
+    a.foo(1, 2);
+  }
+}
@@ -0,0 +1,8 @@
+/**
+ * {@link A#foo(int)}
+ */
+class C {
+  void bar(A a) {
+    a.foo(2, 1);
+  }
+}
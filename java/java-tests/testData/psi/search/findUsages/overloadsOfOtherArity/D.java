@@ -0,0 +1,7 @@
+import java.util.Collections;
+
+class D {
+  void bar(A a) {
+    a.foo(Collections.<String>emptyList().size());
+  }
+}
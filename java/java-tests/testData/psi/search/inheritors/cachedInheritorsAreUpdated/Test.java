@@ -0,0 +1,3 @@
+interface I {}
+class A implements I {}
+class B extends A {}
@@ -0,0 +1,6 @@
+interface I {}
+class A implements I {
+  static class Inner extends A {}
+  I anonymous = new I() {};
+}
+class B extends A {}
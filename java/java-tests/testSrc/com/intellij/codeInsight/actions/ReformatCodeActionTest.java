@@ -17,6 +17,8 @@ package com.intellij.codeInsight.actions;
 
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.containers.ContainerUtil;
@@ -110,6 +112,29 @@ public class ReformatCodeActionTest extends AbstractLayoutCodeProcessorTest {
     checkFormationAndImportsOptimizationFor(files);
   }
 
+  public void testOptimizeAndReformatInModulePreparingFilesOneByOne() throws IOException {
+    RegistryValue concurrently = Registry.get("layout.code.prepare.files.concurrently");
+    boolean before = concurrently.asBoolean();
+    concurrently.setValue(false);
+    try {
+      Module module = createModuleWithSourceRoot("newModule");
+      VirtualFile srcDir = ModuleRootManager.getInstance(module).getSourceRoots()[0];
+      String[] manyClassNames = new String[AbstractLayoutCodeProcessor.FILES_PER_BATCH * 2 + 1];
+      for (int i = 0; i < manyClassNames.length; i++) {
+        manyClassNames[i] = "Class" + i;
+      }
+      List<PsiFile> files = createTestFiles(srcDir, manyClassNames);
+      injectMockDialogFlags(new MockReformatFileSettings().setOptimizeImports(true));
+
+      performReformatActionOnModule(module, files.subList(0, 1));
+
+      checkFormationAndImportsOptimizationFor(files);
+    }
+    finally {
+      concurrently.setValue(before);
+    }
+  }
+
   private TestFileStructure getThreeLevelDirectoryStructure() throws IOException {
     TestFileStructure fileStructure = new TestFileStructure(getModule(), getTempRootDirectory());
 
@@ -38,6 +38,7 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PsiShortNamesCache;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.SkipSlowTestLocally;
+import com.intellij.util.ThrowableRunnable;
 import com.intellij.util.text.CharArrayUtil;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NonNls;
@@ -111,6 +112,19 @@ public class HighlightStressTest extends LightDaemonAnalyzerTestCase {
     System.out.println(System.currentTimeMillis() - time+"ms");
   }
 
+  public void testThinletWithAllLocalInspections() throws Exception {
+    configureByFile(LightAdvHighlightingTest.BASE_PATH + "/aThinlet.java");
+    doHighlighting();
+
+    PlatformTestUtil.startPerformanceTest("all local inspections on Thinlet", 30000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        DaemonCodeAnalyzer.getInstance(getProject()).restart();
+        doHighlighting();
+      }
+    }).cpuBound().usesAllCPUCores().assertTiming();
+  }
+
   public void _testHugeFile() throws Exception {
     @NonNls String filePath =  "/psi/resolve/Thinlet.java";
     configureByFile(filePath);
@@ -19,6 +19,8 @@ import com.intellij.codeInsight.daemon.LightDaemonAnalyzerTestCase;
 import com.intellij.openapi.projectRoots.JavaSdkVersion;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.testFramework.IdeaTestUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
 import org.jetbrains.annotations.NonNls;
 
 public class GraphInferenceHighlightingTest extends LightDaemonAnalyzerTestCase {
@@ -263,6 +265,16 @@ public class GraphInferenceHighlightingTest extends LightDaemonAnalyzerTestCase
     doTest();
   }
 
+  // six levels of nesting: resolving the nested calls anew on each level would take 2^6 times longer than this
+  public void testDeeplyNestedCollectors() throws Exception {
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 500, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        doTest();
+      }
+    }).cpuBound().assertTiming();
+  }
+
   private void doTest() throws Exception {
     doTest(false);
   }
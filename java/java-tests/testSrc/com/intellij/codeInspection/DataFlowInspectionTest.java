@@ -241,6 +241,7 @@ public class DataFlowInspectionTest extends LightCodeInsightFixtureTestCase {
   public void testManyDisjunctiveFieldAssignmentsInLoopNotComplex() { doTest(); }
   public void testManyContinuesNotComplex() { doTest(); }
   public void testFinallyNotComplex() { doTest(); }
+  public void testManyIndependentConstantsNotComplex() { doTest(); }
   public void testFlushFurtherUnusedVariables() { doTest(); }
   public void testDontFlushVariablesUsedInClosures() { doTest(); }
 
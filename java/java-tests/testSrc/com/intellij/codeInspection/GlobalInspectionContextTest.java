@@ -20,12 +20,24 @@ import com.intellij.analysis.AnalysisScope;
 import com.intellij.codeInsight.CodeInsightTestCase;
 import com.intellij.codeInspection.actions.RunInspectionIntention;
 import com.intellij.codeInspection.ex.*;
+import com.intellij.codeInspection.redundantCast.RedundantCastInspection;
+import com.intellij.codeInspection.reference.RefElement;
+import com.intellij.codeInspection.ui.DefaultInspectionToolPresentation;
 import com.intellij.codeInspection.ui.InspectionToolPresentation;
 import com.intellij.codeInspection.visibility.VisibilityInspection;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
 import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import org.jdom.Element;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * @author Dmitry Avdeev
@@ -74,6 +86,51 @@ public class GlobalInspectionContextTest extends CodeInsightTestCase {
     fail("No disabled tools found: " + Arrays.asList(tools));
   }
 
+  public void testConcurrentlyReportedProblemsAreWrittenToOfflineOutputWhole() throws Exception {
+    configureByFile("Foo.java");
+    LocalInspectionToolWrapper toolWrapper = new LocalInspectionToolWrapper(new RedundantCastInspection());
+    InspectionManagerEx manager = (InspectionManagerEx)InspectionManager.getInstance(getProject());
+    GlobalInspectionContextImpl context =
+      CodeInsightTestFixtureImpl.createGlobalContextForTool(new AnalysisScope(getFile()), getProject(), manager, toolWrapper);
+    final InspectionToolPresentation presentation = context.getPresentation(toolWrapper);
+    final RefElement refElement = context.getRefManager().getReference(getFile());
+    final ProblemDescriptor descriptor =
+      manager.createProblemDescriptor(getFile(), "problem", (LocalQuickFix)null, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, false);
+
+    File outputDir = createTempDirectory();
+    DefaultInspectionToolPresentation.setOutputPath(outputDir.getPath());
+    try {
+      final int problemsPerThread = 50;
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+          @Override
+          public void run() {
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+              @Override
+              public void run() {
+                for (int j = 0; j < problemsPerThread; j++) {
+                  presentation.addProblemElement(refElement, descriptor);
+                }
+              }
+            });
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+
+      File output = new File(outputDir, toolWrapper.getShortName() + ".xml");
+      String text = FileUtil.loadFile(output, CharsetToolkit.UTF8) + "</" + InspectionsBundle.message("inspection.problems") + ">";
+      Element root = JDOMUtil.loadDocument(text).getRootElement();
+      assertEquals(futures.size() * problemsPerThread, root.getChildren().size());
+    }
+    finally {
+      DefaultInspectionToolPresentation.setOutputPath(null);
+    }
+  }
+
   @Override
   public void setUp() throws Exception {
     super.setUp();
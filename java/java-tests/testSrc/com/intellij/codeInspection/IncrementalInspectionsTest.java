@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.openapi.components.PathMacroManager;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.PsiTestCase;
+import org.jdom.Document;
+import org.jdom.Element;
+
+import java.io.File;
+import java.util.*;
+
+public class IncrementalInspectionsTest extends PsiTestCase {
+  public void testChangedFilesAndFilesMentioningThemAreAffected() throws Exception {
+    VirtualFile dir = getTempDir();
+    PsiFile a = createFile(myModule, dir, "A.java", "class A {}");
+    PsiFile b = createFile(myModule, dir, "B.java", "class B { A a; }");
+    PsiFile c = createFile(myModule, dir, "C.java", "class C {}");
+    PsiFile d = createFile(myModule, dir, "D.java", "class D { Deleted deleted; }");
+
+    List<String> changedPaths = Arrays.asList(a.getVirtualFile().getPath(), dir.getPath() + "/Deleted.java");
+    Set<VirtualFile> affected = IncrementalInspections.collectAffectedFiles(getProject(), changedPaths);
+
+    assertEquals(new HashSet<VirtualFile>(Arrays.asList(a.getVirtualFile(), b.getVirtualFile(), d.getVirtualFile())), affected);
+  }
+
+  public void testPreviousResultsAreKeptForFilesNotInspected() throws Exception {
+    VirtualFile dir = getTempDir();
+    PsiFile changed = createFile(myModule, dir, "Changed.java", "class Changed {}");
+    String changedUrl = PathMacroManager.getInstance(getProject()).collapsePath(changed.getVirtualFile().getUrl());
+    String untouchedUrl = "file://$PROJECT_DIR$/Untouched.java";
+
+    File previousDir = createTempDirectory();
+    writeResults(new File(previousDir, "Local.xml"), true,
+                 problem(changedUrl, "old problem of changed file"), problem(untouchedUrl, "problem of untouched file"),
+                 problem(null, "module problem"));
+    writeResults(new File(previousDir, "Global.xml"), false,
+                 problem(changedUrl, "global problem"), problem(null, "global module problem"));
+    writeResults(new File(previousDir, InspectionApplication.DESCRIPTIONS + InspectionApplication.XML_EXTENSION), false,
+                 problem(untouchedUrl, "not a result"));
+
+    File resultsDir = createTempDirectory();
+    writeResults(new File(resultsDir, "Local.xml"), true, problem(changedUrl, "new problem of changed file"));
+
+    List<File> results = new ArrayList<File>();
+    IncrementalInspections.mergePreviousResults(previousDir, resultsDir, getProject(),
+                                                Collections.singletonList(changed.getVirtualFile().getPath()),
+                                                Collections.singleton(changed.getVirtualFile()), results);
+
+    assertEquals(Arrays.asList("new problem of changed file", "problem of untouched file"),
+                 descriptions(new File(resultsDir, "Local.xml")));
+    assertEquals(Arrays.asList("global problem", "global module problem"), descriptions(new File(resultsDir, "Global.xml")));
+    assertFalse(new File(resultsDir, InspectionApplication.DESCRIPTIONS + InspectionApplication.XML_EXTENSION).exists());
+    assertEquals(Collections.singletonList(new File(resultsDir, "Global.xml")), results);
+  }
+
+  private VirtualFile getTempDir() throws Exception {
+    File dir = createTempDirectory();
+    VirtualFile vDir = LocalFileSystem.getInstance().refreshAndFindFileByPath(FileUtil.toSystemIndependentName(dir.getCanonicalPath()));
+    assertNotNull(vDir);
+    return vDir;
+  }
+
+  private static Element problem(String url, String description) {
+    Element problem = new Element("problem");
+    if (url != null) {
+      problem.addContent(new Element("file").setText(url));
+    }
+    problem.addContent(new Element("description").setText(description));
+    return problem;
+  }
+
+  private static void writeResults(File file, boolean localTool, Element... problems) throws Exception {
+    Element root = new Element("problems");
+    root.setAttribute("is_local_tool", Boolean.toString(localTool));
+    for (Element problem : problems) {
+      root.addContent(problem);
+    }
+    JDOMUtil.writeDocument(new Document(root), file, "\n");
+  }
+
+  private static List<String> descriptions(File file) throws Exception {
+    List<String> result = new ArrayList<String>();
+    for (Object o : JDOMUtil.loadDocument(file).getRootElement().getChildren("problem")) {
+      result.add(((Element)o).getChildText("description"));
+    }
+    return result;
+  }
+}
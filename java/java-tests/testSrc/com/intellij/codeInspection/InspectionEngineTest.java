@@ -0,0 +1,153 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.psi.*;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class InspectionEngineTest extends LightCodeInsightFixtureTestCase {
+  private static final String TEXT = "class A {\n" +
+                                     "  int field = 1;\n" +
+                                     "  void foo(String s) {\n" +
+                                     "    // comment\n" +
+                                     "    bar(s.length() + field);\n" +
+                                     "    Runnable r = new Runnable() { public void run() {} };\n" +
+                                     "  }\n" +
+                                     "  void bar(int i) {}\n" +
+                                     "}";
+
+  private final List<PsiElement> myVisited = new ArrayList<PsiElement>();
+
+  public void testVisitorOverridingOnlyVisitElementGetsAllElements() {
+    List<PsiElement> elements = getElements();
+    List<PsiElement> visited = assertSameElementsVisited(elements, new JavaElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        myVisited.add(element);
+      }
+    });
+    assertEquals(elements, visited);
+  }
+
+  public void testPlainVisitorOverridingOnlyVisitElementGetsAllElements() {
+    List<PsiElement> elements = getElements();
+    List<PsiElement> visited = assertSameElementsVisited(elements, new PsiElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        myVisited.add(element);
+      }
+    });
+    assertEquals(elements, visited);
+  }
+
+  public void testDelegatingVisitorGetsAllElements() {
+    final JavaElementVisitor delegate = new JavaElementVisitor() {
+      @Override
+      public void visitMethod(PsiMethod method) {
+        myVisited.add(method);
+      }
+
+      @Override
+      public void visitReferenceExpression(PsiReferenceExpression expression) {
+        myVisited.add(expression);
+      }
+    };
+    List<PsiElement> visited = assertSameElementsVisited(getElements(), new PsiElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        element.accept(delegate);
+      }
+    });
+    assertEquals(7, visited.size());
+  }
+
+  public void testVisitMethodsInheritedFromNonForwardingVisitorAreRespected() {
+    List<PsiElement> visited = assertSameElementsVisited(getElements(), new CallVisitor() {
+      @Override
+      public void visitField(PsiField field) {
+        myVisited.add(field);
+      }
+    });
+    assertEquals(4, visited.size());
+  }
+
+  public void testVisitorOverridingSuperTypeMethodGetsSubTypes() {
+    List<PsiElement> visited = assertSameElementsVisited(getElements(), new JavaElementVisitor() {
+      @Override
+      public void visitExpression(PsiExpression expression) {
+        myVisited.add(expression);
+      }
+    });
+    assertTrue(visited.size() > 0);
+    for (PsiElement element : visited) {
+      assertInstanceOf(element, PsiExpression.class);
+    }
+  }
+
+  private abstract class CallVisitor extends JavaElementVisitor {
+    @Override
+    public void visitCallExpression(PsiCallExpression expression) {
+      myVisited.add(expression);
+    }
+  }
+
+  private List<PsiElement> getElements() {
+    PsiFile file = myFixture.configureByText("A.java", TEXT);
+    final List<PsiElement> elements = new ArrayList<PsiElement>();
+    file.accept(new PsiRecursiveElementWalkingVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        elements.add(element);
+        super.visitElement(element);
+      }
+    });
+    return elements;
+  }
+
+  /**
+   * Visits the elements with and without dispatching to the interested visitors only, checks the visitor reacts on the same elements
+   * and returns them.
+   */
+  private List<PsiElement> assertSameElementsVisited(List<PsiElement> elements, PsiElementVisitor visitor) {
+    List<Pair<PsiElementVisitor, Collection<String>>> visitors =
+      Collections.singletonList(Pair.<PsiElementVisitor, Collection<String>>create(visitor, null));
+    RegistryValue value = Registry.get("inspections.dispatch.to.interested.visitors.only");
+    boolean oldValue = value.asBoolean();
+    try {
+      value.setValue(false);
+      InspectionEngine.acceptElements(elements, visitors);
+      List<PsiElement> visitedByAll = new ArrayList<PsiElement>(myVisited);
+      myVisited.clear();
+
+      value.setValue(true);
+      InspectionEngine.acceptElements(elements, visitors);
+      assertEquals(visitedByAll, myVisited);
+      return visitedByAll;
+    }
+    finally {
+      value.setValue(oldValue);
+      myVisited.clear();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.lang.java.parser;
+
+import com.intellij.lang.java.JavaParserDefinition;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.application.ex.PathManagerEx;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.testFramework.LightIdeaTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class JavaParsingPerformanceTest extends LightIdeaTestCase {
+  // the built tree itself takes a couple of hundred bytes per token (a leaf, its text, a share of the composites), the rest is
+  // garbage of the lexer and the builder, which mustn't grow with the number of tokens
+  private static final int MAX_BYTES_PER_TOKEN = 1024;
+
+  public void testParsingLargeFile() throws Exception {
+    final String text = loadText();
+
+    PlatformTestUtil.startPerformanceTest("Parsing, source file size: " + text.length(), 5000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        parse(text, 10);
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  public void testAllocationPerToken() throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assertTrue("No thread allocation counter in " + threads, threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+    assertTrue("Thread allocation counter is off", allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+    String text = loadText();
+    int tokens = 0;
+    Lexer lexer = JavaParserDefinition.createLexer(LanguageLevel.HIGHEST);
+    for (lexer.start(text); lexer.getTokenType() != null; lexer.advance()) tokens++;
+
+    parse(text, 1);  // fills the per-thread pools of the builder
+    long threadId = Thread.currentThread().getId();
+    long before = allocations.getThreadAllocatedBytes(threadId);
+    parse(text, 10);
+    long bytesPerToken = (allocations.getThreadAllocatedBytes(threadId) - before) / (10L * tokens);
+    assertTrue(bytesPerToken + " bytes allocated per token", bytesPerToken <= MAX_BYTES_PER_TOKEN);
+  }
+
+  private static String loadText() throws IOException {
+    return FileUtil.loadFile(new File(PathManagerEx.getTestDataPath() + "/psi/stub/StubPerformanceTest.java"));
+  }
+
+  private static void parse(String text, int times) {
+    for (int i = 0; i < times; i++) {
+      PsiFile file = createLightFile("test.java", text);
+      // expands all code blocks, each one is parsed by its own builder
+      file.accept(new PsiRecursiveElementWalkingVisitor() { });
+      assertEquals(text.length(), file.getTextLength());
+    }
+  }
+}
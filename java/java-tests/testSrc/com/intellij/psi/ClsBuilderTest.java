@@ -19,18 +19,23 @@ import com.intellij.JavaTestUtil;
 import com.intellij.openapi.roots.OrderRootType;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.impl.compiled.ClassFileStubBuilder;
 import com.intellij.psi.impl.compiled.ClsFileImpl;
 import com.intellij.psi.stubs.PsiFileStub;
 import com.intellij.psi.stubs.StubBase;
 import com.intellij.testFramework.LightIdeaTestCase;
 import com.intellij.util.cls.ClsFormatException;
+import com.intellij.util.indexing.FileContentImpl;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
 
 /**
  * @author max
@@ -83,6 +88,59 @@ public class ClsBuilderTest extends LightIdeaTestCase {
     doTest(clsFile, getTestName(false) + ".txt");
   }
 
+  public void testOnlyTopLevelLibraryClassesAreCacheable() throws Exception {
+    ClassFileStubBuilder builder = new ClassFileStubBuilder();
+    VirtualFile map = findFile("java/util/Map.class");
+    assertTrue(builder.isCacheable(new FileContentImpl(map, map.contentsToByteArray())));
+    VirtualFile entry = findFile("java/util/Map$Entry.class");
+    assertFalse(builder.isCacheable(new FileContentImpl(entry, entry.contentsToByteArray())));
+
+    String clsFilePath = JavaTestUtil.getJavaTestDataPath() + "/psi/cls/stubBuilder/TestSuite.class";
+    VirtualFile clsFile = LocalFileSystem.getInstance().findFileByPath(clsFilePath);
+    assert clsFile != null : clsFilePath;
+    assertFalse(builder.isCacheable(new FileContentImpl(clsFile, clsFile.contentsToByteArray())));
+  }
+
+  public void testContentDigestCoversInnerClasses() throws Exception {
+    VirtualFile map = findFile("java/util/Map.class");
+    MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    assertTrue(new ClassFileStubBuilder().updateContentDigest(new FileContentImpl(map, map.contentsToByteArray()), digest));
+
+    VirtualFile entry = findFile("java/util/Map$Entry.class");
+    MessageDigest expected = MessageDigest.getInstance("SHA-1");
+    expected.update("Map.class".getBytes(CharsetToolkit.UTF8_CHARSET));
+    expected.update((byte)0);
+    expected.update("Map$Entry.class".getBytes(CharsetToolkit.UTF8_CHARSET));
+    expected.update((byte)0);
+    expected.update(entry.contentsToByteArray());
+    assertTrue(Arrays.equals(expected.digest(), digest.digest()));
+  }
+
+  public void testContentDigestNoticesNewInnerClasses() throws Exception {
+    String testDataPath = JavaTestUtil.getJavaTestDataPath() + "/psi/cls/stubBuilder/";
+    File ioDir = FileUtil.createTempDirectory("cls", null);
+    FileUtil.copy(new File(testDataPath + "AnnotatedNonStaticInnerClassConstructor.class"),
+                  new File(ioDir, "AnnotatedNonStaticInnerClassConstructor.class"));
+    VirtualFile dir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(ioDir);
+    assert dir != null : ioDir;
+    VirtualFile outer = dir.findChild("AnnotatedNonStaticInnerClassConstructor.class");
+    assert outer != null : dir;
+    byte[] before = getContentDigest(outer);
+
+    FileUtil.copy(new File(testDataPath + "AnnotatedNonStaticInnerClassConstructor$Inner.class"),
+                  new File(ioDir, "AnnotatedNonStaticInnerClassConstructor$Inner.class"));
+    assertTrue(ioDir.setLastModified(ioDir.lastModified() + 2000));
+    dir.refresh(false, false);
+    assertNotNull(dir.findChild("AnnotatedNonStaticInnerClassConstructor$Inner.class"));
+    assertFalse(Arrays.equals(before, getContentDigest(outer)));
+  }
+
+  private static byte[] getContentDigest(VirtualFile file) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    assertTrue(new ClassFileStubBuilder().updateContentDigest(new FileContentImpl(file, file.contentsToByteArray()), digest));
+    return digest.digest();
+  }
+
   private void doTestFromTestData() throws ClsFormatException, IOException {
     final String clsFilePath = JavaTestUtil.getJavaTestDataPath() + "/psi/cls/stubBuilder/" + getTestName(false) + ".class";
     final VirtualFile clsFile = LocalFileSystem.getInstance().findFileByPath(clsFilePath);
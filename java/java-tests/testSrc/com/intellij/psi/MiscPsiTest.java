@@ -19,16 +19,23 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.roots.LanguageLevelProjectExtension;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.impl.BackgroundChameleonParser;
 import com.intellij.psi.impl.source.PostprocessReformattingAspect;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.impl.source.tree.FileElement;
 import com.intellij.psi.impl.source.tree.LazyParseableElement;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MiscPsiTest extends LightCodeInsightFixtureTestCase {
   @Override
   protected void invokeTestRunnable(@NotNull final Runnable runnable) throws Exception {
@@ -257,6 +264,28 @@ public class MiscPsiTest extends LightCodeInsightFixtureTestCase {
     assertFalse(assertInstanceOf(nestedBlock.getNode(), LazyParseableElement.class).isParsed());
   }
 
+  public void testParseChameleonsInBackground() throws Exception {
+    StringBuilder text = new StringBuilder("class A {\n");
+    for (int i = 0; i < 100; i++) {
+      text.append("  void foo").append(i).append("() { if (true) { int a = ").append(i).append("; } }\n");
+    }
+    text.append("}");
+    PsiJavaFile file = (PsiJavaFile)myFixture.addFileToProject("a.java", text.toString());
+    FileElement fileElement = ((PsiFileImpl)file).calcTreeElement();
+
+    List<LazyParseableElement> chameleons = new ArrayList<LazyParseableElement>();
+    BackgroundChameleonParser.collectUnparsedChameleons(fileElement, chameleons);
+    assertEquals(100, chameleons.size());
+
+    BackgroundChameleonParser.parseChameleons(file, new EmptyProgressIndicator());
+
+    chameleons.clear();
+    BackgroundChameleonParser.collectUnparsedChameleons(fileElement, chameleons);
+    assertEmpty(chameleons);
+    assertEquals(text.toString(), fileElement.getText());
+    assertEquals(1, file.getClasses()[0].getMethods()[42].getBody().getStatements().length);
+  }
+
   public void testTypeCanonicalText() {
     PsiType type = JavaPsiFacade.getElementFactory(getProject()).createTypeFromText("some .unknown. Foo<? extends String>", null);
     assertEquals("some.unknown.Foo<? extends String>", type.getCanonicalText());
@@ -16,15 +16,22 @@
 package com.intellij.psi;
 
 import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.lang.xml.XMLLanguage;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.SelectionModel;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.impl.PsiManagerEx;
+import com.intellij.psi.impl.PsiModificationTrackerImpl;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
 import com.intellij.testFramework.IdeaTestCase;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.SkipSlowTestLocally;
@@ -34,6 +41,7 @@ import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NonNls;
 
 import java.io.IOException;
+import java.util.Collections;
 
 /**
  * @author Dmitry Avdeev
@@ -232,6 +240,44 @@ public class PsiModificationTrackerTest extends LightPlatformCodeInsightFixtureT
     }.execute();
   }
 
+  public void testLanguageAndModuleTrackers() {
+    final PsiJavaFile javaFile = (PsiJavaFile)myFixture.addFileToProject("Foo.java", "class Foo { void foo() {} }");
+    final XmlFile xmlFile = (XmlFile)myFixture.addFileToProject("foo.xml", "<root/>");
+    PsiModificationTrackerImpl tracker = (PsiModificationTrackerImpl)PsiManager.getInstance(getProject()).getModificationTracker();
+    ModificationTracker javaTracker = tracker.getOutOfCodeBlockModificationTracker(JavaLanguage.INSTANCE);
+    ModificationTracker xmlTracker = tracker.getOutOfCodeBlockModificationTracker(XMLLanguage.INSTANCE);
+    ModificationTracker moduleTracker = tracker.getOutOfCodeBlockModificationTracker(myModule);
+    ModificationTracker noModulesTracker = tracker.getOutOfCodeBlockModificationTracker(Collections.<Module>emptyList());
+
+    long javaCount = javaTracker.getModificationCount();
+    long xmlCount = xmlTracker.getModificationCount();
+    long moduleCount = moduleTracker.getModificationCount();
+    long noModulesCount = noModulesTracker.getModificationCount();
+    new WriteCommandAction.Simple(getProject()) {
+      @Override
+      protected void run() throws Throwable {
+        XmlTag root = xmlFile.getRootTag();
+        assertNotNull(root);
+        root.setAttribute("a", "b");
+      }
+    }.execute();
+    assertEquals(javaCount, javaTracker.getModificationCount());
+    assertFalse(xmlCount == xmlTracker.getModificationCount());
+    assertFalse(moduleCount == moduleTracker.getModificationCount());
+    assertEquals(noModulesCount, noModulesTracker.getModificationCount());
+
+    xmlCount = xmlTracker.getModificationCount();
+    new WriteCommandAction.Simple(getProject()) {
+      @Override
+      protected void run() throws Throwable {
+        PsiClass aClass = javaFile.getClasses()[0];
+        aClass.add(JavaPsiFacade.getElementFactory(getProject()).createMethodFromText("void bar() {}", aClass));
+      }
+    }.execute();
+    assertFalse(javaCount == javaTracker.getModificationCount());
+    assertEquals(xmlCount, xmlTracker.getModificationCount());
+  }
+
   public void testClassShouldNotDisappearWithoutEvents() throws IOException {
     new WriteCommandAction.Simple(getProject()) {
       @Override
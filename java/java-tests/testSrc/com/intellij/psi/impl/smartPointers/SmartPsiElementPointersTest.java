@@ -42,12 +42,16 @@ import com.intellij.testFramework.PlatformTestCase;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.PsiTestUtil;
 import com.intellij.util.FileContentUtil;
+import com.intellij.util.ThrowableRunnable;
 import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Assert;
 
 import java.io.IOException;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 @PlatformTestCase.WrapInCommand
@@ -469,4 +473,81 @@ public class SmartPsiElementPointersTest extends CodeInsightTestCase {
     assertEquals(range1.shiftRight(1), pointer1.getRange());
     assertEquals(range2.shiftRight(1), pointer2.getRange());
   }
+
+  public void testPointersRestoredInBatchAfterReparse() throws IOException {
+    VirtualFile vfile = createFileWithManyStatements(100);
+    PsiFile file = getPsiManager().findFile(vfile);
+    assertNotNull(file);
+    List<PsiElement> elements = new ArrayList<PsiElement>();
+    elements.addAll(PsiTreeUtil.findChildrenOfType(file, PsiMethodCallExpression.class));
+    elements.addAll(PsiTreeUtil.findChildrenOfType(file, PsiLocalVariable.class));
+    List<SmartPsiElementPointer> pointers = createPointers(elements);
+    List<TextRange> ranges = new ArrayList<TextRange>();
+    for (PsiElement element : elements) {
+      ranges.add(element.getTextRange());
+    }
+
+    Document document = PsiDocumentManager.getInstance(myProject).getDocument(file);
+    assertNotNull(document);
+    document.insertString(0, " ");
+    PsiDocumentManager.getInstance(myProject).commitAllDocuments();
+    FileContentUtil.reparseFiles(myProject, Collections.singleton(vfile), true);
+
+    for (int i = 0; i < elements.size(); i++) {
+      PsiElement element = elements.get(i);
+      assertFalse(element.isValid());
+      PsiElement restored = pointers.get(i).getElement();
+      assertNotNull(restored);
+      assertTrue(restored.isValid());
+      assertSame(element.getClass(), restored.getClass());
+      assertEquals(ranges.get(i).shiftRight(1), restored.getTextRange());
+    }
+  }
+
+  public void testRestoreManyPointersPerformance() throws IOException {
+    final VirtualFile vfile = createFileWithManyStatements(5000);
+    PsiFile file = getPsiManager().findFile(vfile);
+    assertNotNull(file);
+    List<PsiElement> elements = new ArrayList<PsiElement>();
+    elements.addAll(PsiTreeUtil.findChildrenOfType(file, PsiMethodCallExpression.class));
+    elements.addAll(PsiTreeUtil.findChildrenOfType(file, PsiLocalVariable.class));
+    assertEquals(10000, elements.size());
+    final List<SmartPsiElementPointer> pointers = createPointers(elements);
+
+    PlatformTestUtil.startPerformanceTest("restore 10000 pointers", 300, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        for (SmartPsiElementPointer pointer : pointers) {
+          assertNotNull(pointer.getElement());
+        }
+      }
+    }).setup(new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        FileContentUtil.reparseFiles(myProject, Collections.singleton(vfile), true);
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  @NotNull
+  private VirtualFile createFileWithManyStatements(int count) throws IOException {
+    StringBuilder text = new StringBuilder("class X { void foo(int i) {\n");
+    for (int i = 0; i < count; i++) {
+      text.append("  int v").append(i).append(" = ").append(i).append("; foo(v").append(i).append(");\n");
+    }
+    text.append("}}");
+    VirtualFile vfile = myRoot.createChildData(this, "X.java");
+    VfsUtil.saveText(vfile, text.toString());
+    return vfile;
+  }
+
+  @NotNull
+  private List<SmartPsiElementPointer> createPointers(@NotNull List<PsiElement> elements) {
+    SmartPointerManager manager = SmartPointerManager.getInstance(myProject);
+    List<SmartPsiElementPointer> pointers = new ArrayList<SmartPsiElementPointer>();
+    for (PsiElement element : elements) {
+      pointers.add(manager.createSmartPsiElementPointer(element));
+    }
+    return pointers;
+  }
 }
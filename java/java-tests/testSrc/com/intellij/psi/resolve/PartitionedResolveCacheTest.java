@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.resolve;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.resolve.ResolveCache;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+public class PartitionedResolveCacheTest extends LightCodeInsightFixtureTestCase {
+  private boolean myOldValue;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myOldValue = Registry.is("resolve.cache.partitioned");
+    Registry.get("resolve.cache.partitioned").setValue(true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Registry.get("resolve.cache.partitioned").setValue(myOldValue);
+    super.tearDown();
+  }
+
+  public void testChangeInsideCodeBlockKeepsResultsOfOtherFiles() {
+    final PsiClass a = myFixture.addClass("public class A { public void foo() { int x = 0; } }");
+    myFixture.configureByText("B.java", "class B { void bar(A a) { a.f<caret>oo(); } }");
+    PsiReferenceExpression ref = (PsiReferenceExpression)myFixture.getFile().findReferenceAt(myFixture.getCaretOffset());
+    assertNotNull(ref);
+
+    ResolveCache cache = ResolveCache.getInstance(getProject());
+    assertEquals(a.getMethods()[0], ref.resolve());
+    assertNotNull(cache.getCachedResults(ref, true, false, true));
+
+    final PsiElementFactory factory = JavaPsiFacade.getElementFactory(getProject());
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        PsiCodeBlock body = a.getMethods()[0].getBody();
+        assertNotNull(body);
+        body.add(factory.createStatementFromText("x++;", body));
+      }
+    });
+    assertNotNull(cache.getCachedResults(ref, true, false, true));
+
+    long hits = cache.getHitCount();
+    assertEquals(a.getMethods()[0], ref.resolve());
+    assertTrue(cache.getHitCount() > hits);
+
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        a.add(factory.createMethodFromText("void foo(int i) {}", a));
+      }
+    });
+    assertNull(cache.getCachedResults(ref, true, false, true));
+  }
+
+  public void testChangeInsideCodeBlockDropsResultsOfTheSameFile() {
+    myFixture.configureByText("B.java", "class B { void foo() {} void bar() { f<caret>oo(); } }");
+    PsiReferenceExpression ref = (PsiReferenceExpression)myFixture.getFile().findReferenceAt(myFixture.getCaretOffset());
+    assertNotNull(ref);
+    final PsiMethod bar = ((PsiJavaFile)myFixture.getFile()).getClasses()[0].getMethods()[1];
+
+    ResolveCache cache = ResolveCache.getInstance(getProject());
+    assertNotNull(ref.resolve());
+    assertNotNull(cache.getCachedResults(ref, true, false, true));
+
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        PsiCodeBlock body = bar.getBody();
+        assertNotNull(body);
+        body.add(JavaPsiFacade.getElementFactory(getProject()).createStatementFromText("int x = 0;", body));
+      }
+    });
+    assertNull(cache.getCachedResults(ref, true, false, true));
+  }
+
+  public void testDropResolveCachesDropsAllPartitions() {
+    myFixture.configureByText("B.java", "class B { void foo() {} void bar() { f<caret>oo(); } }");
+    PsiReferenceExpression ref = (PsiReferenceExpression)myFixture.getFile().findReferenceAt(myFixture.getCaretOffset());
+    assertNotNull(ref);
+
+    ResolveCache cache = ResolveCache.getInstance(getProject());
+    assertNotNull(ref.resolve());
+    assertNotNull(cache.getCachedResults(ref, true, false, true));
+
+    getPsiManager().dropResolveCaches();
+    assertNull(cache.getCachedResults(ref, true, false, true));
+  }
+}
@@ -25,7 +25,9 @@ import com.intellij.openapi.module.ModifiableModuleModel;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.StdModuleTypes;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
+import com.intellij.psi.impl.search.JavaCallSiteIndex;
 import com.intellij.psi.search.searches.MethodReferencesSearch;
 import com.intellij.psi.search.searches.OverridingMethodsSearch;
 import com.intellij.psi.search.searches.ReferencesSearch;
@@ -37,8 +39,10 @@ import com.intellij.testFramework.fixtures.TempDirTestFixture;
 import com.intellij.usageView.UsageInfo;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.IntArrayList;
+import com.intellij.util.indexing.FileBasedIndex;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -103,6 +107,23 @@ public class FindUsagesTest extends PsiTestCase{
     assertEquals(1, ReferencesSearch.search(usedMethod).findAll().size());
   }
 
+  public void testOverloadsOfOtherArity() throws Exception {
+    PsiClass aClass = myJavaFacade.findClass("A", GlobalSearchScope.allScope(myProject));
+    PsiMethod method = aClass.getMethods()[0];
+    assertEquals(1, method.getParameterList().getParametersCount());
+
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(myProject);
+    Collection<VirtualFile> callSites = FileBasedIndex.getInstance().getContainingFiles(JavaCallSiteIndex.INDEX_ID, "foo/2", scope);
+    assertEquals(2, callSites.size());
+
+    List<String> fileNames = new ArrayList<String>();
+    for (PsiReference ref : MethodReferencesSearch.search(method, scope, true).findAll()) {
+      fileNames.add(ref.getElement().getContainingFile().getName());
+    }
+    Collections.sort(fileNames);
+    assertEquals(Arrays.asList("C.java", "D.java"), fileNames);
+  }
+
   private static void addReference(PsiReference ref, ArrayList<PsiFile> filesList, IntArrayList startsList, IntArrayList endsList) {
     PsiElement element = ref.getElement();
     filesList.add(element.getContainingFile());
@@ -16,11 +16,10 @@
 package com.intellij.psi.search;
 
 import com.intellij.JavaTestUtil;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressManager;
-import com.intellij.psi.JavaPsiFacade;
-import com.intellij.psi.PsiClass;
-import com.intellij.psi.PsiPackage;
+import com.intellij.psi.*;
 import com.intellij.psi.search.searches.ClassInheritorsSearch;
 import com.intellij.testFramework.IdeaTestUtil;
 import com.intellij.testFramework.PsiTestCase;
@@ -57,6 +56,39 @@ public class InheritorsTest extends PsiTestCase{
     doTest("I", "", true, "A", "B");
   }
 
+  public void testCachedInheritorsAreUpdated() throws Exception {
+    doTest("I", "", true, "A", "B");
+    doTest("I", "", true, "A", "B");
+
+    final PsiClass b = myJavaFacade.findClass("B");
+    assertNotNull(b);
+    new WriteCommandAction.Simple(getProject()) {
+      @Override
+      protected void run() throws Throwable {
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(getProject());
+        PsiClass c = factory.createClass("C");
+        PsiReferenceList extendsList = c.getExtendsList();
+        assertNotNull(extendsList);
+        extendsList.add(factory.createClassReferenceElement(b));
+        b.getContainingFile().add(c);
+      }
+    }.execute();
+
+    doTest("I", "", true, "A", "B", "C");
+    doTest("I", "", false, "A");
+  }
+
+  public void testCachedInheritorsOfFirstMatch() throws Exception {
+    PsiClass i = myJavaFacade.findClass("I");
+    assertNotNull(i);
+    assertNotNull(ClassInheritorsSearch.search(i, GlobalSearchScope.projectScope(myProject), true).findFirst());
+
+    // answered from the inheritors collected to the end by findFirst()
+    doTest("I", "", true, "A", "A.Inner", "B", null);
+    doTest("I", "", false, "A", null);
+    doTest("A", "", false, "A.Inner", "B");
+  }
+
   private void doTest(String className, String packageScopeName, final boolean deep, String... inheritorNames) throws Exception {
     final PsiClass aClass = myJavaFacade.findClass(className);
     assertNotNull(aClass);
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.search;
+
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.searches.MethodReferencesSearch;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.ThrowableRunnable;
+
+public class MethodUsagesSearchPerformanceTest extends LightCodeInsightFixtureTestCase {
+  private static final int FILES_CALLING_OTHER_OVERLOADS = 500;
+  private static final int FILES_CALLING_METHOD = 10;
+
+  public void testOverloadedMethodUsagesWithCallSiteIndex() {
+    doTest(true, 300);
+  }
+
+  public void testOverloadedMethodUsagesWithoutCallSiteIndex() {
+    doTest(false, 1500);
+  }
+
+  private void doTest(boolean useIndex, int expectedMs) {
+    PsiClass logClass = myFixture.addClass("public class Log {\n" +
+                                           "  public static void log(String s) {}\n" +
+                                           "  public static void log(String s, Object a) {}\n" +
+                                           "  public static void log(String s, Object a, Object b) {}\n" +
+                                           "}");
+    for (int i = 0; i < FILES_CALLING_OTHER_OVERLOADS; i++) {
+      myFixture.addClass("class Other" + i + " {\n" +
+                         "  void foo(Object o) {\n" +
+                         "    Log.log(\"a\", o);\n" +
+                         "    Log.log(\"b\", o, this);\n" +
+                         "  }\n" +
+                         "}");
+    }
+    for (int i = 0; i < FILES_CALLING_METHOD; i++) {
+      myFixture.addClass("class Caller" + i + " {\n" +
+                         "  void foo(Object o) {\n" +
+                         "    Log.log(\"a\");\n" +
+                         "    Log.log(\"b\", o);\n" +
+                         "  }\n" +
+                         "}");
+    }
+    final PsiMethod method = logClass.findMethodsByName("log", false)[0];
+    assertEquals(1, method.getParameterList().getParametersCount());
+    final GlobalSearchScope scope = GlobalSearchScope.projectScope(getProject());
+
+    RegistryValue callSiteIndex = Registry.get("find.usages.java.call.site.index");
+    boolean before = callSiteIndex.asBoolean();
+    callSiteIndex.setValue(useIndex);
+    try {
+      PlatformTestUtil.startPerformanceTest(getTestName(false), expectedMs, new ThrowableRunnable() {
+        @Override
+        public void run() throws Exception {
+          assertEquals(FILES_CALLING_METHOD, MethodReferencesSearch.search(method, scope, true).findAll().size());
+        }
+      }).setup(new ThrowableRunnable() {
+        @Override
+        public void run() throws Exception {
+          PsiManager.getInstance(getProject()).dropResolveCaches();
+        }
+      }).cpuBound().assertTiming();
+    }
+    finally {
+      callSiteIndex.setValue(before);
+    }
+  }
+}
@@ -32,6 +32,7 @@ import java.util.Map;
  */
 class DependencyContext {
   private final static String STRING_TABLE_NAME = "strings.tab";
+  static final int NULL_ID = 0;
   private final PersistentStringEnumerator myEnumerator;
 
   private final Map<TypeRepr.AbstractType, TypeRepr.AbstractType> myTypeMap = new HashMap<TypeRepr.AbstractType, TypeRepr.AbstractType>();
@@ -97,6 +98,20 @@ class DependencyContext {
     }
   }
 
+  /**
+   * Same as {@link #get(String)} but doesn't enumerate strings seen for the first time.
+   *
+   * @return the id of the string or {@link #NULL_ID} if it hasn't been enumerated yet
+   */
+  public int find(final String s) {
+    try {
+      return StringUtil.isEmpty(s) ? myEmptyName : myEnumerator.tryEnumerate(s);
+    }
+    catch (IOException e) {
+      throw new BuildDataCorruptedException(e);
+    }
+  }
+
   public void close() {
     try {
       myEnumerator.close();
@@ -46,6 +46,7 @@ public class Mappings {
 
   private final static String CLASS_TO_SUBCLASSES = "classToSubclasses.tab";
   private final static String CLASS_TO_CLASS = "classToClass.tab";
+  private final static String MEMBER_TO_CLASS = "memberToClass.tab";
   private final static String SHORT_NAMES = "shortNames.tab";
   private final static String SOURCE_TO_CLASS = "sourceToClass.tab";
   private final static String CLASS_TO_SOURCE = "classToSource.tab";
@@ -84,6 +85,11 @@ public class Mappings {
   values: class names that use the class registered as the key
   */
   private IntIntMultiMaplet myClassToClassDependency;
+  /**
+  key: {@link #getMemberKey(int, int) the key} of a field or a method as it's referenced in bytecode, i.e. with the static type of the qualifier as the owner;
+  values: names of the other classes that use the member. Narrows the dependents checked when usages of a member are affected.
+  */
+  private IntIntMultiMaplet myMemberToClassDependency;
   private ObjectObjectMultiMaplet<File, ClassRepr> mySourceFileToClasses;
   private IntObjectMultiMaplet<File> myClassToSourceFile;
   /**
@@ -146,6 +152,7 @@ public class Mappings {
     if (myIsDelta && myDeltaIsTransient) {
       myClassToSubclasses = new IntIntTransientMultiMaplet();
       myClassToClassDependency = new IntIntTransientMultiMaplet();
+      myMemberToClassDependency = new IntIntTransientMultiMaplet();
       myShortClassNameIndex = null;
       mySourceFileToClasses = new ObjectObjectTransientMultiMaplet<File, ClassRepr>(FileUtil.FILE_HASHING_STRATEGY, ourClassSetConstructor);
       myClassToSourceFile = new IntObjectTransientMultiMaplet<File>(fileCollectionFactory);
@@ -156,6 +163,7 @@ public class Mappings {
       }
       myClassToSubclasses = new IntIntPersistentMultiMaplet(DependencyContext.getTableFile(myRootDir, CLASS_TO_SUBCLASSES), INT_KEY_DESCRIPTOR);
       myClassToClassDependency = new IntIntPersistentMultiMaplet(DependencyContext.getTableFile(myRootDir, CLASS_TO_CLASS), INT_KEY_DESCRIPTOR);
+      myMemberToClassDependency = new IntIntPersistentMultiMaplet(DependencyContext.getTableFile(myRootDir, MEMBER_TO_CLASS), INT_KEY_DESCRIPTOR);
       myShortClassNameIndex = myIsDelta? null : new IntIntPersistentMultiMaplet(DependencyContext.getTableFile(myRootDir, SHORT_NAMES), INT_KEY_DESCRIPTOR);
       mySourceFileToClasses = new ObjectObjectPersistentMultiMaplet<File, ClassRepr>(
         DependencyContext.getTableFile(myRootDir, SOURCE_TO_CLASS), new FileKeyDescriptor(), ClassRepr.externalizer(myContext),
@@ -628,7 +636,7 @@ public class Mappings {
       classes.forEach(new TIntProcedure() {
         @Override
         public boolean execute(int p) {
-          final TIntHashSet deps = myClassToClassDependency.get(p);
+          final TIntHashSet deps = getMemberDependencies(p, field.name);
           if (deps != null) {
             addAll(dependents, deps);
           }
@@ -645,7 +653,7 @@ public class Mappings {
         subclasses.forEach(new TIntProcedure() {
           @Override
           public boolean execute(int p) {
-            final TIntHashSet deps = myClassToClassDependency.get(p);
+            final TIntHashSet deps = getMemberDependencies(p, method.name);
             if (deps != null) {
               addAll(dependents, deps);
             }
@@ -2069,7 +2077,8 @@ public class Mappings {
 
   private void cleanupBackDependency(final int className,
                                      @Nullable Set<UsageRepr.Usage> usages,
-                                     final IntIntMultiMaplet buffer) {
+                                     final IntIntMultiMaplet buffer,
+                                     final IntIntMultiMaplet memberBuffer) {
     if (usages == null) {
       final ClassRepr repr = getReprByName(null, className);
 
@@ -2081,11 +2090,19 @@ public class Mappings {
     if (usages != null) {
       for (final UsageRepr.Usage u : usages) {
         buffer.put(u.getOwner(), className);
+        if (u instanceof UsageRepr.FMUsage) {
+          memberBuffer.put(getMemberKey((UsageRepr.FMUsage)u), className);
+        }
       }
     }
   }
 
-  private void cleanupRemovedClass(final Mappings delta, @NotNull final ClassRepr cr, File sourceFile, final Set<UsageRepr.Usage> usages, final IntIntMultiMaplet dependenciesTrashBin) {
+  private void cleanupRemovedClass(final Mappings delta,
+                                   @NotNull final ClassRepr cr,
+                                   File sourceFile,
+                                   final Set<UsageRepr.Usage> usages,
+                                   final IntIntMultiMaplet dependenciesTrashBin,
+                                   final IntIntMultiMaplet memberDependenciesTrashBin) {
     final int className = cr.name;
 
     // it is safe to cleanup class information if it is mapped to non-existing files only
@@ -2113,7 +2130,7 @@ public class Mappings {
       delta.registerRemovedSuperClass(className, superSomething);
     }
 
-    cleanupBackDependency(className, usages, dependenciesTrashBin);
+    cleanupBackDependency(className, usages, dependenciesTrashBin, memberDependenciesTrashBin);
 
     myClassToClassDependency.remove(className);
     myClassToSubclasses.remove(className);
@@ -2133,6 +2150,7 @@ public class Mappings {
         delta.runPostPasses();
 
         final IntIntMultiMaplet dependenciesTrashBin = new IntIntTransientMultiMaplet();
+        final IntIntMultiMaplet memberDependenciesTrashBin = new IntIntTransientMultiMaplet();
 
         if (removed != null) {
           for (final String file : removed) {
@@ -2141,7 +2159,7 @@ public class Mappings {
 
             if (fileClasses != null) {
               for (final ClassRepr aClass : fileClasses) {
-                cleanupRemovedClass(delta, aClass, deletedFile, aClass.getUsages(), dependenciesTrashBin);
+                cleanupRemovedClass(delta, aClass, deletedFile, aClass.getUsages(), dependenciesTrashBin, memberDependenciesTrashBin);
               }
               mySourceFileToClasses.remove(deletedFile);
             }
@@ -2151,7 +2169,7 @@ public class Mappings {
         if (!delta.isRebuild()) {
           for (final Pair<ClassRepr, File> pair : delta.getDeletedClasses()) {
             final ClassRepr deletedClass = pair.first;
-            cleanupRemovedClass(delta, deletedClass, pair.second, deletedClass.getUsages(), dependenciesTrashBin);
+            cleanupRemovedClass(delta, deletedClass, pair.second, deletedClass.getUsages(), dependenciesTrashBin, memberDependenciesTrashBin);
           }
           for (ClassRepr repr : delta.getAddedClasses()) {
             if (!repr.isAnonymous() && !repr.isLocal()) {
@@ -2212,7 +2230,7 @@ public class Mappings {
               final Collection<File> sourceFiles = delta.myClassToSourceFile.get(className);
               myClassToSourceFile.replace(className, sourceFiles);
 
-              cleanupBackDependency(className, null, dependenciesTrashBin);
+              cleanupBackDependency(className, null, dependenciesTrashBin, memberDependenciesTrashBin);
 
               return true;
             }
@@ -2243,53 +2261,60 @@ public class Mappings {
           });
         }
 
-        // updating classToClass dependencies
+        // updating classToClass and memberToClass dependencies
 
-        final TIntHashSet affectedClasses = new TIntHashSet();
+        integrateDependencies(myClassToClassDependency, delta.myClassToClassDependency, dependenciesTrashBin);
+        integrateDependencies(myMemberToClassDependency, delta.myMemberToClassDependency, memberDependenciesTrashBin);
+      }
+      finally {
+        delta.close();
+      }
+    }
+  }
 
-        addAllKeys(affectedClasses, dependenciesTrashBin);
-        addAllKeys(affectedClasses, delta.myClassToClassDependency);
+  private static void integrateDependencies(final IntIntMultiMaplet dependencies,
+                                            final IntIntMultiMaplet deltaDependencies,
+                                            final IntIntMultiMaplet dependenciesTrashBin) {
+    final TIntHashSet affectedClasses = new TIntHashSet();
 
-        affectedClasses.forEach(new TIntProcedure() {
-          @Override
-          public boolean execute(int aClass) {
-            final TIntHashSet now = delta.myClassToClassDependency.get(aClass);
-            final TIntHashSet toRemove = dependenciesTrashBin.get(aClass);
-            final boolean hasDataToAdd = now != null && !now.isEmpty();
-
-            if (toRemove != null && !toRemove.isEmpty()) {
-              final TIntHashSet current = myClassToClassDependency.get(aClass);
-              if (current != null && !current.isEmpty()) {
-                final TIntHashSet before = new TIntHashSet();
-                addAll(before, current);
-
-                final boolean removed = current.removeAll(toRemove.toArray());
-                final boolean added = hasDataToAdd && current.addAll(now.toArray());
-
-                if ((removed && !added) || (!removed && added) || !before.equals(current)) {
-                  myClassToClassDependency.replace(aClass, current);
-                }
-              }
-              else {
-                if (hasDataToAdd) {
-                  myClassToClassDependency.put(aClass, now);
-                }
-              }
+    addAllKeys(affectedClasses, dependenciesTrashBin);
+    addAllKeys(affectedClasses, deltaDependencies);
+
+    affectedClasses.forEach(new TIntProcedure() {
+      @Override
+      public boolean execute(int aClass) {
+        final TIntHashSet now = deltaDependencies.get(aClass);
+        final TIntHashSet toRemove = dependenciesTrashBin.get(aClass);
+        final boolean hasDataToAdd = now != null && !now.isEmpty();
+
+        if (toRemove != null && !toRemove.isEmpty()) {
+          final TIntHashSet current = dependencies.get(aClass);
+          if (current != null && !current.isEmpty()) {
+            final TIntHashSet before = new TIntHashSet();
+            addAll(before, current);
+
+            final boolean removed = current.removeAll(toRemove.toArray());
+            final boolean added = hasDataToAdd && current.addAll(now.toArray());
+
+            if ((removed && !added) || (!removed && added) || !before.equals(current)) {
+              dependencies.replace(aClass, current);
             }
-            else {
-              // nothing to remove for this class
-              if (hasDataToAdd) {
-                myClassToClassDependency.put(aClass, now);
-              }
+          }
+          else {
+            if (hasDataToAdd) {
+              dependencies.put(aClass, now);
             }
-            return true;
           }
-        });
-      }
-      finally {
-        delta.close();
+        }
+        else {
+          // nothing to remove for this class
+          if (hasDataToAdd) {
+            dependencies.put(aClass, now);
+          }
+        }
+        return true;
       }
-    }
+    });
   }
 
   public Callbacks.Backend getCallback() {
@@ -2319,6 +2344,9 @@ public class Mappings {
 
               if (owner != className) {
                 myClassToClassDependency.put(owner, className);
+                if (u instanceof UsageRepr.FMUsage) {
+                  myMemberToClassDependency.put(getMemberKey((UsageRepr.FMUsage)u), className);
+                }
               }
             }
           }
@@ -2383,10 +2411,32 @@ public class Mappings {
     }
   }
 
+  private int getMemberKey(final UsageRepr.FMUsage usage) {
+    return getMemberKey(usage.myOwner, usage.myName);
+  }
+
+  /**
+   * The owner and the name of a member are enumerated together, so that different members never share a key.
+   * Names can't start with a digit, so the key strings never clash with real names.
+   */
+  private int getMemberKey(final int owner, final int name) {
+    return myContext.get(owner + "#" + name);
+  }
+
+  /**
+   * Looks the classes using the member up without enumerating a key for members nobody has ever referenced.
+   */
+  @Nullable
+  private TIntHashSet getMemberDependencies(final int owner, final int name) {
+    final int key = myContext.find(owner + "#" + name);
+    return key == DependencyContext.NULL_ID ? null : myMemberToClassDependency.get(key);
+  }
+
   public void close() {
     synchronized (myLock) {
       myClassToSubclasses.close();
       myClassToClassDependency.close();
+      myMemberToClassDependency.close();
       mySourceFileToClasses.close();
       myClassToSourceFile.close();
 
@@ -2411,6 +2461,7 @@ public class Mappings {
     synchronized (myLock) {
       myClassToSubclasses.flush(memoryCachesOnly);
       myClassToClassDependency.flush(memoryCachesOnly);
+      myMemberToClassDependency.flush(memoryCachesOnly);
       mySourceFileToClasses.flush(memoryCachesOnly);
       myClassToSourceFile.flush(memoryCachesOnly);
 
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.builders.java;
+
+import com.intellij.util.PathUtil;
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.incremental.java.JavaBuilder;
+
+public class MemberUsagesIndexTest extends JpsBuildTestCase {
+  public void testMemberUsagesAreUpdatedOnMake() {
+    String a = createFile("src/A.java", "public class A { public void foo() {} public void bar() {} }");
+    createFile("src/B.java", "class B extends A {}");
+    String c = createFile("src/C.java", "class C { void run(B b) { b.foo(); } }");
+    createFile("src/D.java", "class D { void run(A a) { a.bar(); } }");
+    addModule("m", PathUtil.getParentPath(a));
+    rebuildAll();
+
+    change(a, "public class A { public int foo() { return 0; } public void bar() {} }");
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME, "src/A.java", "src/C.java");
+
+    change(c, "class C { void run(B b) { b.bar(); } }");
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME, "src/C.java");
+
+    change(a, "public class A { public int foo() { return 0; } public int bar() { return 0; } }");
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME, "src/A.java", "src/C.java", "src/D.java");
+
+    change(a, "public class A { public long foo() { return 0; } public int bar() { return 0; } }");
+    makeAll().assertSuccessful();
+    assertCompiled(JavaBuilder.BUILDER_NAME, "src/A.java");
+  }
+}
@@ -34,21 +34,35 @@ import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.Conditions;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.ProperTextRange;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.psi.*;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.util.containers.SmartHashSet;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class InspectionEngine {
   private static final Logger LOG = Logger.getInstance("#com.intellij.codeInspection.InspectionEngine");
+  // visitors whose visit methods do nothing but call the visit methods for the super types of the element
+  private static final Set<String> FORWARDING_VISITORS = ContainerUtil.newHashSet(PsiElementVisitor.class.getName(),
+                                                                                  "com.intellij.psi.JavaElementVisitor",
+                                                                                  "com.intellij.psi.XmlElementVisitor",
+                                                                                  "com.siyeh.ig.BaseInspectionVisitor");
+  private static final ConcurrentMap<Class, Class[]> ourVisitedTypes = ContainerUtil.createConcurrentWeakMap();
 
   @NotNull
   public static PsiElementVisitor createVisitorAndAcceptElements(@NotNull LocalInspectionTool tool,
@@ -57,6 +71,16 @@ public class InspectionEngine {
                                                                  @NotNull LocalInspectionToolSession session,
                                                                  @NotNull List<PsiElement> elements,
                                                                  @Nullable Collection<String> languages) {
+    PsiElementVisitor visitor = createVisitor(tool, holder, isOnTheFly, session);
+    acceptElements(elements, visitor, languages);
+    return visitor;
+  }
+
+  @NotNull
+  public static PsiElementVisitor createVisitor(@NotNull LocalInspectionTool tool,
+                                                @NotNull ProblemsHolder holder,
+                                                boolean isOnTheFly,
+                                                @NotNull LocalInspectionToolSession session) {
     PsiElementVisitor visitor = tool.buildVisitor(holder, isOnTheFly, session);
     //noinspection ConstantConditions
     if(visitor == null) {
@@ -66,7 +90,6 @@ public class InspectionEngine {
       : "The visitor returned from LocalInspectionTool.buildVisitor() must not be recursive. "+tool;
 
     tool.inspectionStarted(session, isOnTheFly);
-    acceptElements(elements, visitor, languages);
     return visitor;
   }
 
@@ -83,6 +106,85 @@ public class InspectionEngine {
     }
   }
 
+  /**
+   * Visits the elements once for all the visitors (each paired with the IDs of the languages it's applicable to, or null for any language).
+   * An element is passed only to the visitors which override a visit method accepting it, see {@link #getVisitedTypes(Class)}.
+   */
+  public static void acceptElements(@NotNull List<PsiElement> elements,
+                                    @NotNull List<Pair<PsiElementVisitor, Collection<String>>> visitors) {
+    boolean dispatchToAll = !Registry.is("inspections.dispatch.to.interested.visitors.only");
+    Map<Language, Map<Class, PsiElementVisitor[]>> interestedVisitors = new THashMap<Language, Map<Class, PsiElementVisitor[]>>();
+    //noinspection ForLoopReplaceableByForEach
+    for (int i = 0, elementsSize = elements.size(); i < elementsSize; i++) {
+      PsiElement element = elements.get(i);
+      Language language = element.getLanguage();
+      Map<Class, PsiElementVisitor[]> byClass = interestedVisitors.get(language);
+      if (byClass == null) {
+        byClass = new THashMap<Class, PsiElementVisitor[]>();
+        interestedVisitors.put(language, byClass);
+      }
+      Class<? extends PsiElement> elementClass = element.getClass();
+      PsiElementVisitor[] interested = byClass.get(elementClass);
+      if (interested == null) {
+        interested = getInterestedVisitors(visitors, elementClass, language, dispatchToAll);
+        byClass.put(elementClass, interested);
+      }
+      for (PsiElementVisitor visitor : interested) {
+        element.accept(visitor);
+      }
+      ProgressManager.checkCanceled();
+    }
+  }
+
+  @NotNull
+  private static PsiElementVisitor[] getInterestedVisitors(@NotNull List<Pair<PsiElementVisitor, Collection<String>>> visitors,
+                                                           @NotNull Class<? extends PsiElement> elementClass,
+                                                           @NotNull Language language,
+                                                           boolean dispatchToAll) {
+    List<PsiElementVisitor> result = new ArrayList<PsiElementVisitor>();
+    for (Pair<PsiElementVisitor, Collection<String>> pair : visitors) {
+      if (pair.second != null && !pair.second.contains(language.getID())) continue;
+      if (dispatchToAll || isVisited(getVisitedTypes(pair.first.getClass()), elementClass)) {
+        result.add(pair.first);
+      }
+    }
+    return result.toArray(new PsiElementVisitor[result.size()]);
+  }
+
+  private static boolean isVisited(@NotNull Class[] visitedTypes, @NotNull Class<? extends PsiElement> elementClass) {
+    for (Class type : visitedTypes) {
+      if (type.isAssignableFrom(elementClass)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * An element passes itself to the visitor methods, and the standard visitors only forward it to the visit methods of its super types,
+   * so the visitor can react only on the elements being instances of the parameter types of visit methods declared in its own classes.
+   */
+  @NotNull
+  private static Class[] getVisitedTypes(@NotNull Class<? extends PsiElementVisitor> visitorClass) {
+    Class[] types = ourVisitedTypes.get(visitorClass);
+    if (types == null) {
+      Set<Class> result = new THashSet<Class>();
+      for (Class aClass = visitorClass; aClass != null && aClass != Object.class; aClass = aClass.getSuperclass()) {
+        if (FORWARDING_VISITORS.contains(aClass.getName())) continue;
+        for (Method method : aClass.getDeclaredMethods()) {
+          int modifiers = method.getModifiers();
+          if (!method.getName().startsWith("visit") || Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers) || method.isSynthetic()) {
+            continue;
+          }
+          Class<?>[] parameterTypes = method.getParameterTypes();
+          if (parameterTypes.length == 1) {
+            result.add(parameterTypes[0]);
+          }
+        }
+      }
+      types = ConcurrencyUtil.cacheOrGet(ourVisitedTypes, visitorClass, result.toArray(new Class[result.size()]));
+    }
+    return types;
+  }
+
   @NotNull
   public static List<ProblemDescriptor> inspect(@NotNull final List<LocalInspectionToolWrapper> toolWrappers,
                                                 @NotNull final PsiFile file,
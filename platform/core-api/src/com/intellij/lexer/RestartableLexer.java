@@ -0,0 +1,26 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.lexer;
+
+/**
+ * Marks a lexer which keeps no state besides the one returned by {@link Lexer#getState()}, so that starting it
+ * in the initial state at a token lexed in the initial state produces the same tokens as lexing the whole text.
+ * Lexers with internal stacks (e.g. of braces or string kinds) or look-ahead buffers mustn't implement it.
+ * <p/>
+ * Only the lexers implementing this interface get the tokens of a big file relexed incrementally on reparse.
+ */
+public interface RestartableLexer {
+}
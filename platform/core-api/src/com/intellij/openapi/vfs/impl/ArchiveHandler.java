@@ -156,4 +156,11 @@ public abstract class ArchiveHandler {
 
   @NotNull
   public abstract byte[] contentsToByteArray(@NotNull String relativePath) throws IOException;
+
+  /**
+   * Called when the handler is dropped (e.g. the archive has changed), to release the files it keeps open.
+   * Readers which got the handler before may still use it.
+   */
+  public void dispose() {
+  }
 }
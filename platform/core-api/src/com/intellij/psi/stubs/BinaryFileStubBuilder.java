@@ -21,8 +21,11 @@ package com.intellij.psi.stubs;
 
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.indexing.FileContent;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.security.MessageDigest;
+
 /**
  * @see com.intellij.psi.stubs.BinaryFileStubBuilders#EXTENSION_POINT_NAME
  */
@@ -33,4 +36,22 @@ public interface BinaryFileStubBuilder {
   Stub buildStubTree(FileContent fileContent);
 
   int getStubVersion();
+
+  /**
+   * Implemented by builders whose stubs don't depend on the project or the file location, so that the stub built once
+   * can be reused for all files with the same content, in any project.
+   */
+  interface CacheableByContent extends BinaryFileStubBuilder {
+    /**
+     * Called before the content is digested, so should be cheap.
+     * @return false if the stub of this particular file can't be reused for other files with the same content
+     */
+    boolean isCacheable(@NotNull FileContent fileContent);
+
+    /**
+     * Feeds to the digest everything the stub is built from besides the file content, e.g. contents of other files.
+     * @return false if the data can't be read, so the stub shouldn't be shared
+     */
+    boolean updateContentDigest(@NotNull FileContent fileContent, @NotNull MessageDigest digest);
+  }
 }
\ No newline at end of file
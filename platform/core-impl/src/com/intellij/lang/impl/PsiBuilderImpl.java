@@ -18,6 +18,7 @@ package com.intellij.lang.impl;
 
 import com.intellij.lang.*;
 import com.intellij.lexer.Lexer;
+import com.intellij.lexer.RestartableLexer;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
@@ -26,6 +27,8 @@ import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.UserDataHolderBase;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiErrorElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.TokenType;
@@ -44,16 +47,15 @@ import com.intellij.util.containers.Stack;
 import com.intellij.util.diff.DiffTreeChangeBuilder;
 import com.intellij.util.diff.FlyweightCapableTreeStructure;
 import com.intellij.util.diff.ShallowNodeComparator;
+import com.intellij.reference.SoftReference;
 import com.intellij.util.text.CharArrayUtil;
+import com.intellij.util.text.ImmutableCharSequence;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Field;
-import java.util.AbstractList;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * @author max
@@ -96,29 +98,50 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
   private Map<Key, Object> myUserData = null;
   private IElementType myCachedTokenType;
 
-  private final LimitedPool<StartMarker> START_MARKERS = new LimitedPool<StartMarker>(2000, new LimitedPool.ObjectFactory<StartMarker>() {
+  // marker pools are per thread rather than per builder, so that markers recycled by one parse are reused by the next ones;
+  // they stay with every thread which ever parsed, hence are small
+  private static final int MAX_POOLED_MARKERS = 256;
+  private static final ThreadLocal<LimitedPool<StartMarker>> START_MARKERS = new ThreadLocal<LimitedPool<StartMarker>>() {
     @Override
-    public StartMarker create() {
-      return new StartMarker();
-    }
+    protected LimitedPool<StartMarker> initialValue() {
+      return new LimitedPool<StartMarker>(MAX_POOLED_MARKERS, new LimitedPool.ObjectFactory<StartMarker>() {
+        @Override
+        public StartMarker create() {
+          return new StartMarker();
+        }
 
-    @Override
-    public void cleanup(final StartMarker startMarker) {
-      startMarker.clean();
+        @Override
+        public void cleanup(final StartMarker startMarker) {
+          startMarker.clean();
+        }
+      });
     }
-  });
+  };
 
-  private final LimitedPool<DoneMarker> DONE_MARKERS = new LimitedPool<DoneMarker>(2000, new LimitedPool.ObjectFactory<DoneMarker>() {
+  private static final ThreadLocal<LimitedPool<DoneMarker>> DONE_MARKERS = new ThreadLocal<LimitedPool<DoneMarker>>() {
     @Override
-    public DoneMarker create() {
-      return new DoneMarker();
-    }
+    protected LimitedPool<DoneMarker> initialValue() {
+      return new LimitedPool<DoneMarker>(MAX_POOLED_MARKERS, new LimitedPool.ObjectFactory<DoneMarker>() {
+        @Override
+        public DoneMarker create() {
+          return new DoneMarker();
+        }
 
-    @Override
-    public void cleanup(final DoneMarker doneMarker) {
-      doneMarker.clean();
+        @Override
+        public void cleanup(final DoneMarker doneMarker) {
+          doneMarker.clean();
+        }
+      });
     }
-  });
+  };
+
+  // lexeme arrays released by getTreeBuilt(), taken by the next builder created in the same thread;
+  // only arrays of small files (where the allocation is relatively expensive) are kept, and softly
+  private static final ThreadLocal<SoftReference<LexemeBuffers>> ourReleasedLexemes = new ThreadLocal<SoftReference<LexemeBuffers>>();
+  private static final int MAX_RELEASED_LEXEMES = 8 * 1024;
+
+  private static final Key<SoftReference<LexemeCache>> LEXEME_CACHE = Key.create("PsiBuilderImpl.LEXEME_CACHE");
+  private static final int MIN_CACHED_LEXEMES_TEXT_LENGTH = 64 * 1024;
 
   public static void registerWhitespaceToken(IElementType type) {
     ourAnyLanguageWhitespaceTokens = TokenSet.orSet(ourAnyLanguageWhitespaceTokens, TokenSet.create(type));
@@ -196,12 +219,58 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
   private void cacheLexemes() {
     int approxLexCount = Math.max(10, myText.length() / 5);
 
-    myLexStarts = new int[approxLexCount];
-    myLexTypes = new IElementType[approxLexCount];
+    LexemeBuffers released = SoftReference.dereference(ourReleasedLexemes.get());
+    if (released != null && released.myStarts.length >= approxLexCount) {
+      ourReleasedLexemes.set(null);
+      myLexStarts = released.myStarts;
+      myLexTypes = released.myTypes;
+    }
+    else {
+      myLexStarts = new int[approxLexCount];
+      myLexTypes = new IElementType[approxLexCount];
+    }
+
+    // when the whole big file is reparsed, lexing is resumed from a restartable token before the change
+    // and stops as soon as the tokens after the change are the same as the ones of the previous parse;
+    // only the lexers declaring that their state is fully described by getState() can be restarted this way
+    boolean cacheLexemes = myLexer instanceof RestartableLexer && myOriginalTree instanceof FileElement && myOffset == 0 &&
+                           myText.length() >= MIN_CACHED_LEXEMES_TEXT_LENGTH && Registry.is("psi.incremental.relexing");
+    LexemeCache oldCache = cacheLexemes ? SoftReference.dereference(myOriginalTree.getUserData(LEXEME_CACHE)) : null;
+    if (oldCache != null && oldCache.myLexerClass != myLexer.getClass()) oldCache = null;
+    BitSet restartable = cacheLexemes ? new BitSet() : null;
+    int initialState = 0;
+    if (cacheLexemes) {
+      myLexer.start(ArrayUtil.EMPTY_CHAR_SEQUENCE);
+      initialState = myLexer.getState();
+    }
 
-    myLexer.start(myText);
     int i = 0;
     int offset = 0;
+    int changeEnd = 0;
+    int shift = 0;
+    if (oldCache != null) {
+      CharSequence oldText = oldCache.myText;
+      int prefix = StringUtil.commonPrefixLength(oldText, myText);
+      int suffix = Math.min(StringUtil.commonSuffixLength(oldText, myText), Math.min(oldText.length(), myText.length()) - prefix);
+      changeEnd = myText.length() - suffix;
+      shift = myText.length() - oldText.length();
+
+      i = oldCache.findRestartIndex(prefix);
+      if (i >= myLexTypes.length - 1) {
+        resizeLexemes(Math.max(i * 3 / 2, approxLexCount));
+      }
+      System.arraycopy(oldCache.myStarts, 0, myLexStarts, 0, i);
+      System.arraycopy(oldCache.myTypes, 0, myLexTypes, 0, i);
+      for (int j = 0; j < i; j++) {
+        if (oldCache.myRestartable.get(j)) restartable.set(j);
+      }
+      offset = i > 0 ? myLexStarts[i - 1] : 0;
+      myLexer.start(myText, i < oldCache.myStarts.length ? oldCache.myStarts[i] : 0, myText.length(), initialState);
+    }
+    else {
+      myLexer.start(myText);
+    }
+
     while (true) {
       ProgressIndicatorProvider.checkCanceled();
       IElementType type = myLexer.getTokenType();
@@ -211,6 +280,17 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
         resizeLexemes(i * 3 / 2);
       }
       int tokenStart = myLexer.getTokenStart();
+      if (restartable != null && myLexer.getState() == initialState) {
+        if (oldCache != null && tokenStart >= changeEnd) {
+          int oldIndex = oldCache.findTokenStartingAt(tokenStart - shift);
+          if (oldIndex >= 0 && oldCache.myRestartable.get(oldIndex) && oldCache.myTypes[oldIndex] == type) {
+            i = copyLexemes(oldCache, oldIndex, i, shift, restartable);
+            myLexer.start(myText, myText.length(), myText.length(), initialState);
+            break;
+          }
+        }
+        restartable.set(i);
+      }
       if (tokenStart < offset) {
         final StringBuilder sb = new StringBuilder();
         final IElementType tokenType = myLexer.getTokenType();
@@ -238,6 +318,63 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
 
     myLexemeCount = i;
     clearCachedTokenType();
+
+    if (cacheLexemes) {
+      // copy, since the token types may be remapped later
+      LexemeCache cache = new LexemeCache(ImmutableCharSequence.asImmutable(myText), myLexer.getClass(),
+                                          Arrays.copyOf(myLexStarts, i), Arrays.copyOf(myLexTypes, i), restartable);
+      myOriginalTree.putUserData(LEXEME_CACHE, new SoftReference<LexemeCache>(cache));
+    }
+  }
+
+  private int copyLexemes(@NotNull LexemeCache from, int fromIndex, int toIndex, int shift, @NotNull BitSet restartable) {
+    int count = from.myStarts.length - fromIndex;
+    if (toIndex + count >= myLexTypes.length - 1) {
+      resizeLexemes(toIndex + count + 1);
+    }
+    for (int j = 0; j < count; j++) {
+      myLexStarts[toIndex + j] = from.myStarts[fromIndex + j] + shift;
+      myLexTypes[toIndex + j] = from.myTypes[fromIndex + j];
+      if (from.myRestartable.get(fromIndex + j)) restartable.set(toIndex + j);
+    }
+    return toIndex + count;
+  }
+
+  /**
+   * Lexemes of the last parse of a file, together with the indices of the lexemes where the lexer was in its initial state
+   * (and so could be restarted from).
+   */
+  private static class LexemeCache {
+    private final CharSequence myText;
+    private final Class myLexerClass;
+    private final int[] myStarts;
+    private final IElementType[] myTypes;
+    private final BitSet myRestartable;
+
+    private LexemeCache(@NotNull CharSequence text,
+                        @NotNull Class lexerClass,
+                        @NotNull int[] starts,
+                        @NotNull IElementType[] types,
+                        @NotNull BitSet restartable) {
+      myText = text;
+      myLexerClass = lexerClass;
+      myStarts = starts;
+      myTypes = types;
+      myRestartable = restartable;
+    }
+
+    int findRestartIndex(int changeStart) {
+      int index = Arrays.binarySearch(myStarts, Math.max(0, changeStart - 1));
+      if (index < 0) index = -index - 2;
+      index -= 2; // the lexer may look ahead, so the tokens just before the change may change too
+      while (index > 0 && !myRestartable.get(index)) index--;
+      return Math.max(0, index);
+    }
+
+    int findTokenStartingAt(int offset) {
+      int index = Arrays.binarySearch(myStarts, offset);
+      return index >= 0 ? index : -1;
+    }
   }
 
   @Override
@@ -830,7 +967,7 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
   }
 
   private StartMarker createMarker(final int lexemeIndex) {
-    StartMarker marker = START_MARKERS.alloc();
+    StartMarker marker = START_MARKERS.get().alloc();
     marker.myLexemeIndex = lexemeIndex;
     marker.myBuilder = this;
 
@@ -858,7 +995,7 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
       LOG.error("The marker must be added before rolled back to.");
     }
     myProduction.removeRange(idx, myProduction.size());
-    START_MARKERS.recycle((StartMarker)marker);
+    START_MARKERS.get().recycle((StartMarker)marker);
     clearCachedTokenType();
   }
 
@@ -886,13 +1023,13 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
     final DoneMarker doneMarker = ((StartMarker)marker).myDoneMarker;
     if (doneMarker != null) {
       myProduction.remove(myProduction.lastIndexOf(doneMarker));
-      DONE_MARKERS.recycle(doneMarker);
+      DONE_MARKERS.get().recycle(doneMarker);
     }
     final boolean removed = myProduction.remove(myProduction.lastIndexOf(marker)) == marker;
     if (!removed) {
       LOG.error("The marker must be added before it is dropped.");
     }
-    START_MARKERS.recycle((StartMarker)marker);
+    START_MARKERS.get().recycle((StartMarker)marker);
   }
 
   public void error(Marker marker, String message) {
@@ -923,7 +1060,7 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
   public void done(final Marker marker) {
     doValidityChecks(marker, null);
 
-    DoneMarker doneMarker = DONE_MARKERS.alloc();
+    DoneMarker doneMarker = DONE_MARKERS.get().alloc();
     doneMarker.myStart = (StartMarker)marker;
     doneMarker.myLexemeIndex = myCurrentLexeme;
     boolean tieToTheLeft = doneMarker.myStart.myType.isLeftBound() &&
@@ -940,7 +1077,7 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
 
     int beforeIndex = myProduction.lastIndexOf(before);
 
-    DoneMarker doneMarker = DONE_MARKERS.alloc();
+    DoneMarker doneMarker = DONE_MARKERS.get().alloc();
     doneMarker.myLexemeIndex = ((StartMarker)before).myLexemeIndex;
     doneMarker.myStart = (StartMarker)marker;
     boolean tieToTheLeft = doneMarker.myStart.myType.isLeftBound() &&
@@ -1022,14 +1159,39 @@ public class PsiBuilderImpl extends UserDataHolderBase implements PsiBuilder {
       return buildTree();
     }
     finally {
+      LimitedPool<StartMarker> startMarkers = START_MARKERS.get();
+      LimitedPool<DoneMarker> doneMarkers = DONE_MARKERS.get();
       for (ProductionMarker marker : myProduction) {
         if (marker instanceof StartMarker) {
-          START_MARKERS.recycle((StartMarker)marker);
+          startMarkers.recycle((StartMarker)marker);
         }
         else if (marker instanceof DoneMarker) {
-          DONE_MARKERS.recycle((DoneMarker)marker);
+          doneMarkers.recycle((DoneMarker)marker);
         }
       }
+      releaseLexemes();
+    }
+  }
+
+  // the AST is built, nothing refers the lexemes anymore (unlike the light tree, which keeps using them)
+  private void releaseLexemes() {
+    int[] starts = myLexStarts;
+    if (starts.length > MAX_RELEASED_LEXEMES) return;
+    LexemeBuffers released = SoftReference.dereference(ourReleasedLexemes.get());
+    if (released == null || released.myStarts.length < starts.length) {
+      ourReleasedLexemes.set(new SoftReference<LexemeBuffers>(new LexemeBuffers(starts, myLexTypes)));
+    }
+    myLexStarts = null;
+    myLexTypes = null;
+  }
+
+  private static class LexemeBuffers {
+    private final int[] myStarts;
+    private final IElementType[] myTypes;
+
+    private LexemeBuffers(@NotNull int[] starts, @NotNull IElementType[] types) {
+      myStarts = starts;
+      myTypes = types;
     }
   }
 
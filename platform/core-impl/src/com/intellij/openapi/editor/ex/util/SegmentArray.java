@@ -23,12 +23,20 @@ import org.jetbrains.annotations.NotNull;
  * {@code 'index <-> (start; end)'} and provides convenient way for working with them, e.g. find index by particular offset that
  * belongs to target <code>(start; end)</code> segment etc.
  * <p/>
+ * {@link #shiftSegments(int, int) Shifting} all the segments after some index is deferred: the shift is remembered
+ * and applied to the stored offsets only when a subsequent shift starts at another index, and then only to the segments between
+ * the two indices. This way a series of changes at close places of a big document costs proportionally to the distance between them,
+ * not to the number of segments after them.
+ * <p/>
  * Not thread-safe.
  */
 public class SegmentArray {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.editor.ex.util.SegmentArray");
+  // stored offsets of segments starting from myShiftStart should be shifted by myShift
   protected int[] myStarts;
   protected int[] myEnds;
+  private int myShiftStart = Integer.MAX_VALUE;
+  private int myShift;
 
   protected int mySegmentCount = 0;
   protected static final int INITIAL_SIZE = 64;
@@ -50,16 +58,45 @@ public class SegmentArray {
       mySegmentCount = i + 1;
     }
 
+    int shift = getShift(i);
     myStarts = reallocateArray(myStarts, i);
-    myStarts[i] = startOffset;
+    myStarts[i] = startOffset - shift;
 
     myEnds = reallocateArray(myEnds, i);
-    myEnds[i] = endOffset;
+    myEnds[i] = endOffset - shift;
   }
 
   protected void replace(int startOffset, @NotNull SegmentArray data, int len) {
+    data.applyShift();
     System.arraycopy(data.myStarts, 0, myStarts, startOffset, len);
     System.arraycopy(data.myEnds, 0, myEnds, startOffset, len);
+    unshift(startOffset, startOffset + len);
+  }
+
+  private int getShift(int index) {
+    return index >= myShiftStart ? myShift : 0;
+  }
+
+  private void addToStored(int startIndex, int endIndex, int shift) {
+    for (int i = startIndex; i < endIndex; i++) {
+      myStarts[i] += shift;
+      myEnds[i] += shift;
+    }
+  }
+
+  // the given segments were written with actual offsets, convert them to the stored form
+  private void unshift(int startIndex, int endIndex) {
+    if (myShift != 0) {
+      addToStored(Math.max(startIndex, myShiftStart), endIndex, -myShift);
+    }
+  }
+
+  private void applyShift() {
+    if (myShift != 0) {
+      addToStored(myShiftStart, mySegmentCount, myShift);
+      myShift = 0;
+      myShiftStart = Integer.MAX_VALUE;
+    }
   }
 
   static int calcCapacity(int currentArraySize, int index) {
@@ -110,10 +147,11 @@ public class SegmentArray {
     int start = 0;
     while (start <= end) {
       int i = (start + end) >>> 1;
-      if (offset < myStarts[i]) {
+      int shift = getShift(i);
+      if (offset < myStarts[i] + shift) {
         end = i - 1;
       }
-      else if (offset >= myEnds[i]) {
+      else if (offset >= myEnds[i] + shift) {
         start = i + 1;
       }
       else {
@@ -126,12 +164,12 @@ public class SegmentArray {
 
   protected int segmentNotFound(int offset, int start) {
     // This means that there is a gap at given offset
-    assert myStarts[start] <= offset && offset < myEnds[start] : start;
+    assert getSegmentStart(start) <= offset && offset < getSegmentEnd(start) : start;
     return start;
   }
 
   public int getLastValidOffset() {
-    return mySegmentCount == 0 ? 0 : myEnds[mySegmentCount - 1];
+    return mySegmentCount == 0 ? 0 : myEnds[mySegmentCount - 1] + getShift(mySegmentCount - 1);
   }
 
   public final void changeSegmentLength(int startIndex, int change) {
@@ -142,23 +180,47 @@ public class SegmentArray {
   }
 
   public final void shiftSegments(int startIndex, int shift) {
-    for (int i = startIndex; i < mySegmentCount; i++) {
-      myStarts[i] += shift;
-      myEnds[i] += shift;
-      if (myStarts[i] < 0 || myEnds[i] < 0) {
-        LOG.error("Error shifting segments: myStarts[" + i + "] = " + myStarts[i] + ", myEnds[" + i + "] = " + myEnds[i]);
-      }
+    startIndex = Math.max(startIndex, 0);
+    if (shift == 0 || startIndex >= mySegmentCount) return;
+
+    if (myShift == 0) {
+      myShiftStart = startIndex;
+    }
+    else if (startIndex < myShiftStart) {
+      addToStored(startIndex, myShiftStart, shift);
+    }
+    else if (startIndex > myShiftStart) {
+      addToStored(myShiftStart, startIndex, myShift);
+      myShiftStart = startIndex;
+    }
+    myShift += shift;
+    if (myShift == 0) {
+      myShiftStart = Integer.MAX_VALUE;
+    }
+
+    // segments are ordered, so it's enough to check the first one
+    int start = getSegmentStart(startIndex);
+    if (start < 0) {
+      LOG.error("Error shifting segments: start[" + startIndex + "] = " + start + ", end[" + startIndex + "] = " + getSegmentEnd(startIndex));
     }
   }
 
   public void removeAll() {
     mySegmentCount = 0;
+    myShift = 0;
+    myShiftStart = Integer.MAX_VALUE;
   }
 
   public void remove(int startIndex, int endIndex) {
     myStarts = remove(myStarts, startIndex, endIndex);
     myEnds = remove(myEnds, startIndex, endIndex);
     mySegmentCount -= endIndex - startIndex;
+    if (myShiftStart >= endIndex) {
+      myShiftStart -= endIndex - startIndex;
+    }
+    else if (myShiftStart > startIndex) {
+      myShiftStart = startIndex;
+    }
   }
 
   @NotNull
@@ -170,9 +232,17 @@ public class SegmentArray {
   }
 
   protected void insert(@NotNull SegmentArray segmentArray, int startIndex) {
-    myStarts = insert(myStarts, segmentArray.myStarts, startIndex, segmentArray.getSegmentCount());
-    myEnds = insert(myEnds, segmentArray.myEnds, startIndex, segmentArray.getSegmentCount());
-    mySegmentCount += segmentArray.getSegmentCount();
+    segmentArray.applyShift();
+    int insertLength = segmentArray.getSegmentCount();
+    myStarts = insert(myStarts, segmentArray.myStarts, startIndex, insertLength);
+    myEnds = insert(myEnds, segmentArray.myEnds, startIndex, insertLength);
+    mySegmentCount += insertLength;
+    if (myShiftStart > startIndex) {
+      if (myShiftStart != Integer.MAX_VALUE) myShiftStart += insertLength;
+    }
+    else {
+      unshift(startIndex, startIndex + insertLength);
+    }
   }
 
   @NotNull
@@ -189,14 +259,14 @@ public class SegmentArray {
     if (index < 0 || index >= mySegmentCount) {
       throw new IndexOutOfBoundsException("Wrong line: " + index + ". Available lines count: " + mySegmentCount);
     }
-    return myStarts[index];
+    return myStarts[index] + getShift(index);
   }
 
   public int getSegmentEnd(int index) {
     if (index < 0 || index >= mySegmentCount) {
       throw new IndexOutOfBoundsException("Wrong line: " + index + ". Available lines count: " + mySegmentCount);
     }
-    return myEnds[index];
+    return myEnds[index] + getShift(index);
   }
 
 
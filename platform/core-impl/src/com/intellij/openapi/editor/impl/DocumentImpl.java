@@ -72,6 +72,7 @@ public class DocumentImpl extends UserDataHolderBase implements DocumentEx {
   private boolean myIsReadOnly = false;
   private volatile boolean isStripTrailingSpacesEnabled = true;
   private volatile long myModificationStamp;
+  private volatile DocumentSnapshot mySnapshot; // (text, stamp) pair, republished whenever the stamp changes
   private final PropertyChangeSupport myPropertyChangeSupport = new PropertyChangeSupport(this);
 
   private final List<EditReadOnlyListener> myReadOnlyListeners = ContainerUtil.createLockFreeCopyOnWriteList();
@@ -462,6 +463,17 @@ public class DocumentImpl extends UserDataHolderBase implements DocumentEx {
   @Override
   public void setModificationStamp(long modificationStamp) {
     myModificationStamp = modificationStamp;
+    mySnapshot = new DocumentSnapshot(myText, modificationStamp);
+  }
+
+  /**
+   * @return immutable text and line structure of the document as of the last completed modification.
+   * Unlike a pair of {@link #getImmutableCharSequence()} and {@link #getModificationStamp()} calls, the result is consistent
+   * even when obtained without read action, so background readers may keep working with it while the document is being changed.
+   */
+  @NotNull
+  public DocumentSnapshot getSnapshot() {
+    return mySnapshot;
   }
 
   @Override
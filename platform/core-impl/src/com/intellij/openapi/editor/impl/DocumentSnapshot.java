@@ -0,0 +1,115 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.editor.impl;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.text.LineTokenizer;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable state of a document at some modification stamp: the text (which shares its structure with the document's)
+ * and the line structure of that text. Can be used from any thread without read action, it's never changed by later
+ * document modifications. Line starts are calculated on the first request, in the requesting thread.
+ *
+ * @see DocumentImpl#getSnapshot()
+ */
+public final class DocumentSnapshot {
+  private final CharSequence myText;
+  private final long myModificationStamp;
+  private volatile int[] myLineStarts;
+
+  DocumentSnapshot(@NotNull CharSequence immutableText, long modificationStamp) {
+    myText = immutableText;
+    myModificationStamp = modificationStamp;
+  }
+
+  /**
+   * For {@link DocumentImpl} returns the published snapshot, for other documents makes one from the current text,
+   * so the caller should hold read action to get the text and the stamp consistent.
+   */
+  @NotNull
+  public static DocumentSnapshot of(@NotNull Document document) {
+    if (document instanceof DocumentImpl) {
+      return ((DocumentImpl)document).getSnapshot();
+    }
+    return new DocumentSnapshot(document.getImmutableCharSequence(), document.getModificationStamp());
+  }
+
+  @NotNull
+  public CharSequence getText() {
+    return myText;
+  }
+
+  public int getTextLength() {
+    return myText.length();
+  }
+
+  public long getModificationStamp() {
+    return myModificationStamp;
+  }
+
+  public int getLineCount() {
+    return getLineStarts().length;
+  }
+
+  public int getLineStartOffset(int line) {
+    return getLineStarts()[line];
+  }
+
+  /**
+   * @return end offset of the line, excluding the line separator
+   */
+  public int getLineEndOffset(int line) {
+    int[] starts = getLineStarts();
+    if (line == starts.length - 1) return myText.length();
+    int end = starts[line + 1];
+    if (end > 0 && myText.charAt(end - 1) == '\n') end--;
+    if (end > starts[line] && myText.charAt(end - 1) == '\r') end--;
+    return end;
+  }
+
+  public int getLineNumber(int offset) {
+    int[] starts = getLineStarts();
+    int line = Arrays.binarySearch(starts, offset);
+    return line >= 0 ? line : -line - 2;
+  }
+
+  @NotNull
+  private int[] getLineStarts() {
+    int[] starts = myLineStarts;
+    if (starts == null) {
+      // the result depends only on the immutable text, so concurrent computations are harmless
+      TIntArrayList list = new TIntArrayList();
+      list.add(0);
+      LineTokenizer tokenizer = new LineTokenizer(myText);
+      while (!tokenizer.atEnd()) {
+        int separatorEnd = tokenizer.getOffset() + tokenizer.getLength() + tokenizer.getLineSeparatorLength();
+        if (tokenizer.getLineSeparatorLength() > 0) list.add(separatorEnd);
+        tokenizer.advance();
+      }
+      myLineStarts = starts = list.toNativeArray();
+    }
+    return starts;
+  }
+
+  @Override
+  public String toString() {
+    return "DocumentSnapshot(stamp=" + myModificationStamp + ", length=" + myText.length() + ")";
+  }
+}
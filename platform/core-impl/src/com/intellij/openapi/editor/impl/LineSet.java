@@ -146,14 +146,8 @@ public class LineSet{
       segments.remove(changedLineIndex, changedLineIndex + 1);
     }
 
-// update data after lineIndex, shifting with optimizedLineShift
-    final int segmentCount = segments.getSegmentCount();
-    for(int i = changedLineIndex + 1; i < segmentCount; ++i) {
-      segments.setElementAt(i, segments.getSegmentStart(i) - lengthDiff,
-        segments.getSegmentEnd(i) - lengthDiff,
-        segments.getSegmentData(i)
-      );
-    }
+    // update data after lineIndex
+    segments.shiftSegments(changedLineIndex + 1, -lengthDiff);
 
     if (doTest) {
       final SegmentArrayWithData data = mySegments;
@@ -185,12 +179,15 @@ public class LineSet{
 
     int i;
 
-    // update data after lineIndex, shifting with optimizedLineShift
-    for(i = segments.getSegmentCount() - 1; i > changedLineIndex; --i) {
-      segments.setElementAt(i + optimizedLineShift, segments.getSegmentStart(i) + lengthDiff,
-        segments.getSegmentEnd(i) + lengthDiff,
-        segments.getSegmentData(i)
-      );
+    // update data after lineIndex, shifting with optimizedLineShift; the gap is filled below
+    segments.shiftSegments(changedLineIndex + 1, lengthDiff);
+    if (changedLineIndex + 1 < segments.getSegmentCount()) {
+      SegmentArrayWithData gap = new SegmentArrayWithData();
+      int gapOffset = segments.getSegmentStart(changedLineIndex + 1);
+      for (i = 0; i < optimizedLineShift; i++) {
+        gap.setElementAt(i, gapOffset, gapOffset, 0);
+      }
+      segments.insert(gap, changedLineIndex + 1);
     }
 
     final int oldSegmentEnd = segments.getSegmentEnd(changedLineIndex);
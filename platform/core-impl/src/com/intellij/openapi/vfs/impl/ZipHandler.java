@@ -20,19 +20,55 @@ import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.ZipFileCache;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.reference.SoftReference;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.containers.ContainerUtil;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.Reference;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.Enumeration;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 public class ZipHandler extends ArchiveHandler {
+  private static final int CHANNEL_TIMEOUT = 30000;  // idle channel close delay, ms
+
+  private static final Set<ZipHandler> ourOpenChannels = ContainerUtil.newConcurrentSet();
+
+  static {
+    ConcurrencyUtil.newSingleScheduledThreadExecutor("ZipHandler Channel Dispose", Thread.MIN_PRIORITY).scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        long timeout = System.currentTimeMillis() - CHANNEL_TIMEOUT;
+        for (ZipHandler handler : ourOpenChannels) {
+          handler.closeChannelIfIdle(timeout);
+        }
+      }
+    }, CHANNEL_TIMEOUT, CHANNEL_TIMEOUT / 3, TimeUnit.MILLISECONDS);
+  }
+
+  private volatile Reference<ZipIndex> myIndex = new SoftReference<ZipIndex>(null);
+  private volatile boolean myIndexUnsupported = false;
+
+  private final Object myChannelLock = new Object();
+  private FileChannel myChannel = null;
+  private int myChannelUsers = 0;
+  private long myChannelReleased = 0;
+  private boolean myDisposed = false;
+
   public ZipHandler(@NotNull String path) {
     super(path);
   }
@@ -40,6 +76,11 @@ public class ZipHandler extends ArchiveHandler {
   @NotNull
   @Override
   protected Map<String, EntryInfo> createEntriesMap() throws IOException {
+    ZipIndex index = getIndex();
+    if (index != null) {
+      return createEntriesMap(index);
+    }
+
     Map<String, EntryInfo> map = new THashMap<String, EntryInfo>();
     map.put("", createRootEntry());
 
@@ -62,6 +103,191 @@ public class ZipHandler extends ArchiveHandler {
     return getFile();
   }
 
+  /**
+   * Returns a compact entry table of the archive, or null when the archive cannot be indexed
+   * (e.g. it is in ZIP64 format) and {@code java.util.zip} should be used instead.
+   */
+  @Nullable
+  private ZipIndex getIndex() {
+    if (myIndexUnsupported) return null;
+
+    ZipIndex index = SoftReference.dereference(myIndex);
+    if (index == null) {
+      try {
+        index = loadIndex(getFileToUse());
+        myIndex = new SoftReference<ZipIndex>(index);
+      }
+      catch (ZipException e) {
+        Logger.getInstance(getClass()).info(getFileToUse() + ": " + e.getMessage());
+        myIndexUnsupported = true;
+      }
+      catch (IOException e) {
+        // may be transient (e.g. the archive is being written), so the index is tried again next time
+        Logger.getInstance(getClass()).info(getFileToUse() + ": " + e.getMessage());
+      }
+    }
+    return index;
+  }
+
+  @NotNull
+  protected ZipIndex loadIndex(@NotNull File file) throws IOException {
+    return ZipIndex.read(file);
+  }
+
+  @NotNull
+  private Map<String, EntryInfo> createEntriesMap(@NotNull ZipIndex index) {
+    Map<String, EntryInfo> map = new THashMap<String, EntryInfo>(index.size() + 1);
+    map.put("", createRootEntry());
+    for (int i = 0; i < index.size(); i++) {
+      getOrCreate(index, i, map);
+    }
+    return map;
+  }
+
+  @NotNull
+  private EntryInfo getOrCreate(ZipIndex index, int entry, Map<String, EntryInfo> map) {
+    boolean isDirectory = index.isDirectory(entry);
+    String entryName = index.getName(entry);
+    if (isDirectory) {
+      entryName = entryName.substring(0, entryName.length() - 1);
+    }
+
+    EntryInfo info = map.get(entryName);
+    if (info != null) return info;
+
+    Pair<String, String> path = splitPath(entryName);
+    EntryInfo parentInfo = getOrCreate(path.first, map, index);
+    if (".".equals(path.second)) {
+      return parentInfo;
+    }
+    info = new EntryInfo(parentInfo, path.second, isDirectory, index.getSize(entry), index.getTimestamp(entry));
+    map.put(entryName, info);
+    return info;
+  }
+
+  @NotNull
+  private EntryInfo getOrCreate(String entryName, Map<String, EntryInfo> map, ZipIndex index) {
+    EntryInfo info = map.get(entryName);
+
+    if (info == null) {
+      int entry = index.find(entryName + "/");
+      if (entry >= 0) {
+        return getOrCreate(index, entry, map);
+      }
+
+      Pair<String, String> path = splitPath(entryName);
+      EntryInfo parentInfo = getOrCreate(path.first, map, index);
+      info = new EntryInfo(parentInfo, path.second, true, DEFAULT_LENGTH, DEFAULT_TIMESTAMP);
+      map.put(entryName, info);
+    }
+
+    if (!info.isDirectory) {
+      Logger.getInstance(getClass()).info(getFileToUse() + ": " + entryName + " should be a directory");
+      info = new EntryInfo(info.parent, info.shortName, true, info.length, info.timestamp);
+      map.put(entryName, info);
+    }
+
+    return info;
+  }
+
+  /**
+   * Reads an entry through a channel shared by all readers of the archive. The channel is closed
+   * after it stays unused for a while, or as soon as it's unused once the handler is disposed,
+   * so that the archive is not kept open (and locked on Windows) by a forgotten handler.
+   */
+  @NotNull
+  private byte[] getContent(@NotNull ZipIndex index, int entry) throws IOException {
+    for (int attempt = 0; ; attempt++) {
+      FileChannel channel = acquireChannel();
+      boolean closed = false;
+      try {
+        return index.getContent(channel, entry);
+      }
+      catch (ClosedChannelException e) {
+        // an interrupted reader closes the channel for everyone else, who may just reopen it
+        closed = true;
+        if (attempt > 0 || Thread.currentThread().isInterrupted()) throw e;
+      }
+      finally {
+        releaseChannel(channel, closed);
+      }
+    }
+  }
+
+  @NotNull
+  private FileChannel acquireChannel() throws IOException {
+    synchronized (myChannelLock) {
+      if (myChannel == null) {
+        myChannel = new RandomAccessFile(getFileToUse(), "r").getChannel();
+        myChannelUsers = 0;
+        ourOpenChannels.add(this);
+      }
+      myChannelUsers++;
+      return myChannel;
+    }
+  }
+
+  private void releaseChannel(@NotNull FileChannel channel, boolean closed) {
+    boolean close = false;
+    synchronized (myChannelLock) {
+      if (channel != myChannel) return;
+      if (closed) {
+        myChannel = null;
+        ourOpenChannels.remove(this);
+      }
+      else if (--myChannelUsers == 0 && myDisposed) {
+        myChannel = null;
+        ourOpenChannels.remove(this);
+        close = true;
+      }
+      else {
+        myChannelReleased = System.currentTimeMillis();
+      }
+    }
+    if (close) {
+      closeChannel(channel);
+    }
+  }
+
+  private void closeChannelIfIdle(long timeout) {
+    FileChannel channel = null;
+    synchronized (myChannelLock) {
+      if (myChannel != null && myChannelUsers == 0 && myChannelReleased <= timeout) {
+        channel = myChannel;
+        myChannel = null;
+        ourOpenChannels.remove(this);
+      }
+    }
+    if (channel != null) {
+      closeChannel(channel);
+    }
+  }
+
+  @Override
+  public void dispose() {
+    FileChannel channel = null;
+    synchronized (myChannelLock) {
+      myDisposed = true;
+      if (myChannel != null && myChannelUsers == 0) { // otherwise the last reader closes it
+        channel = myChannel;
+        myChannel = null;
+        ourOpenChannels.remove(this);
+      }
+    }
+    if (channel != null) {
+      closeChannel(channel);
+    }
+  }
+
+  private void closeChannel(@NotNull FileChannel channel) {
+    try {
+      channel.close();
+    }
+    catch (IOException e) {
+      Logger.getInstance(getClass()).info(getFileToUse() + ": " + e.getMessage());
+    }
+  }
+
   @NotNull
   private ZipFile getZipFile() throws IOException {
     return ZipFileCache.acquire(getFileToUse().getPath());
@@ -117,6 +343,12 @@ public class ZipHandler extends ArchiveHandler {
   @NotNull
   @Override
   public byte[] contentsToByteArray(@NotNull String relativePath) throws IOException {
+    ZipIndex index = getIndex();
+    if (index != null) {
+      int entry = index.find(relativePath);
+      return entry >= 0 && !index.isDirectory(entry) ? getContent(index, entry) : ArrayUtil.EMPTY_BYTE_ARRAY;
+    }
+
     ZipFile zip = getZipFile();
     try {
       ZipEntry entry = zip.getEntry(relativePath);
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.impl;
+
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.ReadOnlyMappedBufferWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Calendar;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A compact, immutable table of .zip archive entries.
+ * <p/>
+ * The table is built by reading the central directory of an archive through a memory-mapped buffer, without
+ * creating an object per entry: entry names are kept as a single UTF-8 byte blob, and entry properties
+ * in parallel int arrays. Entry contents are read straight from a channel of the archive file using the recorded
+ * offsets, so neither {@link java.util.zip.ZipFile} nor its native structures are involved.
+ * <p/>
+ * ZIP64 archives are not supported; {@link #read(File)} throws {@link ZipException} for them, and callers
+ * are expected to fall back to {@code java.util.zip}.
+ */
+public class ZipIndex {
+  private static final int VERSION = 1;
+
+  private static final int END_HEADER_SIGNATURE = 0x06054b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int END_HEADER_SIZE = 22;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+  public static final int STORED = 0;
+  public static final int DEFLATED = 8;
+
+  private final int mySize;
+  private final byte[] myNames;
+  private final int[] myNameOffsets;  // mySize + 1 elements; name of entry i is [myNameOffsets[i], myNameOffsets[i + 1])
+  private final int[] myMethods;
+  private final int[] myDosTimes;
+  private final int[] myCompressedSizes;
+  private final int[] mySizes;
+  private final int[] myHeaderOffsets;
+  private final int[] myTable;  // open addressing table of (entry index + 1)
+  private volatile long[] myLastTime = null;  // entries of an archive usually share a timestamp
+
+  private ZipIndex(int size, byte[] names, int[] nameOffsets, int[] methods, int[] dosTimes,
+                   int[] compressedSizes, int[] sizes, int[] headerOffsets) {
+    mySize = size;
+    myNames = names;
+    myNameOffsets = nameOffsets;
+    myMethods = methods;
+    myDosTimes = dosTimes;
+    myCompressedSizes = compressedSizes;
+    mySizes = sizes;
+    myHeaderOffsets = headerOffsets;
+    myTable = buildTable();
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  /** @return the index of an entry with the given name, or -1 */
+  public int find(@NotNull String name) {
+    byte[] bytes = name.getBytes(CharsetToolkit.UTF8_CHARSET);
+    int mask = myTable.length - 1;
+    for (int slot = hash(bytes, 0, bytes.length) & mask; ; slot = (slot + 1) & mask) {
+      int entry = myTable[slot] - 1;
+      if (entry < 0) return -1;
+      if (nameEquals(entry, bytes)) return entry;
+    }
+  }
+
+  @NotNull
+  public String getName(int entry) {
+    int start = myNameOffsets[entry];
+    return new String(myNames, start, myNameOffsets[entry + 1] - start, CharsetToolkit.UTF8_CHARSET);
+  }
+
+  public boolean isDirectory(int entry) {
+    int end = myNameOffsets[entry + 1];
+    return end > myNameOffsets[entry] && myNames[end - 1] == '/';
+  }
+
+  public long getSize(int entry) {
+    return mySizes[entry] & 0xFFFFFFFFL;
+  }
+
+  public long getTimestamp(int entry) {
+    int dosTime = myDosTimes[entry];
+    long[] last = myLastTime;
+    if (last != null && last[0] == dosTime) return last[1];
+    long time = dosToJavaTime(dosTime);
+    myLastTime = new long[]{dosTime, time};
+    return time;
+  }
+
+  /**
+   * Reads the content of an entry through positional reads of the given channel, which may therefore be
+   * shared by concurrent callers.
+   */
+  @NotNull
+  public byte[] getContent(@NotNull FileChannel archive, int entry) throws IOException {
+    long size = getSize(entry);
+    long compressedSize = myCompressedSizes[entry] & 0xFFFFFFFFL;
+    if (size > Integer.MAX_VALUE || compressedSize > Integer.MAX_VALUE) {
+      throw new ZipException("Entry is too large: " + getName(entry));
+    }
+
+    long headerOffset = myHeaderOffsets[entry] & 0xFFFFFFFFL;
+    ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(archive, header, headerOffset);
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header: " + getName(entry));
+    }
+    long dataOffset = headerOffset + LOCAL_HEADER_SIZE + u16(header, 26) + u16(header, 28);
+
+    byte[] content = new byte[(int)size];
+    int method = myMethods[entry];
+    if (method == STORED) {
+      readFully(archive, ByteBuffer.wrap(content), dataOffset);
+    }
+    else if (method == DEFLATED) {
+      byte[] compressed = new byte[(int)compressedSize];
+      readFully(archive, ByteBuffer.wrap(compressed), dataOffset);
+      inflate(compressed, content);
+    }
+    else {
+      throw new ZipException("Unsupported compression method " + method + ": " + getName(entry));
+    }
+    return content;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) throw new EOFException();
+      position += read;
+    }
+  }
+
+  private static void inflate(byte[] compressed, byte[] content) throws ZipException {
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed);
+      int offset = 0;
+      boolean padded = false;
+      while (offset < content.length && !inflater.finished()) {
+        int n = inflater.inflate(content, offset, content.length - offset);
+        if (n == 0) {
+          if (inflater.needsInput() && !padded) {
+            // "nowrap" inflater may need an extra dummy byte to finish
+            inflater.setInput(new byte[1]);
+            padded = true;
+          }
+          else {
+            throw new ZipException("Unexpected end of compressed data");
+          }
+        }
+        offset += n;
+      }
+    }
+    catch (DataFormatException e) {
+      throw new ZipException(e.getMessage());
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+  /* reading */
+
+  @NotNull
+  public static ZipIndex read(@NotNull File archive) throws IOException {
+    long length = archive.length();
+    if (length < END_HEADER_SIZE) {
+      throw new ZipException("Not a zip file: " + archive);
+    }
+
+    int tailSize = (int)Math.min(length, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+    byte[] tail = new byte[tailSize];
+    RandomAccessFile file = new RandomAccessFile(archive, "r");
+    try {
+      file.seek(length - tailSize);
+      file.readFully(tail);
+    }
+    finally {
+      file.close();
+    }
+
+    ByteBuffer end = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+    int endOffset = -1;
+    for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+      if (end.getInt(i) == END_HEADER_SIGNATURE && i + END_HEADER_SIZE + u16(end, i + 20) == tailSize) {
+        endOffset = i;
+        break;
+      }
+    }
+    if (endOffset < 0) {
+      throw new ZipException("End of central directory not found: " + archive);
+    }
+
+    int count = u16(end, endOffset + 10);
+    long directorySize = end.getInt(endOffset + 12) & 0xFFFFFFFFL;
+    long directoryOffset = end.getInt(endOffset + 16) & 0xFFFFFFFFL;
+    if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+      throw new ZipException("ZIP64 archives are not supported: " + archive);
+    }
+    if (directoryOffset + directorySize > length || directoryOffset > Integer.MAX_VALUE) {
+      throw new ZipException("Invalid central directory offset: " + archive);
+    }
+
+    ReadOnlyMappedBufferWrapper wrapper = new ReadOnlyMappedBufferWrapper(archive, (int)directoryOffset) { };
+    try {
+      ByteBuffer directory = wrapper.getBuffer().duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      return read(directory, count, (int)directorySize, archive);
+    }
+    finally {
+      wrapper.unmap();
+    }
+  }
+
+  private static ZipIndex read(ByteBuffer directory, int count, int directorySize, File archive) throws ZipException {
+    // the first pass validates headers and sizes the name blob
+    int namesSize = 0;
+    for (int i = 0, p = 0; i < count; i++) {
+      if (p + CENTRAL_HEADER_SIZE > directorySize || directory.getInt(p) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory header: " + archive);
+      }
+      int nameLength = u16(directory, p + 28);
+      namesSize += nameLength;
+      p += CENTRAL_HEADER_SIZE + nameLength + u16(directory, p + 30) + u16(directory, p + 32);
+    }
+
+    byte[] names = new byte[namesSize];
+    int[] nameOffsets = new int[count + 1];
+    int[] methods = new int[count];
+    int[] dosTimes = new int[count];
+    int[] compressedSizes = new int[count];
+    int[] sizes = new int[count];
+    int[] headerOffsets = new int[count];
+
+    for (int i = 0, p = 0, n = 0; i < count; i++) {
+      int nameLength = u16(directory, p + 28);
+      methods[i] = u16(directory, p + 10);
+      dosTimes[i] = directory.getInt(p + 12);
+      compressedSizes[i] = directory.getInt(p + 20);
+      sizes[i] = directory.getInt(p + 24);
+      headerOffsets[i] = directory.getInt(p + 42);
+      if (compressedSizes[i] == -1 || sizes[i] == -1 || headerOffsets[i] == -1) {
+        throw new ZipException("ZIP64 archives are not supported: " + archive);
+      }
+
+      directory.position(p + CENTRAL_HEADER_SIZE);
+      directory.get(names, n, nameLength);
+      nameOffsets[i] = n;
+      n += nameLength;
+      nameOffsets[i + 1] = n;
+
+      p += CENTRAL_HEADER_SIZE + nameLength + u16(directory, p + 30) + u16(directory, p + 32);
+    }
+
+    return new ZipIndex(count, names, nameOffsets, methods, dosTimes, compressedSizes, sizes, headerOffsets);
+  }
+
+  /* persistence */
+
+  public void save(@NotNull DataOutput out) throws IOException {
+    DataInputOutputUtil.writeINT(out, VERSION);
+    DataInputOutputUtil.writeINT(out, mySize);
+    DataInputOutputUtil.writeINT(out, myNames.length);
+    out.write(myNames);
+    for (int i = 0; i < mySize; i++) {
+      DataInputOutputUtil.writeINT(out, myNameOffsets[i + 1] - myNameOffsets[i]);
+      DataInputOutputUtil.writeINT(out, myMethods[i]);
+      out.writeInt(myDosTimes[i]);
+      DataInputOutputUtil.writeINT(out, myCompressedSizes[i]);
+      DataInputOutputUtil.writeINT(out, mySizes[i]);
+      DataInputOutputUtil.writeINT(out, myHeaderOffsets[i]);
+    }
+  }
+
+  @NotNull
+  public static ZipIndex load(@NotNull DataInput in) throws IOException {
+    int version = DataInputOutputUtil.readINT(in);
+    if (version != VERSION) {
+      throw new IOException("Unsupported index version: " + version);
+    }
+
+    int size = DataInputOutputUtil.readINT(in);
+    byte[] names = new byte[DataInputOutputUtil.readINT(in)];
+    in.readFully(names);
+
+    int[] nameOffsets = new int[size + 1];
+    int[] methods = new int[size];
+    int[] dosTimes = new int[size];
+    int[] compressedSizes = new int[size];
+    int[] sizes = new int[size];
+    int[] headerOffsets = new int[size];
+    for (int i = 0; i < size; i++) {
+      nameOffsets[i + 1] = nameOffsets[i] + DataInputOutputUtil.readINT(in);
+      methods[i] = DataInputOutputUtil.readINT(in);
+      dosTimes[i] = in.readInt();
+      compressedSizes[i] = DataInputOutputUtil.readINT(in);
+      sizes[i] = DataInputOutputUtil.readINT(in);
+      headerOffsets[i] = DataInputOutputUtil.readINT(in);
+    }
+    if (nameOffsets[size] != names.length) {
+      throw new IOException("Corrupted index");
+    }
+
+    return new ZipIndex(size, names, nameOffsets, methods, dosTimes, compressedSizes, sizes, headerOffsets);
+  }
+
+  /* internals */
+
+  private int[] buildTable() {
+    int capacity = Integer.highestOneBit(Math.max(mySize, 1) * 2) << 1;
+    int[] table = new int[capacity];
+    int mask = capacity - 1;
+    next:
+    for (int i = 0; i < mySize; i++) {
+      int start = myNameOffsets[i];
+      int slot = hash(myNames, start, myNameOffsets[i + 1] - start) & mask;
+      while (table[slot] != 0) {
+        if (nameEquals(table[slot] - 1, myNames, start, myNameOffsets[i + 1] - start)) {
+          continue next;  // java.util.zip takes the first of duplicate entries as well
+        }
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+    }
+    return table;
+  }
+
+  private boolean nameEquals(int entry, byte[] bytes) {
+    return nameEquals(entry, bytes, 0, bytes.length);
+  }
+
+  private boolean nameEquals(int entry, byte[] bytes, int offset, int length) {
+    int start = myNameOffsets[entry];
+    if (myNameOffsets[entry + 1] - start != length) return false;
+    for (int i = 0; i < length; i++) {
+      if (myNames[start + i] != bytes[offset + i]) return false;
+    }
+    return true;
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    int h = 0;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + bytes[i];
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static int u16(ByteBuffer buffer, int offset) {
+    return buffer.getShort(offset) & 0xFFFF;
+  }
+
+  private static long dosToJavaTime(int dosTime) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    //noinspection MagicConstant
+    calendar.set(((dosTime >> 25) & 0x7F) + 1980, ((dosTime >> 21) & 0x0F) - 1, (dosTime >> 16) & 0x1F,
+                 (dosTime >> 11) & 0x1F, (dosTime >> 5) & 0x3F, (dosTime << 1) & 0x3E);
+    return calendar.getTimeInMillis();
+  }
+}
@@ -20,6 +20,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Attachment;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentSnapshot;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
@@ -62,7 +63,7 @@ public abstract class DocumentCommitProcessor {
     // when failed it's canceled
     @NotNull public final ProgressIndicator indicator; // progress to commit this doc under.
     @NotNull public final Object reason;
-    public boolean removed; // task marked as removed, should be ignored.
+    public volatile boolean removed; // task marked as removed, should be ignored.
 
     public CommitTask(@NotNull Document document,
                       @NotNull Project project,
@@ -105,9 +106,10 @@ public abstract class DocumentCommitProcessor {
                                @NotNull final PsiFile file,
                                final boolean synchronously) {
     Document document = task.document;
-    final long startDocModificationTimeStamp = document.getModificationStamp();
+    DocumentSnapshot snapshot = DocumentSnapshot.of(document);
+    final long startDocModificationTimeStamp = snapshot.getModificationStamp();
     final FileElement myTreeElementBeingReparsedSoItWontBeCollected = ((PsiFileImpl)file).calcTreeElement();
-    final CharSequence chars = document.getImmutableCharSequence();
+    final CharSequence chars = snapshot.getText();
     final TextRange changedPsiRange = getChangedPsiRange(file, myTreeElementBeingReparsedSoItWontBeCollected, chars);
     if (changedPsiRange == null) {
       return null;
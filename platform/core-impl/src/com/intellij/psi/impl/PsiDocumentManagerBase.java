@@ -27,6 +27,7 @@ import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.editor.event.DocumentListener;
 import com.intellij.openapi.editor.ex.DocumentBulkUpdateListener;
 import com.intellij.openapi.editor.ex.DocumentEx;
+import com.intellij.openapi.editor.impl.DocumentSnapshot;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
@@ -602,7 +603,8 @@ public abstract class PsiDocumentManagerBase extends PsiDocumentManager implemen
   public void beforeDocumentChange(@NotNull DocumentEvent event) {
     final Document document = event.getDocument();
     if (!(document instanceof DocumentWindow) && !myLastCommittedTexts.containsKey(document)) {
-      myLastCommittedTexts.put(document, Pair.create(document.getImmutableCharSequence(), document.getModificationStamp()));
+      DocumentSnapshot snapshot = DocumentSnapshot.of(document);
+      myLastCommittedTexts.put(document, Pair.create(snapshot.getText(), snapshot.getModificationStamp()));
     }
 
     VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(document);
@@ -392,6 +392,11 @@ public class PsiManagerImpl extends PsiManagerEx {
       LOG.assertTrue(!myTreeChangeEventIsFiring, "Changes to PSI are not allowed inside event processing");
       myTreeChangeEventIsFiring = true;
     }
+    PsiModificationTrackerImpl modificationTracker =
+      myModificationTracker instanceof PsiModificationTrackerImpl ? (PsiModificationTrackerImpl)myModificationTracker : null;
+    if (modificationTracker != null) {
+      modificationTracker.treeChangeStarted(file);
+    }
     try {
       for (PsiTreeChangePreprocessor preprocessor : myTreeChangePreprocessors) {
         preprocessor.treeChanged(event);
@@ -455,6 +460,9 @@ public class PsiManagerImpl extends PsiManagerEx {
       }
     }
     finally {
+      if (modificationTracker != null) {
+        modificationTracker.treeChangeFinished();
+      }
       if (isRealTreeChange) {
         myTreeChangeEventIsFiring = false;
       }
@@ -15,15 +15,27 @@
  */
 package com.intellij.psi.impl;
 
+import com.intellij.lang.Language;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.FileIndexFacade;
 import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.messages.MessageBus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -35,8 +47,18 @@ public class PsiModificationTrackerImpl implements PsiModificationTracker, PsiTr
   private final AtomicLong myOutOfCodeBlockModificationCount = new AtomicLong(0);
   private final AtomicLong myJavaStructureModificationCount = new AtomicLong(0);
   private final Listener myPublisher;
+  private final Project myProject;
+
+  // out-of-code-block modifications attributed to the languages and modules of the changed files, see getOutOfCodeBlockModificationTracker(Language/Module)
+  private final AtomicLong myNotFileModificationCount = new AtomicLong(0);
+  private final AtomicLong myNotModuleModificationCount = new AtomicLong(0);
+  private final ConcurrentMap<Language, AtomicLong> myLanguageModificationCounts = ContainerUtil.newConcurrentMap();
+  private final ConcurrentMap<Module, AtomicLong> myModuleModificationCounts = ContainerUtil.createConcurrentWeakMap();
+  private volatile PsiFile myChangedFile; // the file of the tree change event being fired, modified only in write action
+  private volatile int myChangeDepth;
 
   public PsiModificationTrackerImpl(Project project) {
+    myProject = project;
     final MessageBus bus = project.getMessageBus();
     myPublisher = bus.syncPublisher(TOPIC);
     bus.connect().subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
@@ -65,12 +87,14 @@ public class PsiModificationTrackerImpl implements PsiModificationTracker, PsiTr
     myModificationCount.getAndIncrement();
     myJavaStructureModificationCount.getAndIncrement();
     myOutOfCodeBlockModificationCount.getAndIncrement();
+    incAttributedCounters();
     myPublisher.modificationCountChanged();
   }
 
   public void incOutOfCodeBlockModificationCounter() {
     myModificationCount.getAndIncrement();
     myOutOfCodeBlockModificationCount.getAndIncrement();
+    incAttributedCounters();
     myPublisher.modificationCountChanged();
   }
 
@@ -79,11 +103,61 @@ public class PsiModificationTrackerImpl implements PsiModificationTracker, PsiTr
     myModificationCount.getAndIncrement();
     if (event.getParent() instanceof PsiDirectory) {
       myOutOfCodeBlockModificationCount.getAndIncrement();
+      myNotFileModificationCount.getAndIncrement();
     }
 
     myPublisher.modificationCountChanged();
   }
 
+  /**
+   * Called by {@link PsiManagerImpl} around firing of a tree change event, so that out-of-code-block modifications
+   * reported by the tree change preprocessors and listeners can be attributed to the languages and module of the changed file.
+   */
+  void treeChangeStarted(@Nullable PsiFile file) {
+    if (myChangeDepth++ == 0) {
+      myChangedFile = file;
+    }
+  }
+
+  void treeChangeFinished() {
+    if (--myChangeDepth == 0) {
+      myChangedFile = null;
+    }
+  }
+
+  private void incAttributedCounters() {
+    PsiFile file = myChangedFile;
+    if (file == null) {
+      // not a change of some file contents (e.g. roots or dumb mode change), might affect anything
+      myNotFileModificationCount.getAndIncrement();
+      return;
+    }
+
+    for (Language language : file.getViewProvider().getLanguages()) {
+      getCounter(myLanguageModificationCounts, language).getAndIncrement();
+    }
+
+    VirtualFile virtualFile = file.getViewProvider().getVirtualFile();
+    FileIndexFacade fileIndex = ServiceManager.getService(myProject, FileIndexFacade.class);
+    Module module = fileIndex == null ? null : fileIndex.getModuleForFile(virtualFile);
+    if (module != null) {
+      getCounter(myModuleModificationCounts, module).getAndIncrement();
+    }
+    else {
+      // e.g. library sources, which any module might depend on
+      myNotModuleModificationCount.getAndIncrement();
+    }
+  }
+
+  @NotNull
+  private static <K> AtomicLong getCounter(@NotNull ConcurrentMap<K, AtomicLong> counters, @NotNull K key) {
+    AtomicLong counter = counters.get(key);
+    if (counter == null) {
+      counter = ConcurrencyUtil.cacheOrGet(counters, key, new AtomicLong());
+    }
+    return counter;
+  }
+
   @Override
   public long getModificationCount() {
     return myModificationCount.get();
@@ -107,6 +181,55 @@ public class PsiModificationTrackerImpl implements PsiModificationTracker, PsiTr
     return myOutOfCodeBlockModificationTracker;
   }
 
+  /**
+   * A finer-grained version of {@link #getOutOfCodeBlockModificationTracker()} for caches which depend only on files of the given language:
+   * the count changes on out-of-code-block modifications in such files (including multi-language files containing the language)
+   * and on the modifications not related to any file contents (directories, roots, dumb mode).
+   */
+  @NotNull
+  public ModificationTracker getOutOfCodeBlockModificationTracker(@NotNull final Language language) {
+    return new ModificationTracker() {
+      @Override
+      public long getModificationCount() {
+        AtomicLong counter = myLanguageModificationCounts.get(language);
+        return myNotFileModificationCount.get() + (counter == null ? 0 : counter.get());
+      }
+    };
+  }
+
+  /**
+   * A finer-grained version of {@link #getOutOfCodeBlockModificationTracker()} for caches which depend only on files of the given module:
+   * the count changes on out-of-code-block modifications in the module files, in files outside of any module (e.g. library sources)
+   * and on the modifications not related to any file contents.
+   */
+  @NotNull
+  public ModificationTracker getOutOfCodeBlockModificationTracker(@NotNull Module module) {
+    return getOutOfCodeBlockModificationTracker(Collections.singletonList(module));
+  }
+
+  /**
+   * Same as {@link #getOutOfCodeBlockModificationTracker(Module)} for caches depending on files of several modules,
+   * e.g. on everything a module with its dependencies sees.
+   */
+  @NotNull
+  public ModificationTracker getOutOfCodeBlockModificationTracker(@NotNull Collection<Module> modules) {
+    final AtomicLong[] counters = new AtomicLong[modules.size()];
+    int i = 0;
+    for (Module module : modules) {
+      counters[i++] = getCounter(myModuleModificationCounts, module);
+    }
+    return new ModificationTracker() {
+      @Override
+      public long getModificationCount() {
+        long count = myNotFileModificationCount.get() + myNotModuleModificationCount.get();
+        for (AtomicLong counter : counters) {
+          count += counter.get();
+        }
+        return count;
+      }
+    };
+  }
+
   @Override
   public long getJavaStructureModificationCount() {
     return myJavaStructureModificationCount.get();
@@ -69,6 +69,11 @@ class InjectedSelfElementInfo extends SelfElementInfo {
     return getInjectedRange();
   }
 
+  @Override
+  protected boolean isRestoredFromLeaf() {
+    return false;
+  }
+
   @Override
   public PsiElement restoreElement() {
     if (!mySyncMarkerIsValid) return null;
@@ -15,6 +15,7 @@
  */
 package com.intellij.psi.impl.smartPointers;
 
+import com.intellij.lang.ASTNode;
 import com.intellij.lang.Language;
 import com.intellij.lang.LanguageUtil;
 import com.intellij.openapi.application.ApplicationManager;
@@ -31,6 +32,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.util.List;
 
 /**
 * User: cdr
@@ -163,10 +165,63 @@ public class SelfElementInfo implements SmartPointerElementInfo {
   }
 
   protected PsiElement restoreFromFile(@NotNull PsiFile file) {
-    final int syncStartOffset = getSyncStartOffset();
-    final int syncEndOffset = getSyncEndOffset();
+    PsiElement leaf = file.getViewProvider().findElementAt(getSyncStartOffset(), myLanguage);
+    return leaf == null ? null : restoreFromLeaf(leaf);
+  }
+
+  /**
+   * @return true if the element is restored by {@link #restoreFromLeaf} from the leaf found at the start offset,
+   * so that it can be restored together with other pointers of the file by {@link #restoreFromLeaves}
+   */
+  protected boolean isRestoredFromLeaf() {
+    return mySyncMarkerIsValid;
+  }
+
+  @Nullable
+  protected PsiElement restoreFromLeaf(@NotNull PsiElement leaf) {
+    return findElementFromLeaf(leaf, getSyncStartOffset(), getSyncEndOffset(), myType);
+  }
 
-    return findElementInside(file, syncStartOffset, syncEndOffset, myType, myLanguage);
+  /**
+   * Restores the elements of several infos of the given file in a single descent into the file tree: only the nodes containing
+   * the start offsets are visited, each of them once, instead of looking for the leaf at each offset from the file root.
+   * @param infos infos which are {@link #isRestoredFromLeaf() restored from leaf}, sorted by the start offset
+   * @return the restored elements (or nulls) in the order of the given infos
+   */
+  @NotNull
+  static PsiElement[] restoreFromLeaves(@NotNull PsiFile file, @NotNull List<SelfElementInfo> infos) {
+    PsiElement[] result = new PsiElement[infos.size()];
+    ASTNode root = file.getNode();
+    if (root != null) {
+      restoreFromLeaves(root, 0, infos, 0, result);
+    }
+    return result;
+  }
+
+  private static int restoreFromLeaves(@NotNull ASTNode parent,
+                                       int parentStart,
+                                       @NotNull List<SelfElementInfo> infos,
+                                       int index,
+                                       @NotNull PsiElement[] result) {
+    int childStart = parentStart;
+    for (ASTNode child = parent.getFirstChildNode(); child != null && index < infos.size(); child = child.getTreeNext()) {
+      int childEnd = childStart + child.getTextLength();
+      if (infos.get(index).getSyncStartOffset() < childEnd) {
+        if (child.getFirstChildNode() == null) {
+          PsiElement leaf = child.getPsi();
+          while (index < infos.size() && infos.get(index).getSyncStartOffset() < childEnd) {
+            SelfElementInfo info = infos.get(index);
+            result[index] = leaf == null || info.getSyncStartOffset() != childStart ? null : info.restoreFromLeaf(leaf);
+            index++;
+          }
+        }
+        else {
+          index = restoreFromLeaves(child, childStart, infos, index, result);
+        }
+      }
+      childStart = childEnd;
+    }
+    return index;
   }
 
   @Override
@@ -182,6 +237,11 @@ public class SelfElementInfo implements SmartPointerElementInfo {
     PsiElement anchor = file.getViewProvider().findElementAt(syncStartOffset, language);
     if (anchor == null) return null;
 
+    return findElementFromLeaf(anchor, syncStartOffset, syncEndOffset, type);
+  }
+
+  @Nullable
+  private static PsiElement findElementFromLeaf(@NotNull PsiElement anchor, int syncStartOffset, int syncEndOffset, @NotNull Class type) {
     TextRange range = anchor.getTextRange();
 
     if (range.getStartOffset() != syncStartOffset) return null;
@@ -36,6 +36,10 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
 public class SmartPointerManagerImpl extends SmartPointerManager {
@@ -221,6 +225,82 @@ public class SmartPointerManagerImpl extends SmartPointerManager {
     return false;
   }
 
+  private static final int BATCH_RESTORE_THRESHOLD = 20;
+  private static final Key<Long> BATCH_RESTORED_STAMP_KEY = Key.create("SMART_POINTERS_BATCH_RESTORED_STAMP");
+
+  // UnsafeWeakList doesn't know its size, and counting all the pointers would make each restore O(n)
+  private static boolean hasAtLeast(@NotNull List<SmartPointerEx> pointers, int count) {
+    Iterator<SmartPointerEx> iterator = pointers.iterator();
+    for (int i = 0; i < count; i++) {
+      if (!iterator.hasNext()) return false;
+      iterator.next();
+    }
+    return true;
+  }
+
+  /**
+   * After reparse all the pointers of the file lose their elements. When one of them is asked for its element and the file
+   * has many pointers, restores all such pointers at once in a single pass over the file tree (see {@link SelfElementInfo#restoreFromLeaves}),
+   * instead of looking up the element of each pointer from the file root. Done at most once per file modification.
+   *
+   * @return true if the given pointer has been restored along with the others
+   */
+  boolean restoreInBatch(@NotNull SmartPsiElementPointerImpl pointer) {
+    SelfElementInfo info = (SelfElementInfo)pointer.getElementInfo();
+    VirtualFile virtualFile = info.getVirtualFile();
+    if (virtualFile == null || !info.isRestoredFromLeaf()) return false;
+
+    synchronized (lock) {
+      List<SmartPointerEx> list = getPointers(virtualFile);
+      if (list == null || !hasAtLeast(list, BATCH_RESTORE_THRESHOLD)) return false;
+    }
+
+    PsiFile file = info.restoreFile();
+    if (file == null || !file.isValid()) return false;
+    Long stamp = file.getModificationStamp();
+    if (stamp.equals(file.getUserData(BATCH_RESTORED_STAMP_KEY))) return false;
+    file.putUserData(BATCH_RESTORED_STAMP_KEY, stamp);
+
+    // copy the pointers only once per file modification, so that pointers which can't be restored don't cost O(n) each
+    List<SmartPointerEx> pointers;
+    synchronized (lock) {
+      List<SmartPointerEx> list = getPointers(virtualFile);
+      if (list == null) return false;
+      pointers = ((UnsafeWeakList<SmartPointerEx>)list).toStrongList();
+    }
+
+    List<SmartPsiElementPointerImpl> toRestore = new ArrayList<SmartPsiElementPointerImpl>();
+    boolean restored = false;
+    for (SmartPointerEx each : pointers) {
+      if (!(each instanceof SmartPsiElementPointerImpl)) continue;
+      SmartPsiElementPointerImpl eachPointer = (SmartPsiElementPointerImpl)each;
+      SmartPointerElementInfo eachInfo = eachPointer.getElementInfo();
+      if (eachInfo instanceof SelfElementInfo &&
+          ((SelfElementInfo)eachInfo).isRestoredFromLeaf() &&
+          ((SelfElementInfo)eachInfo).myLanguage == info.myLanguage &&
+          eachPointer.needsRestore()) {
+        toRestore.add(eachPointer);
+        restored |= eachPointer == pointer;
+      }
+    }
+    Collections.sort(toRestore, new Comparator<SmartPsiElementPointerImpl>() {
+      @Override
+      public int compare(SmartPsiElementPointerImpl o1, SmartPsiElementPointerImpl o2) {
+        return ((SelfElementInfo)o1.getElementInfo()).getSyncStartOffset() - ((SelfElementInfo)o2.getElementInfo()).getSyncStartOffset();
+      }
+    });
+
+    List<SelfElementInfo> infos = new ArrayList<SelfElementInfo>(toRestore.size());
+    for (SmartPsiElementPointerImpl each : toRestore) {
+      infos.add((SelfElementInfo)each.getElementInfo());
+    }
+    PsiElement[] elements = SelfElementInfo.restoreFromLeaves(file, infos);
+    for (int i = 0; i < elements.length; i++) {
+      toRestore.get(i).cacheRestoredElement(elements[i]);
+    }
+    return restored;
+  }
+
   private List<SmartPointerEx> getPointers(@NotNull VirtualFile containingFile) {
     return containingFile.getUserData(POINTERS_KEY);
   }
@@ -73,23 +73,44 @@ class SmartPsiElementPointerImpl<E extends PsiElement> implements SmartPointerEx
   @Override
   @Nullable
   public E getElement() {
-    E element = getCachedElement();
-    if (element != null && !element.isValid()) {
-      element = null;
+    E element = getValidCachedElement();
+    if (element == null && myElementInfo instanceof SelfElementInfo) {
+      SmartPointerManager manager = SmartPointerManager.getInstance(getProject());
+      if (manager instanceof SmartPointerManagerImpl && ((SmartPointerManagerImpl)manager).restoreInBatch(this)) {
+        element = getValidCachedElement();
+      }
     }
     if (element == null) {
-      //noinspection unchecked
-      element = (E)myElementInfo.restoreElement();
-      if (element != null && (!element.getClass().equals(myElementClass) || !element.isValid())) {
-        element = null;
-      }
-
+      element = restored(myElementInfo.restoreElement());
       cacheElement(element);
     }
 
     return element;
   }
 
+  @Nullable
+  private E getValidCachedElement() {
+    E element = getCachedElement();
+    return element != null && element.isValid() ? element : null;
+  }
+
+  @Nullable
+  private E restored(@Nullable PsiElement element) {
+    if (element != null && (!element.getClass().equals(myElementClass) || !element.isValid())) {
+      return null;
+    }
+    //noinspection unchecked
+    return (E)element;
+  }
+
+  boolean needsRestore() {
+    return getValidCachedElement() == null;
+  }
+
+  void cacheRestoredElement(@Nullable PsiElement element) {
+    cacheElement(restored(element));
+  }
+
   private void cacheElement(E element) {
     myElement = element == null ? null : new SoftReference<E>(element);
   }
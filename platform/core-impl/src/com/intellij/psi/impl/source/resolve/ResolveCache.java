@@ -22,9 +22,15 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.AnyPsiChangeListener;
 import com.intellij.psi.impl.PsiManagerImpl;
+import com.intellij.psi.impl.PsiTreeChangeEventImpl;
+import com.intellij.psi.impl.PsiTreeChangePreprocessor;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.containers.ConcurrentWeakKeySoftValueHashMap;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.messages.MessageBus;
@@ -32,8 +38,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.ref.ReferenceQueue;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ResolveCache {
   private static final Logger LOG = Logger.getInstance("#com.intellij.psi.impl.source.resolve.ResolveCache");
@@ -41,6 +49,24 @@ public class ResolveCache {
   private final ConcurrentMap[] myMaps = new ConcurrentWeakKeySoftValueHashMap[2*2*2]; //boolean physical, boolean incompleteCode, boolean isPoly
   private final RecursionGuard myGuard = RecursionManager.createGuard("resolveCache");
 
+  /**
+   * Results for references in physical files, one partition per file, used when "resolve.cache.partitioned" registry key is set.
+   * A change inside a code block of some file drops only the partition of that file, an out-of-code-block change drops all of them.
+   * The number of partitions is limited by "resolve.cache.max.partitions", the least recently used ones are evicted first.
+   */
+  private final ConcurrentMap<PsiFile, Partition> myPartitions = ContainerUtil.createConcurrentWeakMap();
+  private final AtomicInteger myPartitionCount = new AtomicInteger(); // may exceed the actual size after garbage collection
+  @Nullable private final PsiModificationTracker myModificationTracker;
+  private final RegistryValue myPartitioned;
+  private volatile long myPartitionsStamp = -1;
+  private volatile boolean myUnexplainedPhysicalChange;
+  private volatile long myAccessClock;
+
+  private final AtomicLong myHits = new AtomicLong();
+  private final AtomicLong myMisses = new AtomicLong();
+  private final AtomicLong myEvictedPartitions = new AtomicLong();
+  private final ConcurrentMap<Class, AtomicInteger> myComputations = ContainerUtil.newConcurrentMap();
+
   public static ResolveCache getInstance(Project project) {
     ProgressIndicatorProvider.checkCanceled(); // We hope this method is being called often enough to cancel daemon processes smoothly
     return ServiceManager.getService(project, ResolveCache.class);
@@ -74,13 +100,42 @@ public class ResolveCache {
   }
 
   public ResolveCache(@NotNull MessageBus messageBus) {
+    this(messageBus, null);
+  }
+
+  public ResolveCache(@NotNull MessageBus messageBus, @Nullable PsiManager psiManager) {
     for (int i = 0; i < myMaps.length; i++) {
       myMaps[i] = createWeakMap();
     }
+    if (psiManager instanceof PsiManagerImpl) {
+      myModificationTracker = psiManager.getModificationTracker();
+      myPartitioned = Registry.get("resolve.cache.partitioned");
+      ((PsiManagerImpl)psiManager).addTreeChangePreprocessor(new PsiTreeChangePreprocessor() {
+        @Override
+        public void treeChanged(@NotNull PsiTreeChangeEventImpl event) {
+          dropPartition(event);
+        }
+      });
+    }
+    else {
+      myModificationTracker = null;
+      myPartitioned = null;
+    }
     messageBus.connect().subscribe(PsiManagerImpl.ANY_PSI_CHANGE_TOPIC, new AnyPsiChangeListener() {
       @Override
       public void beforePsiChanged(boolean isPhysical) {
-        clearCache(isPhysical);
+        if (isPhysical && isPartitioned()) {
+          clearUnpartitioned();
+          // the change is expected to be followed by a tree change event telling which file is changed,
+          // otherwise (e.g. PsiManager.dropResolveCaches()) all the partitions are dropped
+          if (myUnexplainedPhysicalChange) {
+            clearPartitions();
+          }
+          myUnexplainedPhysicalChange = true;
+        }
+        else {
+          clearCache(isPhysical);
+        }
       }
 
       @Override
@@ -118,6 +173,51 @@ public class ResolveCache {
   public void clearCache(boolean isPhysical) {
     int startIndex = isPhysical ? 0 : 1;
     for (int i=startIndex;i<2;i++)for (int j=0;j<2;j++)for (int k=0;k<2;k++) myMaps[i*4+j*2+k].clear();
+    if (isPhysical) {
+      clearPartitions();
+    }
+  }
+
+  private void clearUnpartitioned() {
+    for (ConcurrentMap map : myMaps) {
+      map.clear();
+    }
+  }
+
+  private void clearPartitions() {
+    myPartitions.clear();
+    myPartitionCount.set(0);
+  }
+
+  private boolean isPartitioned() {
+    return myPartitioned != null && myPartitioned.asBoolean();
+  }
+
+  private void dropPartition(@NotNull PsiTreeChangeEventImpl event) {
+    PsiFile file = event.getFile();
+    if (file == null) {
+      clearPartitions(); // directory or file-level change
+    }
+    else if (myPartitions.remove(file) != null) {
+      myPartitionCount.decrementAndGet();
+    }
+    if (isBeforeEvent(event)) {
+      myUnexplainedPhysicalChange = false;
+    }
+  }
+
+  private static boolean isBeforeEvent(@NotNull PsiTreeChangeEventImpl event) {
+    switch (event.getCode()) {
+      case BEFORE_CHILD_ADDITION:
+      case BEFORE_CHILD_REMOVAL:
+      case BEFORE_CHILD_REPLACEMENT:
+      case BEFORE_CHILD_MOVEMENT:
+      case BEFORE_CHILDREN_CHANGE:
+      case BEFORE_PROPERTY_CHANGE:
+        return true;
+      default:
+        return false;
+    }
   }
 
   @Nullable
@@ -132,12 +232,13 @@ public class ResolveCache {
       ApplicationManager.getApplication().assertReadAccessAllowed();
     }
 
-    int index = getIndex(isPhysical, incompleteCode, isPoly);
-    ConcurrentMap<TRef, TResult> map = getMap(index);
+    ConcurrentMap<TRef, TResult> map = getMap(isPhysical, incompleteCode, isPoly, ref);
     TResult result = map.get(ref);
     if (result != null) {
+      myHits.incrementAndGet();
       return result;
     }
+    registerMiss(resolver);
 
     RecursionGuard.StackStamp stamp = myGuard.markStack();
     result = needToPreventRecursion ? myGuard.doPreventingRecursion(Trinity.create(ref, incompleteCode, isPoly), true, new Computable<TResult>() {
@@ -181,12 +282,13 @@ public class ResolveCache {
     ProgressIndicatorProvider.checkCanceled();
     ApplicationManager.getApplication().assertReadAccessAllowed();
 
-    int index = getIndex(containingFile.isPhysical(), incompleteCode, true);
-    ConcurrentMap<T, ResolveResult[]> map = getMap(index);
+    ConcurrentMap<T, ResolveResult[]> map = getMap(containingFile.isPhysical(), incompleteCode, true, containingFile);
     ResolveResult[] result = map.get(ref);
     if (result != null) {
+      myHits.incrementAndGet();
       return result;
     }
+    registerMiss(resolver);
 
     RecursionGuard.StackStamp stamp = myGuard.markStack();
     result = needToPreventRecursion ? myGuard.doPreventingRecursion(Pair.create(ref, incompleteCode), true, new Computable<ResolveResult[]>() {
@@ -204,7 +306,7 @@ public class ResolveCache {
 
   @Nullable
   public <T extends PsiPolyVariantReference> ResolveResult[] getCachedResults(@NotNull T ref, boolean physical, boolean incompleteCode, boolean isPoly) {
-    Map<T, ResolveResult[]> map = getMap(getIndex(physical, incompleteCode, isPoly));
+    Map<T, ResolveResult[]> map = getMap(physical, incompleteCode, isPoly, ref);
     return map.get(ref);
   }
 
@@ -218,11 +320,138 @@ public class ResolveCache {
   }
 
   @NotNull
-  private <TRef extends PsiReference,TResult> ConcurrentMap<TRef, TResult> getMap(int index) {
+  private <TRef extends PsiReference,TResult> ConcurrentMap<TRef, TResult> getMap(boolean physical,
+                                                                                   boolean incompleteCode,
+                                                                                   boolean isPoly,
+                                                                                   @NotNull PsiReference ref) {
+    PsiFile file = physical && isPartitioned() ? ref.getElement().getContainingFile() : null;
+    return getMap(physical, incompleteCode, isPoly, file);
+  }
+
+  @NotNull
+  private <TRef extends PsiReference,TResult> ConcurrentMap<TRef, TResult> getMap(boolean physical,
+                                                                                   boolean incompleteCode,
+                                                                                   boolean isPoly,
+                                                                                   @Nullable PsiFile file) {
+    int index = getIndex(physical, incompleteCode, isPoly);
+    // injected fragments are changed along with their hosts, so they're kept in the common maps cleared on any change
+    if (physical && file != null && file.getContext() == null && isPartitioned()) {
+      //noinspection unchecked
+      return getPartition(file).myMaps[index];
+    }
     //noinspection unchecked
     return myMaps[index];
   }
 
+  @NotNull
+  private Partition getPartition(@NotNull PsiFile file) {
+    assert myModificationTracker != null;
+    long stamp = myModificationTracker.getOutOfCodeBlockModificationCount();
+    if (stamp != myPartitionsStamp || myUnexplainedPhysicalChange) {
+      clearPartitions();
+      myUnexplainedPhysicalChange = false;
+      myPartitionsStamp = stamp;
+    }
+
+    Partition partition = myPartitions.get(file);
+    if (partition == null) {
+      Partition newPartition = new Partition();
+      partition = ConcurrencyUtil.cacheOrGet(myPartitions, file, newPartition);
+      if (partition == newPartition && myPartitionCount.incrementAndGet() > Registry.intValue("resolve.cache.max.partitions")) {
+        evictLeastRecentlyUsed();
+      }
+    }
+    partition.myLastAccess = ++myAccessClock; // races here only make the eviction order a bit less precise
+    return partition;
+  }
+
+  private void evictLeastRecentlyUsed() {
+    synchronized (myPartitions) {
+      int max = Registry.intValue("resolve.cache.max.partitions");
+      int size = myPartitions.size();
+      myPartitionCount.set(size);
+      if (size <= max) return;
+
+      List<Map.Entry<PsiFile, Partition>> entries = new ArrayList<Map.Entry<PsiFile, Partition>>(myPartitions.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<PsiFile, Partition>>() {
+        @Override
+        public int compare(Map.Entry<PsiFile, Partition> o1, Map.Entry<PsiFile, Partition> o2) {
+          long diff = o1.getValue().myLastAccess - o2.getValue().myLastAccess;
+          return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+        }
+      });
+      // evict a quarter more than necessary so that the next eviction doesn't happen on the next new file
+      int toEvict = Math.min(entries.size(), size - max + max / 4);
+      for (int i = 0; i < toEvict; i++) {
+        if (myPartitions.remove(entries.get(i).getKey()) != null) {
+          myPartitionCount.decrementAndGet();
+        }
+      }
+      myEvictedPartitions.addAndGet(toEvict);
+    }
+  }
+
+  private void registerMiss(@NotNull Object resolver) {
+    myMisses.incrementAndGet();
+    AtomicInteger count = myComputations.get(resolver.getClass());
+    if (count == null) {
+      count = ConcurrencyUtil.cacheOrGet(myComputations, resolver.getClass(), new AtomicInteger());
+    }
+    count.incrementAndGet();
+  }
+
+  public long getHitCount() {
+    return myHits.get();
+  }
+
+  public long getMissCount() {
+    return myMisses.get();
+  }
+
+  public int getPartitionCount() {
+    return myPartitions.size();
+  }
+
+  public long getEvictedPartitionCount() {
+    return myEvictedPartitions.get();
+  }
+
+  /**
+   * @return the number of cache misses, i.e. actual resolve computations, for each resolver class, most frequent first
+   */
+  @NotNull
+  public List<Pair<String, Integer>> getComputationCounts() {
+    List<Pair<String, Integer>> result = new ArrayList<Pair<String, Integer>>();
+    for (Map.Entry<Class, AtomicInteger> entry : myComputations.entrySet()) {
+      result.add(Pair.create(entry.getKey().getName(), entry.getValue().get()));
+    }
+    Collections.sort(result, new Comparator<Pair<String, Integer>>() {
+      @Override
+      public int compare(Pair<String, Integer> o1, Pair<String, Integer> o2) {
+        return o2.second.compareTo(o1.second);
+      }
+    });
+    return result;
+  }
+
+  public void resetStatistics() {
+    myHits.set(0);
+    myMisses.set(0);
+    myEvictedPartitions.set(0);
+    myComputations.clear();
+  }
+
+  private static class Partition {
+    private final ConcurrentMap[] myMaps = new ConcurrentMap[2*2]; //boolean incompleteCode, boolean isPoly; physical only
+    private volatile long myLastAccess;
+
+    private Partition() {
+      for (int i = 0; i < myMaps.length; i++) {
+        myMaps[i] = createWeakMap();
+      }
+    }
+  }
+
   private static int getIndex(boolean physical, boolean incompleteCode, boolean isPoly) {
     return (physical ? 0 : 1)*4 + (incompleteCode ? 0 : 1)*2 + (isPoly ? 0 : 1);
   }
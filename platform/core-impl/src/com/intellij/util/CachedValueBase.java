@@ -112,6 +112,33 @@ public abstract class CachedValueBase<T> {
     return true;
   }
 
+  @NotNull
+  private String getInvalidationCause() {
+    Data<T> data = getData();
+    if (data == null) {
+      return myData == null ? CachedValueProfiler.NOT_COMPUTED : CachedValueProfiler.COLLECTED;
+    }
+    if (data.myTimeStamps != null) {
+      for (int i = 0; i < data.myDependencies.length; i++) {
+        Object dependency = data.myDependencies[i];
+        if (dependency != null && isDependencyOutOfDate(dependency, data.myTimeStamps[i])) {
+          return describeDependency(dependency);
+        }
+      }
+    }
+    return "unknown";
+  }
+
+  @NotNull
+  private static String describeDependency(@NotNull Object dependency) {
+    if (dependency instanceof Key) {
+      return dependency.toString(); // e.g. PsiModificationTracker.MODIFICATION_COUNT
+    }
+    Object referent = dependency instanceof Reference ? ((Reference)dependency).get() :
+                      dependency instanceof Ref ? ((Ref)dependency).get() : dependency;
+    return referent == null ? "collected reference" : referent.getClass().getName();
+  }
+
   protected boolean isDependencyOutOfDate(Object dependency, long oldTimeStamp) {
     if (dependency instanceof CachedValueBase) {
       return !((CachedValueBase)dependency).hasUpToDateValue();
@@ -168,6 +195,8 @@ public abstract class CachedValueBase<T> {
 
   public abstract boolean isFromMyProject(Project project);
 
+  public abstract Object getValueProvider();
+
   protected static class Data<T> implements Disposable {
     private final T myValue;
     private final Object[] myDependencies;
@@ -191,14 +220,24 @@ public abstract class CachedValueBase<T> {
   protected <P> T getValueWithLock(P param) {
     T value = getUpToDateOrNull(true);
     if (value != null) {
+      if (CachedValueProfiler.isEnabled()) {
+        CachedValueProfiler.valueUsed(getValueProvider());
+      }
       return value == ObjectUtils.NULL ? null : value;
     }
 
     RecursionGuard.StackStamp stamp = RecursionManager.createGuard("cachedValue").markStack();
 
+    String invalidationCause = CachedValueProfiler.isEnabled() ? getInvalidationCause() : null;
+    long start = invalidationCause == null ? 0 : System.nanoTime();
+
     // compute outside lock to avoid deadlock
     CachedValueProvider.Result<T> result = doCompute(param);
 
+    if (invalidationCause != null) {
+      CachedValueProfiler.valueComputed(getValueProvider(), System.nanoTime() - start, invalidationCause);
+    }
+
     if (stamp.mayCacheNow()) {
       return setValue(result);
     }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects statistics of {@link CachedValueBase cached values} per value provider class: how often the value is taken
+ * from the cache and how often (and for how long) it's recomputed, and which dependency made the cached value outdated.
+ * Helps to find providers whose dependencies change so often that caching is of no use.
+ * Disabled by default, nothing is recorded until {@link #setEnabled(boolean)} is called.
+ */
+public class CachedValueProfiler {
+  public static final String NOT_COMPUTED = "not computed yet or cleared";
+  public static final String COLLECTED = "garbage collected";
+
+  private static volatile boolean ourEnabled;
+  private static final ConcurrentMap<Class, ProviderStatistics> ourStatistics = ContainerUtil.newConcurrentMap();
+
+  private CachedValueProfiler() {
+  }
+
+  public static boolean isEnabled() {
+    return ourEnabled;
+  }
+
+  /**
+   * Starts or stops recording; the statistics collected so far are dropped on start.
+   */
+  public static void setEnabled(boolean enabled) {
+    if (enabled && !ourEnabled) {
+      reset();
+    }
+    ourEnabled = enabled;
+  }
+
+  public static void reset() {
+    ourStatistics.clear();
+  }
+
+  static void valueUsed(@NotNull Object provider) {
+    getStatistics(provider).myHits.incrementAndGet();
+  }
+
+  static void valueComputed(@NotNull Object provider, long nanos, @NotNull String invalidationCause) {
+    ProviderStatistics statistics = getStatistics(provider);
+    statistics.myComputations.incrementAndGet();
+    statistics.myComputationTime.addAndGet(nanos);
+    AtomicInteger count = statistics.myInvalidationCauses.get(invalidationCause);
+    if (count == null) {
+      count = ConcurrencyUtil.cacheOrGet(statistics.myInvalidationCauses, invalidationCause, new AtomicInteger());
+    }
+    count.incrementAndGet();
+  }
+
+  @NotNull
+  private static ProviderStatistics getStatistics(@NotNull Object provider) {
+    Class providerClass = provider.getClass();
+    ProviderStatistics statistics = ourStatistics.get(providerClass);
+    if (statistics == null) {
+      statistics = ConcurrencyUtil.cacheOrGet(ourStatistics, providerClass, new ProviderStatistics(providerClass.getName()));
+    }
+    return statistics;
+  }
+
+  /**
+   * @return statistics of all the providers used since the profiling was started, most computed ones first
+   */
+  @NotNull
+  public static List<ProviderStatistics> getStatistics() {
+    List<ProviderStatistics> result = new ArrayList<ProviderStatistics>(ourStatistics.values());
+    Collections.sort(result, new Comparator<ProviderStatistics>() {
+      @Override
+      public int compare(ProviderStatistics o1, ProviderStatistics o2) {
+        long diff = o2.getComputationCount() - o1.getComputationCount();
+        return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+      }
+    });
+    return result;
+  }
+
+  public static class ProviderStatistics {
+    private final String myProviderClass;
+    private final AtomicLong myHits = new AtomicLong();
+    private final AtomicLong myComputations = new AtomicLong();
+    private final AtomicLong myComputationTime = new AtomicLong();
+    private final ConcurrentMap<String, AtomicInteger> myInvalidationCauses = ContainerUtil.newConcurrentMap();
+
+    private ProviderStatistics(@NotNull String providerClass) {
+      myProviderClass = providerClass;
+    }
+
+    @NotNull
+    public String getProviderClass() {
+      return myProviderClass;
+    }
+
+    public long getHitCount() {
+      return myHits.get();
+    }
+
+    public long getComputationCount() {
+      return myComputations.get();
+    }
+
+    /**
+     * @return total time of the computations, including the time of computing the cached values they use
+     */
+    public long getComputationTimeMs() {
+      return myComputationTime.get() / 1000000;
+    }
+
+    /**
+     * @return the part of value requests served from the cache, from 0 to 1
+     */
+    public double getHitRatio() {
+      long hits = getHitCount();
+      long total = hits + getComputationCount();
+      return total == 0 ? 0 : (double)hits / total;
+    }
+
+    /**
+     * @return causes of the computations (the first outdated dependency found, or {@link #NOT_COMPUTED} or {@link #COLLECTED})
+     * with their counts, most frequent first
+     */
+    @NotNull
+    public List<Pair<String, Integer>> getInvalidationCauses() {
+      List<Pair<String, Integer>> result = new ArrayList<Pair<String, Integer>>();
+      for (Map.Entry<String, AtomicInteger> entry : myInvalidationCauses.entrySet()) {
+        result.add(Pair.create(entry.getKey(), entry.getValue().get()));
+      }
+      Collections.sort(result, new Comparator<Pair<String, Integer>>() {
+        @Override
+        public int compare(Pair<String, Integer> o1, Pair<String, Integer> o2) {
+          return o2.second.compareTo(o1.second);
+        }
+      });
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return myProviderClass + ": computed " + getComputationCount() + " times in " + getComputationTimeMs() + "ms, " +
+             "hits: " + getHitCount() + ", causes: " + getInvalidationCauses();
+    }
+  }
+}
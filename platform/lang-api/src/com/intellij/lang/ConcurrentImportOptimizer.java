@@ -0,0 +1,26 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.lang;
+
+/**
+ * An {@link ImportOptimizer} whose {@link #processFile(com.intellij.psi.PsiFile)} only reads the file and doesn't depend on
+ * shared mutable state, so that it may be called for several files at once, each in its own thread holding a read action.
+ * Optimize Imports on a directory, module or project prepares such files concurrently, others one by one.
+ *
+ * @see ImportOptimizer
+ */
+public interface ConcurrentImportOptimizer extends ImportOptimizer {
+}
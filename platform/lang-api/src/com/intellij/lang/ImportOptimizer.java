@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 /**
  * Implementers of the interface encapsulate optimize imports process for the language.
  * Should be registered as "com.intellij.lang.importOptimizer" extension.
+ * Implement {@link ConcurrentImportOptimizer} if {@link #processFile(PsiFile)} is safe to call for different files in parallel.
  * @author max
  * @see LanguageImportStatements
  */
@@ -17,6 +17,7 @@
 package com.intellij.codeInsight.actions;
 
 import com.intellij.codeInsight.CodeInsightBundle;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.lang.LanguageFormatting;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
@@ -35,12 +36,14 @@ import com.intellij.openapi.project.ProjectCoreUtil;
 import com.intellij.openapi.roots.GeneratedSourcesFilter;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.ex.MessagesEx;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiBundle;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.IncorrectOperationException;
+import com.intellij.util.Processor;
 import com.intellij.util.SequentialModalProgressTask;
 import com.intellij.util.SequentialTask;
 import com.intellij.util.containers.ContainerUtil;
@@ -50,12 +53,14 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
 public abstract class AbstractLayoutCodeProcessor {
   private static final Logger LOG = Logger.getInstance("#com.intellij.codeInsight.actions.AbstractLayoutCodeProcessor");
+  static final int FILES_PER_BATCH = 20;
 
   protected final Project myProject;
   private final Module myModule;
@@ -179,6 +184,23 @@ public abstract class AbstractLayoutCodeProcessor {
     myFilters.add(filter);
   }
 
+  protected String getCommandName() {
+    return myCommandName;
+  }
+
+  /**
+   * Tells whether {@link #prepareTask(PsiFile, boolean)} may be called for the given file concurrently with other files, each
+   * in its own read action. Processing directories, modules and projects prepares such files in parallel.
+   */
+  protected boolean canPrepareConcurrently(@NotNull PsiFile file) {
+    return true;
+  }
+
+  private boolean canPrepareChainConcurrently(@NotNull PsiFile file) {
+    return canPrepareConcurrently(file)
+           && (myPreviousCodeProcessor == null || myPreviousCodeProcessor.canPrepareChainConcurrently(file));
+  }
+
   /**
    * Ensures that given file is ready to reformatting and prepares it if necessary.
    *
@@ -501,24 +523,77 @@ public abstract class AbstractLayoutCodeProcessor {
 
       updateIndicator(myFilesProcessed);
 
-      if (myFileTreeIterator.hasNext()) {
-        final PsiFile file = myFileTreeIterator.next();
-        myFilesProcessed++;
-        if (file.isWritable() && canBeFormatted(file) && acceptedByFilters(file)) {
-          ApplicationManager.getApplication().runWriteAction(new Runnable() {
-            @Override
-            public void run() {
-              performFileProcessing(file);
+      final boolean concurrently = Registry.is("layout.code.prepare.files.concurrently");
+      final List<PsiFile> batch = new ArrayList<PsiFile>();
+      int batchSize = concurrently ? FILES_PER_BATCH : 1;
+      while (batch.size() < batchSize && myFileTreeIterator.hasNext()) {
+        batch.add(myFileTreeIterator.next());
+      }
+
+      final Map<PsiFile, FutureTask<Boolean>> tasks = prepareTasks(batch, concurrently);
+      if (tasks == null) {
+        myStopFormatting = true;
+        return true;
+      }
+
+      ApplicationManager.getApplication().runWriteAction(new Runnable() {
+        @Override
+        public void run() {
+          for (PsiFile file : batch) {
+            myFilesProcessed++;
+            FutureTask<Boolean> task = tasks.get(file);
+            if (task == null || !file.isValid()) continue;
+            performFileProcessing(task);
+            if (myStopFormatting || isIndicatorCanceled()) {
+              myStopFormatting = true;
+              break;
             }
-          });
+          }
         }
-      }
+      });
+      updateIndicator(myFilesProcessed);
 
       return true;
     }
 
-    private void performFileProcessing(@NotNull PsiFile file) {
-      FutureTask<Boolean> task = preprocessFile(file, myProcessChangedTextOnly);
+    /**
+     * Filters the files of the batch and prepares their tasks in read actions, concurrently for the files all processors of
+     * the chain {@link #canPrepareConcurrently(PsiFile) allow} it. Preparing computes the import changes and the formatting
+     * changes, so that only applying them is left to the write action.
+     *
+     * @return  tasks performing the modifications of the files which should be processed, or null if preparation was cancelled
+     */
+    @Nullable
+    private Map<PsiFile, FutureTask<Boolean>> prepareTasks(@NotNull List<PsiFile> files, boolean concurrently) {
+      final Map<PsiFile, FutureTask<Boolean>> tasks = ContainerUtil.newConcurrentMap();
+      Processor<PsiFile> prepare = new Processor<PsiFile>() {
+        @Override
+        public boolean process(PsiFile file) {
+          if (file.isValid() && file.isWritable() && canBeFormatted(file) && acceptedByFilters(file)) {
+            tasks.put(file, preprocessFile(file, myProcessChangedTextOnly));
+          }
+          return true;
+        }
+      };
+      List<PsiFile> concurrentFiles = new ArrayList<PsiFile>();
+      try {
+        for (PsiFile file : files) {
+          if (concurrently && file.isValid() && canPrepareChainConcurrently(file)) {
+            concurrentFiles.add(file);
+          }
+          else {
+            prepare.process(file);
+          }
+        }
+        boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(concurrentFiles, getIndicator(), false, prepare);
+        return completed ? tasks : null;
+      }
+      catch (ProcessCanceledException e) {
+        return null;
+      }
+    }
+
+    private void performFileProcessing(@NotNull FutureTask<Boolean> task) {
       task.run();
       try {
         if (!task.get() || task.isCancelled()) {
@@ -533,12 +608,20 @@ public abstract class AbstractLayoutCodeProcessor {
       }
     }
 
+    @Nullable
+    private ProgressIndicator getIndicator() {
+      return myCompositeTask != null ? myCompositeTask.getIndicator() : null;
+    }
+
+    private boolean isIndicatorCanceled() {
+      ProgressIndicator indicator = getIndicator();
+      return indicator != null && indicator.isCanceled();
+    }
+
     private void updateIndicator(int filesProcessed) {
-      if (myCompositeTask != null) {
-        ProgressIndicator indicator = myCompositeTask.getIndicator();
-        if (indicator != null)
-          indicator.setFraction((double)filesProcessed / myTotalFiles);
-      }
+      ProgressIndicator indicator = getIndicator();
+      if (indicator != null)
+        indicator.setFraction((double)filesProcessed / myTotalFiles);
     }
 
     @Override
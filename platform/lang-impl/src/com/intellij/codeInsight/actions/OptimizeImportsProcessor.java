@@ -17,6 +17,7 @@
 package com.intellij.codeInsight.actions;
 
 import com.intellij.codeInsight.CodeInsightBundle;
+import com.intellij.lang.ConcurrentImportOptimizer;
 import com.intellij.lang.ImportOptimizer;
 import com.intellij.lang.LanguageImportStatements;
 import com.intellij.openapi.module.Module;
@@ -64,6 +65,18 @@ public class OptimizeImportsProcessor extends AbstractLayoutCodeProcessor {
     super(processor, COMMAND_NAME, PROGRESS_TEXT);
   }
 
+  @Override
+  protected boolean canPrepareConcurrently(@NotNull PsiFile file) {
+    List<PsiFile> files = file.getViewProvider().getAllFiles();
+    for (ImportOptimizer optimizer : LanguageImportStatements.INSTANCE.forFile(file)) {
+      if (optimizer instanceof ConcurrentImportOptimizer) continue;
+      for (PsiFile psiFile : files) {
+        if (optimizer.supports(psiFile)) return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   @NotNull
   protected FutureTask<Boolean> prepareTask(@NotNull PsiFile file, boolean processChangedTextOnly) {
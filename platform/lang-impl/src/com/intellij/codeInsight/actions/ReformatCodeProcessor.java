@@ -29,6 +29,9 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.formatter.FormatterUtil;
+import com.intellij.psi.impl.source.codeStyle.CodeFormatterFacade;
+import com.intellij.psi.impl.source.codeStyle.CodeStyleManagerImpl;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.diff.FilesTooBigForDiffException;
@@ -86,13 +89,20 @@ public class ReformatCodeProcessor extends AbstractLayoutCodeProcessor {
   protected FutureTask<Boolean> prepareTask(@NotNull final PsiFile file, final boolean processChangedTextOnly)
     throws IncorrectOperationException
   {
+    final CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(myProject);
+    final CodeFormatterFacade.PreparedFormatting prepared = prepareFormatting(codeStyleManager, file, processChangedTextOnly);
     return new FutureTask<Boolean>(new Callable<Boolean>() {
       @Override
       public Boolean call() throws Exception {
         FormattingProgressTask.FORMATTING_CANCELLED_FLAG.set(false);
         try {
           Collection<TextRange> ranges = getRangesToFormat(processChangedTextOnly, file);
-          CodeStyleManager.getInstance(myProject).reformatText(file, ranges);
+          if (prepared != null) {
+            ((CodeStyleManagerImpl)codeStyleManager).reformatText(file, ranges, null, prepared);
+          }
+          else {
+            codeStyleManager.reformatText(file, ranges);
+          }
           return !FormattingProgressTask.FORMATTING_CANCELLED_FLAG.get();
         }
         catch (FilesTooBigForDiffException e) {
@@ -117,6 +127,23 @@ public class ReformatCodeProcessor extends AbstractLayoutCodeProcessor {
     });
   }
 
+  /**
+   * Builds the formatting model and calculates the changes while the file is prepared, so that the write action only applies them.
+   * The changed text ranges are calculated in the write action, thus such files are formatted there completely.
+   */
+  @Nullable
+  private CodeFormatterFacade.PreparedFormatting prepareFormatting(@NotNull CodeStyleManager codeStyleManager,
+                                                                   @NotNull PsiFile file,
+                                                                   boolean processChangedTextOnly)
+  {
+    if (processChangedTextOnly || !(codeStyleManager instanceof CodeStyleManagerImpl)) {
+      return null;
+    }
+    Collection<TextRange> ranges = !myRanges.isEmpty() ? myRanges : ContainerUtil.newArrayList(file.getTextRange());
+    boolean calledExplicitly = FormatterUtil.FORMATTER_ACTION_NAMES.contains(getCommandName());
+    return ((CodeStyleManagerImpl)codeStyleManager).prepareReformatText(file, ranges, calledExplicitly);
+  }
+
   @NotNull
   private Collection<TextRange> getRangesToFormat(boolean processChangedTextOnly, PsiFile file) throws FilesTooBigForDiffException {
     if (processChangedTextOnly) {
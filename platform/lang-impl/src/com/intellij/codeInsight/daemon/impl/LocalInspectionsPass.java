@@ -26,6 +26,7 @@ import com.intellij.codeInspection.*;
 import com.intellij.codeInspection.ex.*;
 import com.intellij.codeInspection.ui.InspectionToolPresentation;
 import com.intellij.concurrency.JobLauncher;
+import com.intellij.concurrency.JobSchedulerImpl;
 import com.intellij.injected.editor.DocumentWindow;
 import com.intellij.lang.Language;
 import com.intellij.lang.annotation.HighlightSeverity;
@@ -92,6 +93,7 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
   private final SeverityRegistrar mySeverityRegistrar;
   private final InspectionProfileWrapper myProfileWrapper;
   private boolean myFailFastOnAcquireReadAction;
+  private boolean myInspectConcurrently = true;
 
   public LocalInspectionsPass(@NotNull PsiFile file,
                               @Nullable Document document,
@@ -151,6 +153,17 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
   public void doInspectInBatch(@NotNull final GlobalInspectionContextImpl context,
                                @NotNull final InspectionManager iManager,
                                @NotNull final List<LocalInspectionToolWrapper> toolWrappers) {
+    doInspectInBatch(context, iManager, toolWrappers, true);
+  }
+
+  /**
+   * @param concurrently whether the tools are run on all cores; false when the file is inspected by a job of its own already
+   */
+  public void doInspectInBatch(@NotNull final GlobalInspectionContextImpl context,
+                               @NotNull final InspectionManager iManager,
+                               @NotNull final List<LocalInspectionToolWrapper> toolWrappers,
+                               boolean concurrently) {
+    myInspectConcurrently = concurrently;
     final ProgressIndicator progress = ProgressManager.getInstance().getProgressIndicator();
     inspect(new ArrayList<LocalInspectionToolWrapper>(toolWrappers), iManager, false, false, false, progress);
     addDescriptorsFromInjectedResults(iManager, context);
@@ -251,50 +264,82 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
                                                                boolean checkDumbAwareness) {
     final List<InspectionContext> init = new ArrayList<InspectionContext>();
     List<Map.Entry<LocalInspectionToolWrapper, Collection<String>>> entries = new ArrayList<Map.Entry<LocalInspectionToolWrapper, Collection<String>>>(toolToLanguages.entrySet());
-    Processor<Map.Entry<LocalInspectionToolWrapper, Collection<String>>> processor =
-      new Processor<Map.Entry<LocalInspectionToolWrapper, Collection<String>>>() {
+    Processor<List<Map.Entry<LocalInspectionToolWrapper, Collection<String>>>> processor =
+      new Processor<List<Map.Entry<LocalInspectionToolWrapper, Collection<String>>>>() {
         @Override
-        public boolean process(final Map.Entry<LocalInspectionToolWrapper, Collection<String>> pair) {
-          return runToolOnElements(pair.getKey(), pair.getValue(), iManager, isOnTheFly, indicator, elements, session, init);
+        public boolean process(final List<Map.Entry<LocalInspectionToolWrapper, Collection<String>>> tools) {
+          return runToolsOnElements(tools, iManager, isOnTheFly, indicator, elements, session, init);
         }
       };
-    boolean result = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(entries, indicator, myFailFastOnAcquireReadAction, processor);
+    boolean result = processConcurrentlyIfNeeded(splitIntoGroups(entries), indicator, processor);
     if (!result) throw new ProcessCanceledException();
     inspectInjectedPsi(elements, isOnTheFly, indicator, iManager, true, checkDumbAwareness, wrappers);
     return init;
   }
 
-  private boolean runToolOnElements(@NotNull final LocalInspectionToolWrapper toolWrapper,
-                                    Collection<String> languages,
-                                    @NotNull final InspectionManager iManager,
-                                    final boolean isOnTheFly,
-                                    @NotNull final ProgressIndicator indicator,
-                                    @NotNull final List<PsiElement> elements,
-                                    @NotNull final LocalInspectionToolSession session,
-                                    @NotNull List<InspectionContext> init) {
+  /**
+   * Tools of a group visit the elements in one pass (see {@link InspectionEngine#acceptElements(List, List)}), groups run concurrently.
+   * When the tools aren't run concurrently, all of them form a single group.
+   */
+  @NotNull
+  private <T> List<List<T>> splitIntoGroups(@NotNull List<T> tools) {
+    int groupCount = Math.min(tools.size(), myInspectConcurrently ? JobSchedulerImpl.CORES_COUNT * 2 : 1);
+    List<List<T>> groups = new ArrayList<List<T>>(groupCount);
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(new ArrayList<T>());
+    }
+    for (int i = 0; i < tools.size(); i++) {
+      groups.get(i % groupCount).add(tools.get(i));
+    }
+    return groups;
+  }
+
+  @NotNull
+  private static List<Pair<PsiElementVisitor, Collection<String>>> getVisitors(@NotNull List<InspectionContext> contexts) {
+    List<Pair<PsiElementVisitor, Collection<String>>> visitors = new ArrayList<Pair<PsiElementVisitor, Collection<String>>>(contexts.size());
+    for (InspectionContext context : contexts) {
+      visitors.add(Pair.<PsiElementVisitor, Collection<String>>create(context.visitor, context.languageIds));
+    }
+    return visitors;
+  }
+
+  private boolean runToolsOnElements(@NotNull List<Map.Entry<LocalInspectionToolWrapper, Collection<String>>> tools,
+                                     @NotNull final InspectionManager iManager,
+                                     final boolean isOnTheFly,
+                                     @NotNull final ProgressIndicator indicator,
+                                     @NotNull final List<PsiElement> elements,
+                                     @NotNull final LocalInspectionToolSession session,
+                                     @NotNull List<InspectionContext> init) {
     indicator.checkCanceled();
 
     ApplicationManager.getApplication().assertReadAccessAllowed();
-    LocalInspectionTool tool = toolWrapper.getTool();
     final boolean[] applyIncrementally = {isOnTheFly};
-    ProblemsHolder holder = new ProblemsHolder(iManager, myFile, isOnTheFly) {
-        @Override
-        public void registerProblem(@NotNull ProblemDescriptor descriptor) {
-          super.registerProblem(descriptor);
-          if (applyIncrementally[0]) {
-            addDescriptorIncrementally(descriptor, toolWrapper, indicator);
+    List<InspectionContext> contexts = new ArrayList<InspectionContext>(tools.size());
+    for (Map.Entry<LocalInspectionToolWrapper, Collection<String>> entry : tools) {
+      final LocalInspectionToolWrapper toolWrapper = entry.getKey();
+      ProblemsHolder holder = new ProblemsHolder(iManager, myFile, isOnTheFly) {
+          @Override
+          public void registerProblem(@NotNull ProblemDescriptor descriptor) {
+            super.registerProblem(descriptor);
+            if (applyIncrementally[0]) {
+              addDescriptorIncrementally(descriptor, toolWrapper, indicator);
+            }
           }
-        }
-    };
-    PsiElementVisitor visitor = InspectionEngine.createVisitorAndAcceptElements(tool, holder, isOnTheFly, session, elements, languages);
+      };
+      PsiElementVisitor visitor = InspectionEngine.createVisitor(toolWrapper.getTool(), holder, isOnTheFly, session);
+      contexts.add(new InspectionContext(toolWrapper, holder, visitor, entry.getValue()));
+    }
+    InspectionEngine.acceptElements(elements, getVisitors(contexts));
 
     synchronized (init) {
-      init.add(new InspectionContext(toolWrapper, holder, visitor, languages));
+      init.addAll(contexts);
     }
-    advanceProgress(1);
+    for (InspectionContext context : contexts) {
+      advanceProgress(1);
 
-    if (holder.hasResults()) {
-      appendDescriptors(myFile, holder.getResults(), toolWrapper);
+      if (context.holder.hasResults()) {
+        appendDescriptors(myFile, context.holder.getResults(), context.tool);
+      }
     }
     applyIncrementally[0] = false; // do not apply incrementally outside visible range
     return true;
@@ -304,23 +349,25 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
                                            @NotNull final List<PsiElement> elements,
                                            @NotNull final LocalInspectionToolSession session,
                                            @NotNull List<InspectionContext> init) {
-    Processor<InspectionContext> processor =
-      new Processor<InspectionContext>() {
+    Processor<List<InspectionContext>> processor =
+      new Processor<List<InspectionContext>>() {
         @Override
-        public boolean process(InspectionContext context) {
+        public boolean process(List<InspectionContext> contexts) {
           indicator.checkCanceled();
           ApplicationManager.getApplication().assertReadAccessAllowed();
-          InspectionEngine.acceptElements(elements, context.visitor, context.languageIds);
-          advanceProgress(1);
-          context.tool.getTool().inspectionFinished(session, context.holder);
+          InspectionEngine.acceptElements(elements, getVisitors(contexts));
+          for (InspectionContext context : contexts) {
+            advanceProgress(1);
+            context.tool.getTool().inspectionFinished(session, context.holder);
 
-          if (context.holder.hasResults()) {
-            appendDescriptors(myFile, context.holder.getResults(), context.tool);
+            if (context.holder.hasResults()) {
+              appendDescriptors(myFile, context.holder.getResults(), context.tool);
+            }
           }
           return true;
         }
       };
-    boolean result = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(init, indicator, myFailFastOnAcquireReadAction, processor);
+    boolean result = processConcurrentlyIfNeeded(splitIntoGroups(init), indicator, processor);
     if (!result) {
       throw new ProcessCanceledException();
     }
@@ -350,11 +397,24 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
         return true;
       }
     };
-    if (!JobLauncher.getInstance().invokeConcurrentlyUnderProgress(new ArrayList<PsiFile>(injected), indicator, myFailFastOnAcquireReadAction, processor)) {
+    if (!processConcurrentlyIfNeeded(new ArrayList<PsiFile>(injected), indicator, processor)) {
       throw new ProcessCanceledException();
     }
   }
 
+  private <T> boolean processConcurrentlyIfNeeded(@NotNull List<T> things,
+                                                  @NotNull ProgressIndicator indicator,
+                                                  @NotNull Processor<T> processor) {
+    if (myInspectConcurrently) {
+      return JobLauncher.getInstance().invokeConcurrentlyUnderProgress(things, indicator, myFailFastOnAcquireReadAction, processor);
+    }
+    for (T thing : things) {
+      indicator.checkCanceled();
+      if (!processor.process(thing)) return false;
+    }
+    return true;
+  }
+
   @Nullable
   private HighlightInfo highlightInfoFromDescriptor(@NotNull ProblemDescriptor problemDescriptor,
                                                     @NotNull HighlightInfoType highlightInfoType,
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.codeInspection.ex.GlobalInspectionContextBase;
+import com.intellij.openapi.components.PathMacroManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.util.PathUtilRt;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.THashSet;
+import org.jdom.Attribute;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incremental mode of {@link InspectionApplication}: only the changed files and the files which may reference them are inspected,
+ * the results of a previous run are kept for the rest of the project.
+ * <p/>
+ * Only local inspections are run, as global ones would give different results on a part of the project. The results of
+ * global inspections are taken from the previous run as they are, so they are only as fresh as the last full run.
+ */
+class IncrementalInspections {
+  @NotNull
+  static List<String> loadChangedPaths(@NotNull File changesFile, @NotNull Project project) throws IOException {
+    VirtualFile baseDir = project.getBaseDir();
+    List<String> paths = new ArrayList<String>();
+    for (String line : StringUtil.splitByLines(FileUtil.loadFile(changesFile))) {
+      String path = FileUtil.toSystemIndependentName(line.trim());
+      if (path.isEmpty()) continue;
+      if (!FileUtil.isAbsolute(path) && baseDir != null) {
+        path = baseDir.getPath() + "/" + path;
+      }
+      paths.add(path);
+    }
+    return paths;
+  }
+
+  /**
+   * @return the changed files which still exist together with the project files containing the name of a changed file
+   * (without extension) as a word in code, i.e. the files which may reference the classes declared in the changed ones
+   */
+  @NotNull
+  static Set<VirtualFile> collectAffectedFiles(@NotNull Project project, @NotNull Collection<String> changedPaths) {
+    final Set<VirtualFile> result = new THashSet<VirtualFile>();
+    Set<String> names = new THashSet<String>();
+    LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+    for (String path : changedPaths) {
+      ContainerUtil.addIfNotNull(result, fileSystem.refreshAndFindFileByPath(path));
+      names.add(FileUtil.getNameWithoutExtension(PathUtilRt.getFileName(path)));
+    }
+
+    PsiSearchHelper helper = PsiSearchHelper.SERVICE.getInstance(project);
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+    for (String name : names) {
+      if (StringUtil.isEmpty(name)) continue;
+      helper.processAllFilesWithWord(name, scope, new Processor<PsiFile>() {
+        @Override
+        public boolean process(PsiFile file) {
+          ContainerUtil.addIfNotNull(result, file.getVirtualFile());
+          return true;
+        }
+      }, true);
+    }
+    return result;
+  }
+
+  /**
+   * Adds the problems of the previous run found in the files which weren't inspected this time to the results of local tools.
+   * Problems of the changed files (including deleted ones) and problems not bound to a file (e.g. module level ones)
+   * are taken from the new results only. The results of global tools, which aren't run incrementally, are kept whole.
+   */
+  static void mergePreviousResults(@NotNull File previousResultsDir,
+                                   @NotNull File resultsDir,
+                                   @NotNull Project project,
+                                   @NotNull Collection<String> changedPaths,
+                                   @NotNull Set<VirtualFile> inspectedFiles,
+                                   @NotNull List<File> inspectionsResults) throws IOException, JDOMException {
+    PathMacroManager macroManager = PathMacroManager.getInstance(project);
+    Set<String> inspectedUrls = new THashSet<String>();
+    for (String path : changedPaths) {
+      inspectedUrls.add(macroManager.collapsePath(VfsUtilCore.pathToUrl(path)));
+    }
+    for (VirtualFile file : inspectedFiles) {
+      inspectedUrls.add(macroManager.collapsePath(file.getUrl()));
+    }
+
+    File[] previousResults = previousResultsDir.listFiles();
+    if (previousResults == null) return;
+    for (File previous : previousResults) {
+      String name = previous.getName();
+      if (!name.endsWith(InspectionApplication.XML_EXTENSION) || name.startsWith(InspectionApplication.DESCRIPTIONS)) continue;
+
+      Element previousRoot = JDOMUtil.loadDocument(previous).getRootElement();
+      File result = new File(resultsDir, name);
+      boolean localTool = Boolean.parseBoolean(previousRoot.getAttributeValue(GlobalInspectionContextBase.LOCAL_TOOL_ATTRIBUTE));
+      boolean keepAll = !localTool && !result.exists();
+      List<Element> kept = new ArrayList<Element>();
+      for (Object o : previousRoot.getChildren("problem")) {
+        Element problem = (Element)o;
+        String url = problem.getChildText("file");
+        if (keepAll || url != null && !inspectedUrls.contains(url.trim())) {
+          kept.add(problem);
+        }
+      }
+      if (kept.isEmpty()) continue;
+
+      Document document;
+      if (result.exists()) {
+        document = JDOMUtil.loadDocument(result);
+      }
+      else {
+        Element root = new Element(previousRoot.getName());
+        for (Object o : previousRoot.getAttributes()) {
+          Attribute attribute = (Attribute)o;
+          root.setAttribute(attribute.getName(), attribute.getValue());
+        }
+        document = new Document(root);
+        inspectionsResults.add(result);
+      }
+      for (Element problem : kept) {
+        document.getRootElement().addContent((Element)problem.clone());
+      }
+      JDOMUtil.writeDocument(document, result, "\n");
+    }
+  }
+}
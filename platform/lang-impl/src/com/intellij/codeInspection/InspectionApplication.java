@@ -62,6 +62,8 @@ public class InspectionApplication {
   public String myProjectPath = null;
   public String myOutPath = null;
   public String mySourceDirectory = null;
+  public String myChangesPath = null;
+  public String myPreviousResultsPath = null;
   public String myStubProfile = null;
   public String myProfileName = null;
   public String myProfilePath = null;
@@ -164,7 +166,16 @@ public class InspectionApplication {
       im.setProfile(inspectionProfile.getName());
 
       final AnalysisScope scope;
-      if (mySourceDirectory == null) {
+      List<String> changedPaths = null;
+      Set<VirtualFile> affectedFiles = null;
+      if (myChangesPath != null) {
+        changedPaths = IncrementalInspections.loadChangedPaths(new File(myChangesPath), myProject);
+        affectedFiles = IncrementalInspections.collectAffectedFiles(myProject, changedPaths);
+        logMessageLn(2, changedPaths.size() + " changed files, " + affectedFiles.size() + " files to inspect");
+        scope = new AnalysisScope(myProject, affectedFiles);
+        inspectionContext.setRunLocalToolsOnly(true);
+      }
+      else if (mySourceDirectory == null) {
         scope = new AnalysisScope(myProject);
       }
       else {
@@ -262,6 +273,10 @@ public class InspectionApplication {
       describeInspections(descriptionsFile,
                           myRunWithEditorSettings ? null : inspectionProfile.getName());
       inspectionsResults.add(new File(descriptionsFile));
+      if (myPreviousResultsPath != null && affectedFiles != null) {
+        IncrementalInspections.mergePreviousResults(new File(myPreviousResultsPath), new File(resultsDataPath), myProject,
+                                                    changedPaths, affectedFiles, inspectionsResults);
+      }
       // convert report
       if (reportConverter != null) {
         try {
@@ -75,6 +75,12 @@ public class InspectionMain implements ApplicationStarter {
         } else if ("-d".equals(arg)) {
           myApplication.mySourceDirectory = args[++i];
         }
+        else if ("-changes".equals(arg)) {
+          myApplication.myChangesPath = args[++i];
+        }
+        else if ("-previousResults".equals(arg)) {
+          myApplication.myPreviousResultsPath = args[++i];
+        }
         else if ("-v0".equals(arg)) {
           myApplication.setVerboseLevel(0);
         }
@@ -63,6 +63,7 @@ import com.intellij.ui.content.*;
 import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Processor;
 import com.intellij.util.SequentialModalProgressTask;
+import com.intellij.util.SystemProperties;
 import com.intellij.util.TripleFunction;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashMap;
@@ -85,12 +86,17 @@ import java.util.concurrent.ConcurrentMap;
 public class GlobalInspectionContextImpl extends GlobalInspectionContextBase implements GlobalInspectionContext {
   private static final Logger LOG = Logger.getInstance("#com.intellij.codeInspection.ex.GlobalInspectionContextImpl");
   private static final NotificationGroup NOTIFICATION_GROUP = NotificationGroup.toolWindowGroup("Inspection Results", ToolWindowId.INSPECTION);
+  private static final boolean INSPECT_OFFLINE_FILES_CONCURRENTLY = SystemProperties.getBooleanProperty("idea.offline.inspections.concurrent.files", true);
   private final NotNullLazyValue<ContentManager> myContentManager;
   private InspectionResultsView myView = null;
   private Content myContent = null;
 
   private AnalysisUIOptions myUIOptions;
 
+  private boolean myInspectFilesConcurrently;
+  private boolean myRunLocalToolsOnly;
+  private final Object myProgressLock = new Object();
+
   public GlobalInspectionContextImpl(@NotNull Project project, @NotNull NotNullLazyValue<ContentManager> contentManager) {
     super(project);
 
@@ -151,6 +157,7 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
     setCurrentScope(scope);
 
     DefaultInspectionToolPresentation.setOutputPath(outputPath);
+    myInspectFilesConcurrently = INSPECT_OFFLINE_FILES_CONCURRENTLY && outputPath != null;
     try {
       ApplicationManager.getApplication().runReadAction(new Runnable() {
         @Override
@@ -165,7 +172,7 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
             if (sameTools != null) {
               for (ScopeToolState toolDescr : sameTools.getTools()) {
                 InspectionToolWrapper toolWrapper = toolDescr.getTool();
-                if (toolWrapper instanceof LocalInspectionToolWrapper) {
+                if (toolWrapper instanceof LocalInspectionToolWrapper || DefaultInspectionToolPresentation.isStreamedToOutput(toolWrapper)) {
                   hasProblems = new File(outputPath, toolName + ext).exists();
                 }
                 else {
@@ -237,6 +244,7 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
       });
     }
     finally {
+      myInspectFilesConcurrently = false;
       DefaultInspectionToolPresentation.setOutputPath(null);
     }
   }
@@ -314,6 +322,14 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
     });
   }
 
+  /**
+   * Makes the context run local tools only, e.g. when a part of the project is inspected
+   * and global tools would report partial results.
+   */
+  public void setRunLocalToolsOnly(boolean runLocalToolsOnly) {
+    myRunLocalToolsOnly = runLocalToolsOnly;
+  }
+
   @Override
   protected void runTools(@NotNull AnalysisScope scope, boolean runGlobalToolsOnly) {
     final InspectionManager inspectionManager = InspectionManager.getInstance(getProject());
@@ -322,12 +338,15 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
     final List<Tools> globalSimpleTools = new ArrayList<Tools>();
     initializeTools(globalTools, localTools, globalSimpleTools);
     appendPairedInspectionsForUnfairTools(globalTools, globalSimpleTools, localTools);
+    if (myRunLocalToolsOnly) {
+      globalTools.clear();
+      globalSimpleTools.clear();
+    }
 
     ((RefManagerImpl)getRefManager()).initializeAnnotators();
     runGlobalTools(scope, inspectionManager, globalTools);
     if (runGlobalToolsOnly) return;
 
-    final PsiManager psiManager = PsiManager.getInstance(getProject());
     final Set<VirtualFile> localScopeFiles = scope.toSearchScope() instanceof LocalSearchScope ? new THashSet<VirtualFile>() : null;
     for (Tools tools : globalSimpleTools) {
       GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
@@ -337,74 +356,163 @@ public class GlobalInspectionContextImpl extends GlobalInspectionContextBase imp
 
     final boolean headlessEnvironment = ApplicationManager.getApplication().isHeadlessEnvironment();
     final Map<String, InspectionToolWrapper> map = getInspectionWrappersMap(localTools);
-    scope.accept(new PsiElementVisitor() {
-      @Override
-      public void visitFile(final PsiFile file) {
-        final VirtualFile virtualFile = file.getVirtualFile();
-        if (virtualFile == null || isBinary(file)) return;
-
-        if (myView == null && !headlessEnvironment) {
-          throw new ProcessCanceledException();
+    if (myInspectFilesConcurrently) {
+      inspectFilesConcurrently(scope, inspectionManager, localTools, globalSimpleTools, map);
+    }
+    else {
+      scope.accept(new PsiElementVisitor() {
+        @Override
+        public void visitFile(final PsiFile file) {
+          if (myView == null && !headlessEnvironment && file.getVirtualFile() != null && !isBinary(file)) {
+            throw new ProcessCanceledException();
+          }
+          inspectFile(file, inspectionManager, localTools, globalSimpleTools, map, localScopeFiles, true);
         }
+      });
+    }
+    for (Tools tools : globalSimpleTools) {
+      GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
+      GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
+      ProblemDescriptionsProcessor problemDescriptionProcessor = getProblemDescriptionProcessor(toolWrapper, map);
+      tool.inspectionFinished(inspectionManager, this, problemDescriptionProcessor);
+    }
+  }
 
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Running local inspections on " + virtualFile.getPath());
-        }
-        
-        String url = ProjectUtilCore.displayUrlRelativeToProject(virtualFile, virtualFile.getPresentableUrl(), getProject(), true, false);
-        incrementJobDoneAmount(getStdJobDescriptors().LOCAL_ANALYSIS, url);
-        if (SingleRootFileViewProvider.isTooLargeForIntelligence(virtualFile)) return;
-        if (localScopeFiles != null && !localScopeFiles.add(virtualFile)) return;
-
-        final FileViewProvider viewProvider = psiManager.findViewProvider(virtualFile);
-        final com.intellij.openapi.editor.Document document = viewProvider == null ? null : viewProvider.getDocument();
-        if (document == null) return;
-        final LocalInspectionsPass pass = new LocalInspectionsPass(file, document, 0,
-                                                                   file.getTextLength(), LocalInspectionsPass.EMPTY_PRIORITY_RANGE, true,
-                                                                   HighlightInfoProcessor.getEmpty());
-        try {
-          final List<LocalInspectionToolWrapper> lTools = getWrappersFromTools(localTools, file);
-          pass.doInspectInBatch(GlobalInspectionContextImpl.this, inspectionManager, lTools);
+  /**
+   * Inspects the files of the scope on all cores, each file being a separate job (see {@link JobLauncher}),
+   * so that a slow file doesn't hold the others back. A job runs the local tools on its file one after another. Used by offline runs only, where the problems found
+   * by local and global simple tools are written to the output files as soon as a file is inspected.
+   * <p/>
+   * Global simple tools may keep state between files, so they aren't run by the jobs but afterwards,
+   * on this thread, one file at a time.
+   */
+  private void inspectFilesConcurrently(@NotNull AnalysisScope scope,
+                                        @NotNull final InspectionManager inspectionManager,
+                                        @NotNull final List<Tools> localTools,
+                                        @NotNull List<Tools> globalSimpleTools,
+                                        @NotNull final Map<String, InspectionToolWrapper> map) {
+    final Set<VirtualFile> files = new LinkedHashSet<VirtualFile>();
+    scope.accept(new PsiElementVisitor() {
+      @Override
+      public void visitFile(PsiFile file) {
+        ContainerUtil.addIfNotNull(files, file.getVirtualFile());
+      }
+    });
 
-          JobLauncher.getInstance().invokeConcurrentlyUnderProgress(globalSimpleTools, myProgressIndicator, false, new Processor<Tools>() {
+    final PsiManager psiManager = PsiManager.getInstance(getProject());
+    final List<Tools> noGlobalSimpleTools = Collections.emptyList();
+    boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+      new ArrayList<VirtualFile>(files), myProgressIndicator, false, new Processor<VirtualFile>() {
+        @Override
+        public boolean process(final VirtualFile virtualFile) {
+          ApplicationManager.getApplication().runReadAction(new Runnable() {
             @Override
-            public boolean process(Tools tools) {
-              GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
-              GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
-              ProblemsHolder problemsHolder = new ProblemsHolder(inspectionManager, file, false);
-              ProblemDescriptionsProcessor problemDescriptionProcessor = getProblemDescriptionProcessor(toolWrapper, map);
-              tool.checkFile(file, inspectionManager, problemsHolder, GlobalInspectionContextImpl.this, problemDescriptionProcessor);
-              InspectionToolPresentation toolPresentation = getPresentation(toolWrapper);
-              LocalDescriptorsUtil.addProblemDescriptors(problemsHolder.getResults(), false, GlobalInspectionContextImpl.this, null,
-                                                         CONVERT, toolPresentation);
-              return true;
+            public void run() {
+              PsiFile file = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+              if (file != null) {
+                inspectFile(file, inspectionManager, localTools, noGlobalSimpleTools, map, null, false);
+              }
             }
           });
+          return true;
         }
-        catch (ProcessCanceledException e) {
-          final Throwable cause = e.getCause();
-          if (cause == null) {
-            throw e;
-          }
-          LOG.error("In file: " + file, cause);
-        }
-        catch (IndexNotReadyException e) {
-          throw e;
-        }
-        catch (Throwable e) {
-          LOG.error("In file: " + file, e);
-        }
-        finally {
-          InjectedLanguageManager.getInstance(getProject()).dropFileCaches(file);
-        }
+      });
+    if (!completed) throw new ProcessCanceledException();
+
+    if (globalSimpleTools.isEmpty()) return;
+    for (VirtualFile virtualFile : files) {
+      myProgressIndicator.checkCanceled();
+      PsiFile file = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+      if (file == null || isBinary(file) || SingleRootFileViewProvider.isTooLargeForIntelligence(virtualFile)) continue;
+      try {
+        inspectFileWithGlobalSimpleTools(file, inspectionManager, globalSimpleTools, map);
       }
-    });
-    for (Tools tools : globalSimpleTools) {
-      GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
-      GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
-      ProblemDescriptionsProcessor problemDescriptionProcessor = getProblemDescriptionProcessor(toolWrapper, map);
-      tool.inspectionFinished(inspectionManager, this, problemDescriptionProcessor);
+      catch (ProcessCanceledException e) {
+        throw e;
+      }
+      catch (IndexNotReadyException e) {
+        throw e;
+      }
+      catch (Throwable e) {
+        LOG.error("In file: " + file, e);
+      }
+      finally {
+        InjectedLanguageManager.getInstance(getProject()).dropFileCaches(file);
+      }
+    }
+  }
+
+  private void inspectFile(@NotNull final PsiFile file,
+                           @NotNull final InspectionManager inspectionManager,
+                           @NotNull List<Tools> localTools,
+                           @NotNull List<Tools> globalSimpleTools,
+                           @NotNull final Map<String, InspectionToolWrapper> map,
+                           @Nullable Set<VirtualFile> localScopeFiles,
+                           boolean inspectConcurrently) {
+    final VirtualFile virtualFile = file.getVirtualFile();
+    if (virtualFile == null || isBinary(file)) return;
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Running local inspections on " + virtualFile.getPath());
+    }
+
+    String url = ProjectUtilCore.displayUrlRelativeToProject(virtualFile, virtualFile.getPresentableUrl(), getProject(), true, false);
+    synchronized (myProgressLock) {
+      incrementJobDoneAmount(getStdJobDescriptors().LOCAL_ANALYSIS, url);
+    }
+    if (SingleRootFileViewProvider.isTooLargeForIntelligence(virtualFile)) return;
+    if (localScopeFiles != null && !localScopeFiles.add(virtualFile)) return;
+
+    final FileViewProvider viewProvider = PsiManager.getInstance(getProject()).findViewProvider(virtualFile);
+    final com.intellij.openapi.editor.Document document = viewProvider == null ? null : viewProvider.getDocument();
+    if (document == null) return;
+    final LocalInspectionsPass pass = new LocalInspectionsPass(file, document, 0,
+                                                               file.getTextLength(), LocalInspectionsPass.EMPTY_PRIORITY_RANGE, true,
+                                                               HighlightInfoProcessor.getEmpty());
+    try {
+      final List<LocalInspectionToolWrapper> lTools = getWrappersFromTools(localTools, file);
+      pass.doInspectInBatch(this, inspectionManager, lTools, inspectConcurrently);
+
+      if (!globalSimpleTools.isEmpty()) {
+        inspectFileWithGlobalSimpleTools(file, inspectionManager, globalSimpleTools, map);
+      }
+    }
+    catch (ProcessCanceledException e) {
+      final Throwable cause = e.getCause();
+      if (cause == null) {
+        throw e;
+      }
+      LOG.error("In file: " + file, cause);
     }
+    catch (IndexNotReadyException e) {
+      throw e;
+    }
+    catch (Throwable e) {
+      LOG.error("In file: " + file, e);
+    }
+    finally {
+      InjectedLanguageManager.getInstance(getProject()).dropFileCaches(file);
+    }
+  }
+
+  private void inspectFileWithGlobalSimpleTools(@NotNull final PsiFile file,
+                                                @NotNull final InspectionManager inspectionManager,
+                                                @NotNull List<Tools> globalSimpleTools,
+                                                @NotNull final Map<String, InspectionToolWrapper> map) {
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(globalSimpleTools, myProgressIndicator, false, new Processor<Tools>() {
+      @Override
+      public boolean process(Tools tools) {
+        GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
+        GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
+        ProblemsHolder problemsHolder = new ProblemsHolder(inspectionManager, file, false);
+        ProblemDescriptionsProcessor problemDescriptionProcessor = getProblemDescriptionProcessor(toolWrapper, map);
+        tool.checkFile(file, inspectionManager, problemsHolder, GlobalInspectionContextImpl.this, problemDescriptionProcessor);
+        InspectionToolPresentation toolPresentation = getPresentation(toolWrapper);
+        LocalDescriptorsUtil.addProblemDescriptors(problemsHolder.getResults(), false, GlobalInspectionContextImpl.this, null,
+                                                   CONVERT, toolPresentation);
+        return true;
+      }
+    });
   }
 
   private void runGlobalTools(@NotNull AnalysisScope scope, @NotNull InspectionManager inspectionManager, @NotNull List<Tools> globalTools) {
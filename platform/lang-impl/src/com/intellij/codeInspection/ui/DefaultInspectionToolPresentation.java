@@ -64,6 +64,7 @@ public class DefaultInspectionToolPresentation implements ProblemDescriptionsPro
   protected InspectionNode myToolNode;
 
   private static final Object lock = new Object();
+  private final Object myOutputLock = new Object();
   private final Map<RefEntity, CommonProblemDescriptor[]> myProblemElements = Collections.synchronizedMap(new THashMap<RefEntity, CommonProblemDescriptor[]>());
   private final Map<String, Set<RefEntity>> myContents = Collections.synchronizedMap(new com.intellij.util.containers.HashMap<String, Set<RefEntity>>()); // keys can be null
   private final Set<RefModule> myModulesProblems = Collections.synchronizedSet(new THashSet<RefModule>());
@@ -196,7 +197,7 @@ public class DefaultInspectionToolPresentation implements ProblemDescriptionsPro
     if (refElement == null) return;
     if (descriptors.length == 0) return;
     if (filterSuppressed) {
-      if (ourOutputPath == null || !(myToolWrapper instanceof LocalInspectionToolWrapper)) {
+      if (!isStreamedToOutput(myToolWrapper)) {
         synchronized (lock) {
           Map<RefEntity, CommonProblemDescriptor[]> problemElements = getProblemElements();
           CommonProblemDescriptor[] problems = problemElements.get(refElement);
@@ -273,30 +274,39 @@ public class DefaultInspectionToolPresentation implements ProblemDescriptionsPro
     @NonNls final String ext = ".xml";
     final String fileName = ourOutputPath + File.separator + myToolWrapper.getShortName() + ext;
     final PathMacroManager pathMacroManager = PathMacroManager.getInstance(getContext().getProject());
-    PrintWriter printWriter = null;
-    try {
-      new File(ourOutputPath).mkdirs();
-      final File file = new File(fileName);
-      final CharArrayWriter writer = new CharArrayWriter();
-      if (!file.exists()) {
-        writer.append("<").append(InspectionsBundle.message("inspection.problems")).append(" " + GlobalInspectionContextBase.LOCAL_TOOL_ATTRIBUTE + "=\"")
-          .append(Boolean.toString(myToolWrapper instanceof LocalInspectionToolWrapper)).append("\">\n");
-      }
-      for (Object o : list) {
-        final Element element = (Element)o;
-        pathMacroManager.collapsePaths(element);
+    final CharArrayWriter writer = new CharArrayWriter();
+    for (Object o : list) {
+      final Element element = (Element)o;
+      pathMacroManager.collapsePaths(element);
+      try {
         JDOMUtil.writeElement(element, writer, "\n");
       }
-      printWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName, true), "UTF-8")));
-      printWriter.append("\n");
-      printWriter.append(writer.toString());
-    }
-    catch (IOException e) {
-      LOG.error(e);
+      catch (IOException e) {
+        LOG.error(e);
+      }
     }
-    finally {
-      if (printWriter != null) {
-        printWriter.close();
+
+    // files may be inspected concurrently in offline mode, see GlobalInspectionContextImpl
+    synchronized (myOutputLock) {
+      PrintWriter printWriter = null;
+      try {
+        new File(ourOutputPath).mkdirs();
+        final boolean exists = new File(fileName).exists();
+        printWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName, true), "UTF-8")));
+        if (!exists) {
+          printWriter.append("<").append(InspectionsBundle.message("inspection.problems")).append(" " + GlobalInspectionContextBase.LOCAL_TOOL_ATTRIBUTE + "=\"")
+            .append(Boolean.toString(myToolWrapper instanceof LocalInspectionToolWrapper)).append("\">\n");
+        }
+        printWriter.append("\n");
+        printWriter.append(writer.toString());
+      }
+      catch (IOException e) {
+        LOG.error(e);
+      }
+      finally {
+        if (printWriter != null) {
+          printWriter.close();
+        }
       }
     }
   }
@@ -808,4 +818,15 @@ public class DefaultInspectionToolPresentation implements ProblemDescriptionsPro
   public static void setOutputPath(final String output) {
     ourOutputPath = output;
   }
+
+  /**
+   * In offline runs, problems of local and global simple tools are appended to the output file of the tool
+   * as soon as they are reported, instead of being kept until the end of the run.
+   */
+  public static boolean isStreamedToOutput(@NotNull InspectionToolWrapper toolWrapper) {
+    if (ourOutputPath == null) return false;
+    return toolWrapper instanceof LocalInspectionToolWrapper ||
+           toolWrapper instanceof GlobalInspectionToolWrapper &&
+           ((GlobalInspectionToolWrapper)toolWrapper).getTool() instanceof GlobalSimpleInspectionTool;
+  }
 }
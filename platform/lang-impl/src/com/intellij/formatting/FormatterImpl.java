@@ -262,6 +262,42 @@ public class FormatterImpl extends FormatterEx
     }
   }
 
+  /**
+   * Builds the blocks of the given model and calculates the white spaces to change without touching the document, which needs
+   * only a read action.
+   *
+   * @return    task applying the calculated changes under a write action or <code>null</code> if the model doesn't match its document
+   */
+  @Nullable
+  public Runnable prepareFormatting(final FormattingModel model,
+                                    CodeStyleSettings settings,
+                                    CommonCodeStyleSettings.IndentOptions indentOptions,
+                                    FormatTextRanges affectedRanges)
+  {
+    try {
+      validateModel(model);
+    }
+    catch (FormattingModelInconsistencyException e) {
+      return null;
+    }
+    final FormatProcessor processor = new FormatProcessor(
+      model.getDocumentModel(), model.getRootBlock(), settings, indentOptions, affectedRanges, FormattingProgressCallback.EMPTY
+    );
+    processor.formatWithoutRealModifications();
+    return new Runnable() {
+      @Override
+      public void run() {
+        disableFormatting();
+        try {
+          processor.performModifications(model);
+        }
+        finally {
+          enableFormatting();
+        }
+      }
+    };
+  }
+
   public void formatWithoutModifications(final FormattingDocumentModel model,
                                          final Block rootBlock,
                                          final CodeStyleSettings settings,
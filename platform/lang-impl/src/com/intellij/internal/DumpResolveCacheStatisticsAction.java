@@ -0,0 +1,78 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.internal;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.impl.source.resolve.ResolveCache;
+
+import java.util.List;
+
+/**
+ * Logs resolve cache hit/miss counters and the number of resolve computations per resolver class, then resets them,
+ * so that the next invocation shows the statistics of the actions performed in between.
+ */
+public class DumpResolveCacheStatisticsAction extends DumbAwareAction {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.internal.DumpResolveCacheStatisticsAction");
+  private static final int MAX_RESOLVERS = 30;
+
+  public DumpResolveCacheStatisticsAction() {
+    super("Dump Resolve Cache Statistics");
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    Project project = e.getData(CommonDataKeys.PROJECT);
+    if (project == null) return;
+
+    ResolveCache cache = ResolveCache.getInstance(project);
+    long hits = cache.getHitCount();
+    long misses = cache.getMissCount();
+    long total = hits + misses;
+
+    StringBuilder report = new StringBuilder();
+    report.append("Hits: ").append(hits).append(", misses: ").append(misses);
+    if (total > 0) {
+      report.append(" (hit ratio ").append(hits * 100 / total).append("%)");
+    }
+    report.append("\nFile partitions: ").append(cache.getPartitionCount())
+      .append(", evicted: ").append(cache.getEvictedPartitionCount()).append("\n");
+
+    List<Pair<String, Integer>> computations = cache.getComputationCounts();
+    report.append("\nComputations by resolver:\n");
+    for (int i = 0; i < Math.min(MAX_RESOLVERS, computations.size()); i++) {
+      Pair<String, Integer> pair = computations.get(i);
+      report.append(pair.second).append("\t").append(pair.first).append("\n");
+    }
+    if (computations.size() > MAX_RESOLVERS) {
+      report.append("... and ").append(computations.size() - MAX_RESOLVERS).append(" more, see the log\n");
+    }
+
+    LOG.info("Resolve cache statistics:\n" + report + "\n" + computations);
+    cache.resetStatistics();
+    Messages.showInfoMessage(project, report.toString(), "Resolve Cache Statistics");
+  }
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getData(CommonDataKeys.PROJECT) != null);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.progress.util.ReadTask;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.impl.source.tree.CompositeElement;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.impl.source.tree.TreeElement;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Expands lazy-parseable elements (e.g. code blocks) of files opened in editors in background, in parallel,
+ * so that highlighting and navigation don't have to parse them on first access.
+ * Is enabled by "psi.lazy.parsing.in.background" registry key.
+ *
+ * @see LazyParseableElement
+ */
+public class BackgroundChameleonParser implements StartupActivity {
+  private final ConcurrentMap<PsiFile, ReadTask> myPendingTasks = ContainerUtil.newConcurrentMap();
+
+  @Override
+  public void runActivity(@NotNull final Project project) {
+    if (!Registry.is("psi.lazy.parsing.in.background") || ApplicationManager.getApplication().isUnitTestMode()) return;
+
+    FileEditorManager.getInstance(project).addFileEditorManagerListener(new FileEditorManagerAdapter() {
+      @Override
+      public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (psiFile != null) {
+          schedule(psiFile);
+        }
+      }
+    }, project);
+
+    // changed blocks get replaced by new unparsed ones on commit
+    final Set<Document> waitingForCommit = ContainerUtil.newConcurrentSet();
+    EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentAdapter() {
+      @Override
+      public void documentChanged(DocumentEvent e) {
+        final Document document = e.getDocument();
+        if (EditorFactory.getInstance().getEditors(document, project).length == 0 || !waitingForCommit.add(document)) return;
+
+        PsiDocumentManager.getInstance(project).performForCommittedDocument(document, new Runnable() {
+          @Override
+          public void run() {
+            waitingForCommit.remove(document);
+            if (project.isDisposed()) return;
+            PsiFile psiFile = PsiDocumentManager.getInstance(project).getCachedPsiFile(document);
+            if (psiFile != null) {
+              schedule(psiFile);
+            }
+          }
+        });
+      }
+    }, project);
+  }
+
+  // at most one task per file waits to be run: it parses the file as it is by then, so there's no need to queue more of them
+  private void schedule(@NotNull final PsiFile file) {
+    ReadTask task = new ReadTask() {
+      @Override
+      public void computeInReadAction(@NotNull ProgressIndicator indicator) {
+        myPendingTasks.remove(file, this);
+        if (file.getProject().isDisposed() || !file.isValid()) return;
+        parseChameleons(file, indicator);
+      }
+
+      @Override
+      public void onCanceled(@NotNull ProgressIndicator indicator) {
+        // a commit which has cancelled the task could have already queued a new one
+        myPendingTasks.remove(file, this);
+        schedule(file);
+      }
+    };
+    if (myPendingTasks.putIfAbsent(file, task) == null) {
+      ProgressIndicatorUtils.scheduleWithWriteActionPriority(new ProgressIndicatorBase(), task);
+    }
+  }
+
+  /**
+   * Expands all lazy-parseable elements of the file, level by level, elements of the same level are parsed concurrently.
+   * Should be invoked under read action; each parsed element is published by {@link LazyParseableElement} itself,
+   * so concurrent readers see either the collapsed element or the whole parsed subtree.
+   */
+  public static void parseChameleons(@NotNull PsiFile file, @NotNull ProgressIndicator indicator) {
+    List<LazyParseableElement> chameleons = new ArrayList<LazyParseableElement>();
+    for (PsiFile root : file.getViewProvider().getAllFiles()) {
+      if (root instanceof PsiFileImpl) {
+        collectUnparsedChameleons(((PsiFileImpl)root).calcTreeElement(), chameleons);
+      }
+    }
+
+    while (!chameleons.isEmpty()) {
+      indicator.checkCanceled();
+      final List<LazyParseableElement> nested = Collections.synchronizedList(new ArrayList<LazyParseableElement>());
+      boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(chameleons, indicator, true, true, new Processor<LazyParseableElement>() {
+        @Override
+        public boolean process(LazyParseableElement chameleon) {
+          List<LazyParseableElement> found = new ArrayList<LazyParseableElement>();
+          collectUnparsedChameleons(chameleon, found);
+          nested.addAll(found);
+          return true;
+        }
+      });
+      if (!completed) return;
+      chameleons = new ArrayList<LazyParseableElement>(nested);
+    }
+  }
+
+  /**
+   * Collects unparsed lazy-parseable elements of the subtree without parsing any of them, except the root itself.
+   */
+  public static void collectUnparsedChameleons(@NotNull CompositeElement root, @NotNull List<LazyParseableElement> result) {
+    List<CompositeElement> stack = new ArrayList<CompositeElement>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      CompositeElement element = stack.remove(stack.size() - 1);
+      for (TreeElement child = element.getFirstChildNode(); child != null; child = child.getTreeNext()) {
+        if (child instanceof LazyParseableElement && !((LazyParseableElement)child).isParsed()) {
+          result.add((LazyParseableElement)child);
+        }
+        else if (child instanceof CompositeElement) {
+          stack.add((CompositeElement)child);
+        }
+      }
+    }
+  }
+}
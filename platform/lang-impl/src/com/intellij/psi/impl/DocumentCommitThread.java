@@ -49,17 +49,22 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DocumentCommitThread extends DocumentCommitProcessor implements Runnable, Disposable {
   private static final Logger LOG = Logger.getInstance("#com.intellij.psi.impl.DocumentCommitThread");
   private static final String NAME = "Document commit thread";
+  // independent documents are reparsed concurrently, each thread commits one document at a time
+  private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
 
   private final Queue<CommitTask> documentsToCommit = new Queue<CommitTask>(10);
   private final List<CommitTask> documentsToApplyInEDT = new ArrayList<CommitTask>(10);  // guarded by documentsToCommit
   private final ApplicationEx myApplication;
+  private final List<Runnable> finishRunnables = new ArrayList<Runnable>(); // guarded by documentsToCommit
+  private boolean finishScheduled; // guarded by documentsToCommit
   private volatile boolean isDisposed;
-  private CommitTask currentTask; // guarded by documentsToCommit
-  private volatile boolean threadFinished;
+  private final List<CommitTask> currentTasks = new ArrayList<CommitTask>(THREAD_COUNT); // guarded by documentsToCommit
+  private final AtomicInteger runningThreads = new AtomicInteger();
   private volatile boolean myEnabled; // true if we can do commits. set to false temporarily during the write action.
   private int runningWriteActions; // accessed in EDT only
 
@@ -110,9 +115,12 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
         enable("Listener installed, started");
       }
     });
-    log("Starting thread", null, false);
-    Thread thread = new Thread(this, NAME);
-    thread.start();
+    log("Starting threads", null, false, THREAD_COUNT);
+    runningThreads.set(THREAD_COUNT);
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      Thread thread = new Thread(this, NAME + " " + i);
+      thread.start();
+    }
   }
 
   @Override
@@ -123,7 +131,7 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
     }
     cancel("Stop thread");
     wakeUpQueue();
-    while (!threadFinished) {
+    while (runningThreads.get() > 0) {
       wakeUpQueue();
       synchronized (documentsToCommit) {
         try {
@@ -155,7 +163,12 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
   }
 
   private void cancel(@NonNls @NotNull Object reason) {
-    startNewTask(null, reason);
+    synchronized (documentsToCommit) {
+      for (CommitTask task : currentTasks) {
+        task.indicator.cancel();
+      }
+    }
+    log("Canceled running tasks", null, false, reason);
   }
 
   @Override
@@ -197,7 +210,7 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
 
     String indent = new SimpleDateFormat("hh:mm:ss:SSSS").format(new Date()) +
       (SwingUtilities.isEventDispatchThread() ?        "-(EDT) " :
-       Thread.currentThread().getName().equals(NAME) ? "-(DCT) " :
+       Thread.currentThread().getName().startsWith(NAME) ? "-(DCT) " :
                                                        "-      ");
     @NonNls
     String s = indent +
@@ -254,10 +267,12 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
   }
 
   private void markRemovedCurrentTask(@Nullable CommitTask newTask) {
-    CommitTask task = currentTask;
-    if (task != null && (newTask == null || task.equals(newTask))) {
-      task.removed = true;
-      cancel("Sync commit intervened");
+    for (CommitTask task : currentTasks) {
+      if (newTask == null || task.equals(newTask)) {
+        task.removed = true;
+        task.indicator.cancel();
+        log("Sync commit intervened", task, false);
+      }
     }
   }
 
@@ -287,7 +302,6 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
 
   @Override
   public void run() {
-    threadFinished = false;
     try {
       while (!isDisposed) {
         try {
@@ -299,7 +313,7 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
       }
     }
     finally {
-      threadFinished = true;
+      runningThreads.decrementAndGet();
     }
     // ping the thread waiting for close
     wakeUpQueue();
@@ -334,7 +348,8 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
           return; // document has been marked as removed, e.g. by synchronous commit
         }
 
-        startNewTask(task, "Pulled new task");
+        currentTasks.add(task);
+        log("new task started", task, false);
 
         // transfer to documentsToApplyInEDT
         documentsToApplyInEDT.add(task);
@@ -360,12 +375,12 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
 
       if (success) {
         assert !myApplication.isDispatchThread();
-        UIUtil.invokeLaterIfNeeded(finishRunnable);
-        log("Invoked later finishRunnable", task, false, finishRunnable, indicator);
+        scheduleFinish(finishRunnable);
+        log("Scheduled finishRunnable", task, false, finishRunnable, indicator);
       }
     }
     catch (ProcessCanceledException e) {
-      cancel(e); // leave queue unchanged
+      if (task != null) task.indicator.cancel(); // leave queue unchanged
       log("PCE", task, false, e);
       success = false;
     }
@@ -376,17 +391,46 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
     }
     catch (Throwable e) {
       LOG.error(e);
-      cancel(e);
+      if (task != null) task.indicator.cancel();
     }
+    if (task == null) return;
     synchronized (documentsToCommit) {
       if (!success && !task.removed) { // sync commit has not intervened
         // reset status for queue back successfully
         doQueue(project, document, "re-added on failure");
       }
-      currentTask = null; // do not cancel, it's being invokeLatered
+      currentTasks.remove(task); // do not cancel, it's being invokeLatered
     }
   }
 
+  // finish runnables of the documents committed by all threads in the meantime are applied in one EDT event
+  private void scheduleFinish(@NotNull Runnable finishRunnable) {
+    synchronized (documentsToCommit) {
+      finishRunnables.add(finishRunnable);
+      if (finishScheduled) return;
+      finishScheduled = true;
+    }
+    UIUtil.invokeLaterIfNeeded(new Runnable() {
+      @Override
+      public void run() {
+        Runnable[] toFinish;
+        synchronized (documentsToCommit) {
+          toFinish = finishRunnables.toArray(new Runnable[finishRunnables.size()]);
+          finishRunnables.clear();
+          finishScheduled = false;
+        }
+        for (Runnable runnable : toFinish) {
+          try {
+            runnable.run();
+          }
+          catch (Throwable e) {
+            LOG.error(e);
+          }
+        }
+      }
+    });
+  }
+
   @Override
   public void commitSynchronously(@NotNull Document document, @NotNull Project project) {
     assert !isDisposed;
@@ -436,17 +480,6 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
     return new ProgressIndicatorBase();
   }
 
-  private void startNewTask(@Nullable CommitTask task, @NotNull Object reason) {
-    synchronized (documentsToCommit) { // sync to prevent overwriting
-      CommitTask cur = currentTask;
-      if (cur != null) {
-        cur.indicator.cancel();
-      }
-      currentTask = task;
-    }
-    log("new task started", task, false, reason);
-  }
-
   // returns finish commit Runnable (to be invoked later in EDT), or null on failure
   @Nullable
   private Runnable commitUnderProgress(@NotNull final CommitTask task, final boolean synchronously) {
@@ -587,6 +620,6 @@ public class DocumentCommitThread extends DocumentCommitProcessor implements Run
 
   @Override
   public String toString() {
-    return "Document commit thread; application: "+myApplication+"; isDisposed: "+isDisposed+"; threadFinished: "+threadFinished+"; myEnabled: "+myEnabled+"; runningWriteActions: "+runningWriteActions;
+    return "Document commit thread; application: "+myApplication+"; isDisposed: "+isDisposed+"; runningThreads: "+runningThreads+"; myEnabled: "+myEnabled+"; runningWriteActions: "+runningWriteActions;
   }
 }
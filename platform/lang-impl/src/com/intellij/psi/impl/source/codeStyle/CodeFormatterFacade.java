@@ -160,6 +160,41 @@ public class CodeFormatterFacade {
   }
 
   public void processText(PsiFile file, final FormatTextRanges ranges, boolean doPostponedFormatting) {
+    processText(file, ranges, doPostponedFormatting, null);
+  }
+
+  /**
+   * Builds the formatting model of the given file and calculates the white space changes for the given ranges without applying
+   * them, which needs only a read action.
+   *
+   * @return    the calculated changes to pass to {@link #processText(PsiFile, FormatTextRanges, boolean, PreparedFormatting)} or
+   *            <code>null</code> if the file can't be prepared this way
+   */
+  @Nullable
+  public PreparedFormatting prepareText(@NotNull PsiFile file, @NotNull FormatTextRanges ranges) {
+    final Project project = file.getProject();
+    Document document = PsiDocumentManager.getInstance(project).getDocument(file);
+    final FormattingModelBuilder builder = LanguageFormatting.INSTANCE.forContext(file);
+    if (document == null || document instanceof DocumentWindow || builder == null || file.getTextLength() == 0) {
+      return null;
+    }
+
+    long modificationStamp = document.getModificationStamp();
+    List<TextRange> textRanges = new ArrayList<TextRange>();
+    for (FormatTextRanges.FormatTextRange range : ranges.getRanges()) {
+      textRanges.add(range.getTextRange());
+    }
+    Runnable applyChanges = ((FormatterImpl)FormatterEx.getInstanceEx()).prepareFormatting(
+      buildModel(builder, file, document), mySettings, getIndentOptions(builder, file, ranges), ranges
+    );
+    return applyChanges == null ? null : new PreparedFormatting(document, modificationStamp, textRanges, applyChanges);
+  }
+
+  /**
+   * @param prepared    changes calculated by {@link #prepareText(PsiFile, FormatTextRanges)}; they're applied instead of formatting
+   *                    the file anew unless the document or the ranges to format have changed since then
+   */
+  public void processText(PsiFile file, final FormatTextRanges ranges, boolean doPostponedFormatting, @Nullable PreparedFormatting prepared) {
     final Project project = file.getProject();
     Document document = PsiDocumentManager.getInstance(project).getDocument(file);
     final List<FormatTextRanges.FormatTextRange> textRanges = ranges.getRanges();
@@ -227,25 +262,19 @@ public class CodeFormatterFacade {
             return;
           }
 
-          final FormattingModel originalModel = CoreFormatterUtil.buildModel(builder, file, mySettings, FormattingMode.REFORMAT);
-          final FormattingModel model = new DocumentBasedFormattingModel(originalModel.getRootBlock(),
-                                                                         document,
-                                                                         project, mySettings, file.getFileType(), file);
-
-          FormatterEx formatter = FormatterEx.getInstanceEx();
-          if (CodeStyleManager.getInstance(project).isSequentialProcessingAllowed()) {
-            formatter.setProgressTask(new FormattingProgressTask(project, file, document));
+          if (prepared != null && prepared.isUpToDate(document, textRanges)) {
+            prepared.myApplyChanges.run();
           }
+          else {
+            final FormattingModel model = buildModel(builder, file, document);
 
-          CommonCodeStyleSettings.IndentOptions indentOptions = null;
-          if (builder instanceof FormattingModelBuilderEx) {
-            indentOptions = ((FormattingModelBuilderEx)builder).getIndentOptionsToUse(file, ranges, mySettings);
-          }
-          if (indentOptions == null) {
-            indentOptions  = mySettings.getIndentOptionsByFile(file, textRanges.size() == 1 ? textRanges.get(0).getTextRange() : null);
-          }
+            FormatterEx formatter = FormatterEx.getInstanceEx();
+            if (CodeStyleManager.getInstance(project).isSequentialProcessingAllowed()) {
+              formatter.setProgressTask(new FormattingProgressTask(project, file, document));
+            }
 
-          formatter.format(model, mySettings, indentOptions, ranges);
+            formatter.format(model, mySettings, getIndentOptions(builder, file, ranges), ranges);
+          }
           for (FormatTextRanges.FormatTextRange range : textRanges) {
             TextRange textRange = range.getTextRange();
             wrapLongLinesIfNecessary(file, document, textRange.getStartOffset(), textRange.getEndOffset());
@@ -258,6 +287,28 @@ public class CodeFormatterFacade {
     }
   }
 
+  @NotNull
+  private FormattingModel buildModel(@NotNull FormattingModelBuilder builder, @NotNull PsiFile file, @NotNull Document document) {
+    final FormattingModel originalModel = CoreFormatterUtil.buildModel(builder, file, mySettings, FormattingMode.REFORMAT);
+    return new DocumentBasedFormattingModel(originalModel.getRootBlock(), document, file.getProject(), mySettings, file.getFileType(), file);
+  }
+
+  @NotNull
+  private CommonCodeStyleSettings.IndentOptions getIndentOptions(@NotNull FormattingModelBuilder builder,
+                                                                 @NotNull PsiFile file,
+                                                                 @NotNull FormatTextRanges ranges)
+  {
+    CommonCodeStyleSettings.IndentOptions indentOptions = null;
+    if (builder instanceof FormattingModelBuilderEx) {
+      indentOptions = ((FormattingModelBuilderEx)builder).getIndentOptionsToUse(file, ranges, mySettings);
+    }
+    if (indentOptions == null) {
+      List<FormatTextRanges.FormatTextRange> textRanges = ranges.getRanges();
+      indentOptions = mySettings.getIndentOptionsByFile(file, textRanges.size() == 1 ? textRanges.get(0).getTextRange() : null);
+    }
+    return indentOptions;
+  }
+
   private TextRange preprocess(@NotNull final ASTNode node, @NotNull TextRange range) {
     TextRange result = range;
     PsiElement psi = node.getPsi();
@@ -735,6 +786,39 @@ public class CodeFormatterFacade {
     };
   }
 
+  /**
+   * White space changes calculated in a read action by {@link #prepareText(PsiFile, FormatTextRanges)} and not applied yet.
+   */
+  public static class PreparedFormatting {
+    private final Document myDocument;
+    private final long myModificationStamp;
+    private final List<TextRange> myRanges;
+    private final Runnable myApplyChanges;
+
+    private PreparedFormatting(@NotNull Document document,
+                               long modificationStamp,
+                               @NotNull List<TextRange> ranges,
+                               @NotNull Runnable applyChanges)
+    {
+      myDocument = document;
+      myModificationStamp = modificationStamp;
+      myRanges = ranges;
+      myApplyChanges = applyChanges;
+    }
+
+    private boolean isUpToDate(@NotNull Document document, @NotNull List<FormatTextRanges.FormatTextRange> ranges) {
+      if (document != myDocument || document.getModificationStamp() != myModificationStamp || ranges.size() != myRanges.size()) {
+        return false;
+      }
+      for (int i = 0; i < ranges.size(); i++) {
+        if (!ranges.get(i).getTextRange().equals(myRanges.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   private static class DelegatingDataContext implements DataContext, UserDataHolder {
 
     private final DataContext myDataContextDelegate;
@@ -164,6 +164,36 @@ public class CodeStyleManagerImpl extends CodeStyleManager {
   }
 
   public void reformatText(@NotNull PsiFile file, @NotNull Collection<TextRange> ranges, @Nullable Editor editor) throws IncorrectOperationException {
+    reformatText(file, ranges, editor, null);
+  }
+
+  /**
+   * Calculates in a read action what {@link #reformatText(PsiFile, Collection)} is going to change, so that only applying the changes
+   * needs the write lock. The pre-format processors and the postponed formatting still run in the write action; if they change
+   * the document or the ranges, the file is formatted anew there.
+   *
+   * @param calledExplicitly  whether the changes are going to be applied within one of {@link FormatterUtil#FORMATTER_ACTION_NAMES}
+   */
+  @Nullable
+  public CodeFormatterFacade.PreparedFormatting prepareReformatText(@NotNull PsiFile file,
+                                                                    @NotNull Collection<TextRange> ranges,
+                                                                    boolean calledExplicitly)
+  {
+    if (ranges.isEmpty() || !SourceTreeToPsiMap.hasTreeElement(file)) {
+      return null;
+    }
+    Collection<TextRange> correctedRanges = calledExplicitly ? removeEndingWhiteSpaceFromEachRange(file, ranges) : ranges;
+    FormatTextRanges formatRanges = new FormatTextRanges();
+    for (TextRange range : correctedRanges) {
+      formatRanges.add(range, true);
+    }
+    return new CodeFormatterFacade(getSettings(), file.getLanguage()).prepareText(file, formatRanges);
+  }
+
+  public void reformatText(@NotNull PsiFile file,
+                           @NotNull Collection<TextRange> ranges,
+                           @Nullable Editor editor,
+                           @Nullable CodeFormatterFacade.PreparedFormatting prepared) throws IncorrectOperationException {
     if (ranges.isEmpty()) {
       return;
     }
@@ -220,7 +250,7 @@ public class CodeStyleManagerImpl extends CodeStyleManager {
     for (TextRange range : correctedRanges) {
       formatRanges.add(range, true);
     }
-    codeFormatter.processText(file, formatRanges, true);
+    codeFormatter.processText(file, formatRanges, true, prepared);
     for (RangeFormatInfo info : infos) {
       final PsiElement startElement = info.startPointer == null ? null : info.startPointer.getElement();
       final PsiElement endElement = info.endPointer == null ? null : info.endPointer.getElement();
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.stubs;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.openapi.vfs.newvfs.persistent.ContentHashesUtil;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorIntegerDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Serialized stubs of binary files stored by the hash of the content they are built from
+ * (see {@link BinaryFileStubBuilder.CacheableByContent}), so that e.g. a library jar present in several local repositories
+ * or used by several projects is stubbed once. Lives in the stub index directory, hence is dropped together with the stub index
+ * when its version changes or it's rebuilt. As it keeps stubs no file refers to any longer, it's also dropped
+ * when it grows larger than {@code idea.binary.stubs.by.content.hash.max.mb}.
+ */
+class BinaryStubsByContentHash {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.psi.stubs.BinaryStubsByContentHash");
+  static final boolean ENABLED = SystemProperties.getBooleanProperty("idea.binary.stubs.by.content.hash", true);
+  private static final long MAX_SIZE = SystemProperties.getIntProperty("idea.binary.stubs.by.content.hash.max.mb", 256) * 1024L * 1024L;
+
+  private static final DataExternalizer<SerializedStubTree> EXTERNALIZER = new DataExternalizer<SerializedStubTree>() {
+    @Override
+    public void save(@NotNull DataOutput out, SerializedStubTree value) throws IOException {
+      value.write(out);
+    }
+
+    @Override
+    public SerializedStubTree read(@NotNull DataInput in) throws IOException {
+      return new SerializedStubTree(in);
+    }
+  };
+
+  private final File myDir;
+  private final long myMaxSize;
+  // the storages are thread-safe themselves, the lock only guards replacing them
+  private final ReadWriteLock myLock = new ReentrantReadWriteLock();
+  private ContentHashesUtil.HashEnumerator myHashes;
+  private PersistentHashMap<Integer, SerializedStubTree> myStubs;
+
+  BinaryStubsByContentHash(@NotNull File dir) throws IOException {
+    this(dir, MAX_SIZE);
+  }
+
+  BinaryStubsByContentHash(@NotNull File dir, long maxSize) throws IOException {
+    myDir = dir;
+    myMaxSize = maxSize;
+    if (getStorageSize() > maxSize) {
+      FileUtil.delete(dir);
+    }
+    open();
+  }
+
+  private void open() throws IOException {
+    try {
+      myHashes = new ContentHashesUtil.HashEnumerator(new File(myDir, "hashes"), null);
+      myStubs = new PersistentHashMap<Integer, SerializedStubTree>(new File(myDir, "stubs"), EnumeratorIntegerDescriptor.INSTANCE, EXTERNALIZER);
+    }
+    catch (IOException e) {
+      closeStorages();
+      FileUtil.delete(myDir);
+      throw e;
+    }
+  }
+
+  private long getStorageSize() {
+    long size = 0;
+    File[] files = myDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        size += file.length();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return the hash of the data the stub of the file is built from, or null if the stub can't be shared with other files
+   */
+  @Nullable
+  static byte[] calcHash(@NotNull FileContent content) {
+    BinaryFileStubBuilder builder = BinaryFileStubBuilders.INSTANCE.forFileType(content.getFileType());
+    if (!(builder instanceof BinaryFileStubBuilder.CacheableByContent)) return null;
+    BinaryFileStubBuilder.CacheableByContent cacheable = (BinaryFileStubBuilder.CacheableByContent)builder;
+    if (!cacheable.isCacheable(content)) return null;
+
+    MessageDigest digest = ContentHashesUtil.HASHER_CACHE.getValue();
+    digest.reset();
+    digest.update(content.getFileType().getName().getBytes(CharsetToolkit.UTF8_CHARSET));
+    digest.update((byte)0);
+    digest.update(content.getContent());
+    digest.update((byte)0);
+    if (!cacheable.updateContentDigest(content, digest)) return null;
+    return digest.digest();
+  }
+
+  @Nullable
+  SerializedStubTree get(@NotNull byte[] hash) {
+    IOException error;
+    myLock.readLock().lock();
+    try {
+      if (myHashes == null) return null;
+      return myStubs.get(myHashes.enumerate(hash));
+    }
+    catch (IOException e) {
+      error = e;
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+    LOG.info(error);
+    clear();
+    return null;
+  }
+
+  void put(@NotNull byte[] hash, @NotNull SerializedStubTree tree) {
+    IOException error;
+    myLock.readLock().lock();
+    try {
+      if (myHashes == null) return;
+      myStubs.put(myHashes.enumerate(hash), tree);
+      return;
+    }
+    catch (IOException e) {
+      error = e;
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+    LOG.info(error);
+    clear();
+  }
+
+  void flush() {
+    myLock.writeLock().lock();
+    try {
+      if (myHashes != null && myHashes.isDirty()) myHashes.force();
+      if (myStubs != null && myStubs.isDirty()) myStubs.force();
+      if (myHashes != null && getStorageSize() > myMaxSize) {
+        LOG.info("Binary stubs cache exceeded " + myMaxSize / (1024 * 1024) + "MB and is dropped");
+        reopenEmpty();
+      }
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  void clear() {
+    myLock.writeLock().lock();
+    try {
+      reopenEmpty();
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  void close() {
+    myLock.writeLock().lock();
+    try {
+      closeStorages();
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  private void reopenEmpty() {
+    closeStorages();
+    FileUtil.delete(myDir);
+    try {
+      open();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  private void closeStorages() {
+    try {
+      if (myHashes != null) myHashes.close();
+      if (myStubs != null) myStubs.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    myHashes = null;
+    myStubs = null;
+  }
+}
@@ -96,6 +96,8 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
 
   private static final KeyDescriptor<Integer> DATA_DESCRIPTOR = new IntInlineKeyDescriptor();
 
+  private volatile BinaryStubsByContentHash myBinaryStubs;
+
   @NotNull
   @Override
   public ID<Integer, SerializedStubTree> getName() {
@@ -124,18 +126,27 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
         ApplicationManager.getApplication().runReadAction(new Runnable() {
           @Override
           public void run() {
-            final Stub rootStub = StubTreeBuilder.buildStubTree(inputData);
-            if (rootStub == null) return;
-
             VirtualFile file = inputData.getFile();
+            BinaryStubsByContentHash binaryStubs = myBinaryStubs;
+            byte[] hash = binaryStubs != null && file.getFileType().isBinary() ? BinaryStubsByContentHash.calcHash(inputData) : null;
+            SerializedStubTree tree = hash != null ? binaryStubs.get(hash) : null;
             int contentLength = file.getFileType().isBinary() ? -1 : inputData.getContentAsText().length();
-            rememberIndexingStamp(file, contentLength);
 
-            final BufferExposingByteArrayOutputStream bytes = new BufferExposingByteArrayOutputStream();
-            SerializationManagerEx.getInstanceEx().serialize(rootStub, bytes);
+            if (tree == null) {
+              final Stub rootStub = StubTreeBuilder.buildStubTree(inputData);
+              if (rootStub == null) return;
+
+              final BufferExposingByteArrayOutputStream bytes = new BufferExposingByteArrayOutputStream();
+              SerializationManagerEx.getInstanceEx().serialize(rootStub, bytes);
+              tree = new SerializedStubTree(bytes.getInternalBuffer(), bytes.size(), rootStub, file.getLength(), contentLength);
+              if (hash != null) {
+                binaryStubs.put(hash, tree);
+              }
+            }
+            rememberIndexingStamp(file, contentLength);
 
             final int key = Math.abs(FileBasedIndex.getFileId(file));
-            result.put(key, new SerializedStubTree(bytes.getInternalBuffer(), bytes.size(), rootStub, file.getLength(), contentLength));
+            result.put(key, tree);
           }
         });
 
@@ -254,6 +265,14 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
       throws StorageException, IOException {
       super(indexId, indexer, storage);
       checkNameStorage();
+      if (BinaryStubsByContentHash.ENABLED) {
+        try {
+          myBinaryStubs = new BinaryStubsByContentHash(new File(IndexInfrastructure.getIndexRootDir(indexId), "binaryStubs"));
+        }
+        catch (IOException e) {
+          LOG.info(e);
+        }
+      }
     }
 
     @Override
@@ -263,6 +282,10 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
         for (StubIndexKey key : stubIndex.getAllStubIndexKeys()) {
           stubIndex.flush(key);
         }
+        BinaryStubsByContentHash binaryStubs = myBinaryStubs;
+        if (binaryStubs != null) {
+          binaryStubs.flush();
+        }
       }
       finally {
         super.flush();
@@ -409,6 +432,10 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
         if (stubIndex != null) {
           stubIndex.clearAllIndices();
         }
+        BinaryStubsByContentHash binaryStubs = myBinaryStubs;
+        if (binaryStubs != null) {
+          binaryStubs.clear();
+        }
         super.clear();
       }
       finally {
@@ -426,6 +453,10 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
         super.dispose();
       }
       finally {
+        BinaryStubsByContentHash binaryStubs = myBinaryStubs;
+        if (binaryStubs != null) {
+          binaryStubs.close();
+        }
         getStubIndex().dispose();
       }
     }
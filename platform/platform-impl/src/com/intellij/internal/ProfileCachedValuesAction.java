@@ -0,0 +1,176 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.internal;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.util.Pair;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.table.TableView;
+import com.intellij.util.CachedValueProfiler;
+import com.intellij.util.CachedValueProfiler.ProviderStatistics;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.ui.ColumnInfo;
+import com.intellij.util.ui.ListTableModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Starts {@link CachedValueProfiler}; the next invocation stops it and shows the statistics per value provider class.
+ */
+public class ProfileCachedValuesAction extends DumbAwareAction {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.internal.ProfileCachedValuesAction");
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    if (!CachedValueProfiler.isEnabled()) {
+      CachedValueProfiler.setEnabled(true);
+      return;
+    }
+
+    CachedValueProfiler.setEnabled(false);
+    List<ProviderStatistics> statistics = CachedValueProfiler.getStatistics();
+    StringBuilder dump = new StringBuilder("Cached value statistics:");
+    for (ProviderStatistics providerStatistics : statistics) {
+      dump.append("\n").append(providerStatistics);
+    }
+    LOG.info(dump.toString());
+    new StatisticsDialog(e.getData(CommonDataKeys.PROJECT), statistics).show();
+  }
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setText(CachedValueProfiler.isEnabled() ? "Stop Cached Values Profiling" : "Start Cached Values Profiling");
+  }
+
+  private static class StatisticsDialog extends DialogWrapper {
+    private final List<ProviderStatistics> myStatistics;
+
+    private StatisticsDialog(@Nullable Project project, @NotNull List<ProviderStatistics> statistics) {
+      super(project, false);
+      myStatistics = statistics;
+      setTitle("Cached Value Providers");
+      init();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+      ListTableModel<ProviderStatistics> model = new ListTableModel<ProviderStatistics>(
+        new StatisticsColumn("Provider") {
+          @Override
+          public Object valueOf(ProviderStatistics statistics) {
+            return statistics.getProviderClass();
+          }
+        },
+        new LongColumn("Computations") {
+          @Override
+          protected long getValue(ProviderStatistics statistics) {
+            return statistics.getComputationCount();
+          }
+        },
+        new LongColumn("Time, ms") {
+          @Override
+          protected long getValue(ProviderStatistics statistics) {
+            return statistics.getComputationTimeMs();
+          }
+        },
+        new LongColumn("Hits") {
+          @Override
+          protected long getValue(ProviderStatistics statistics) {
+            return statistics.getHitCount();
+          }
+        },
+        new LongColumn("Hit ratio, %") {
+          @Override
+          protected long getValue(ProviderStatistics statistics) {
+            return Math.round(statistics.getHitRatio() * 100);
+          }
+        },
+        new StatisticsColumn("Invalidated by") {
+          @Override
+          public Object valueOf(ProviderStatistics statistics) {
+            Pair<String, Integer> cause = ContainerUtil.getFirstItem(statistics.getInvalidationCauses());
+            return cause == null ? "" : cause.first + " (" + cause.second + ")";
+          }
+        });
+      model.setSortable(true);
+      model.setItems(myStatistics);
+
+      TableView<ProviderStatistics> table = new TableView<ProviderStatistics>(model);
+      JScrollPane pane = ScrollPaneFactory.createScrollPane(table);
+      pane.setPreferredSize(new Dimension(1000, 600));
+      return pane;
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createActions() {
+      return new Action[]{getOKAction()};
+    }
+  }
+
+  private abstract static class StatisticsColumn extends ColumnInfo<ProviderStatistics, Object> {
+    private StatisticsColumn(String name) {
+      super(name);
+    }
+
+    @Nullable
+    @Override
+    public Comparator<ProviderStatistics> getComparator() {
+      return new Comparator<ProviderStatistics>() {
+        @Override
+        public int compare(ProviderStatistics o1, ProviderStatistics o2) {
+          return String.valueOf(valueOf(o1)).compareTo(String.valueOf(valueOf(o2)));
+        }
+      };
+    }
+  }
+
+  private abstract static class LongColumn extends StatisticsColumn {
+    private LongColumn(String name) {
+      super(name);
+    }
+
+    protected abstract long getValue(ProviderStatistics statistics);
+
+    @Override
+    public Object valueOf(ProviderStatistics statistics) {
+      return getValue(statistics);
+    }
+
+    @Nullable
+    @Override
+    public Comparator<ProviderStatistics> getComparator() {
+      return new Comparator<ProviderStatistics>() {
+        @Override
+        public int compare(ProviderStatistics o1, ProviderStatistics o2) {
+          long diff = getValue(o1) - getValue(o2);
+          return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+        }
+      };
+    }
+  }
+}
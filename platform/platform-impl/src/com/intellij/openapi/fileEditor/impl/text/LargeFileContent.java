@@ -0,0 +1,287 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.fileEditor.impl.text;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.io.MappedBufferWrapper;
+import com.intellij.util.text.StringSearcher;
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only view of a file too large to be loaded into a document.
+ * The file is memory-mapped page by page, only a few recently used pages are kept mapped,
+ * and text is decoded only for the byte ranges actually requested.
+ *
+ * Line starts are collected by {@link #buildLineIndex} (supposed to run in background); only every {@link #LINE_INDEX_STEP}-th
+ * line start is stored, the rest are found by scanning from the nearest stored one.
+ *
+ * Only charsets encoding '\n' as a single byte are supported, see {@link #isSupported(Charset)}.
+ */
+class LargeFileContent implements Disposable {
+  static final int PAGE_SIZE = 1024 * 1024;
+  private static final int MAX_MAPPED_PAGES = 16;
+  private static final int LINE_INDEX_STEP = 64;
+  private static final int MAX_LINE_START_LOOKBEHIND = 64 * 1024;
+
+  private final File myFile;
+  private final Charset myCharset;
+  private final long myLength;
+
+  // access is synchronized on this instance, so that a page can't be unmapped while being read
+  private final Map<Integer, MappedBufferWrapper> myPages = new LinkedHashMap<Integer, MappedBufferWrapper>(MAX_MAPPED_PAGES, 0.75f, true);
+  private boolean myDisposed;
+
+  // starts of lines 0, LINE_INDEX_STEP, 2 * LINE_INDEX_STEP...; guarded by this
+  private final TLongArrayList myLineStarts = new TLongArrayList();
+  private volatile int myLineCount = 1;
+  private volatile long myIndexedLength;
+
+  LargeFileContent(@NotNull File file, @NotNull Charset charset) {
+    myFile = file;
+    myCharset = charset;
+    myLength = file.length();
+    myLineStarts.add(0);
+  }
+
+  static boolean isSupported(@NotNull Charset charset) {
+    return Arrays.equals("\n".getBytes(charset), new byte[]{'\n'});
+  }
+
+  @NotNull
+  Charset getCharset() {
+    return myCharset;
+  }
+
+  long getLength() {
+    return myLength;
+  }
+
+  @NotNull
+  synchronized byte[] getBytes(long start, long end) throws IOException {
+    assert 0 <= start && start <= end && end <= myLength && end - start <= Integer.MAX_VALUE : start + ".." + end;
+    byte[] result = new byte[(int)(end - start)];
+    int copied = 0;
+    while (copied < result.length) {
+      long offset = start + copied;
+      ByteBuffer page = getPage((int)(offset / PAGE_SIZE));
+      page.position((int)(offset % PAGE_SIZE));
+      int count = Math.min(page.remaining(), result.length - copied);
+      page.get(result, copied, count);
+      copied += count;
+    }
+    return result;
+  }
+
+  /**
+   * Decodes the given range; the range is supposed to start and end at character boundaries, e.g. at line starts.
+   */
+  @NotNull
+  String getText(long start, long end) throws IOException {
+    return new String(getBytes(start, end), myCharset);
+  }
+
+  /**
+   * @return the start of the line containing the given offset, or the offset itself if the line is too long to look for its start
+   */
+  long getLineStart(long offset) throws IOException {
+    long from = Math.max(0, offset - MAX_LINE_START_LOOKBEHIND);
+    byte[] bytes = getBytes(from, offset);
+    for (int i = bytes.length - 1; i >= 0; i--) {
+      if (bytes[i] == '\n') return from + i + 1;
+    }
+    return from == 0 ? 0 : offset;
+  }
+
+  /**
+   * @return the start of the line following the one containing the given offset, or the file length if it's the last line
+   */
+  long getNextLineStart(long offset) throws IOException {
+    while (offset < myLength) {
+      long end = Math.min(myLength, offset + PAGE_SIZE);
+      byte[] bytes = getBytes(offset, end);
+      for (int i = 0; i < bytes.length; i++) {
+        if (bytes[i] == '\n') return offset + i + 1;
+      }
+      offset = end;
+    }
+    return myLength;
+  }
+
+  void buildLineIndex(@NotNull ProgressIndicator indicator) throws IOException {
+    int lineCount = myLineCount;
+    for (long pageStart = myIndexedLength; pageStart < myLength; pageStart += PAGE_SIZE) {
+      indicator.checkCanceled();
+      indicator.setFraction((double)pageStart / myLength);
+      synchronized (this) {
+        ByteBuffer page = getPage((int)(pageStart / PAGE_SIZE));
+        int size = page.limit();
+        for (int i = 0; i < size; i++) {
+          if (page.get(i) == '\n') {
+            if (lineCount % LINE_INDEX_STEP == 0) {
+              myLineStarts.add(pageStart + i + 1);
+            }
+            lineCount++;
+          }
+        }
+        myLineCount = lineCount;
+        myIndexedLength = pageStart + size;
+      }
+    }
+  }
+
+  boolean isLineIndexComplete() {
+    return myIndexedLength == myLength;
+  }
+
+  /**
+   * @return the number of lines whose starts are already known, the total number of lines if the index is complete
+   */
+  int getLineCount() {
+    return myLineCount;
+  }
+
+  long getLineStartOffset(int line) throws IOException {
+    assert line >= 0 && line < myLineCount : line;
+    long offset;
+    synchronized (this) {
+      offset = myLineStarts.get(line / LINE_INDEX_STEP);
+    }
+    for (int i = line % LINE_INDEX_STEP; i > 0; i--) {
+      offset = getNextLineStart(offset);
+    }
+    return offset;
+  }
+
+  /**
+   * @return zero-based number of the line containing the given offset, or -1 if the offset is not indexed yet
+   */
+  int getLineNumber(long offset) throws IOException {
+    if (offset > myIndexedLength || offset > myLength) return -1;
+
+    int block;
+    long blockStart;
+    synchronized (this) {
+      block = myLineStarts.binarySearch(offset);
+      if (block < 0) block = -block - 2;
+      blockStart = myLineStarts.get(block);
+    }
+
+    int line = block * LINE_INDEX_STEP;
+    byte[] bytes = getBytes(blockStart, offset);
+    for (byte b : bytes) {
+      if (b == '\n') line++;
+    }
+    return line;
+  }
+
+  /**
+   * Looks for the next occurrence of the searcher pattern starting from the given offset.
+   * The text is searched line-aligned chunk by chunk, so occurrences spanning line breaks can't be found.
+   *
+   * @return byte offset of the occurrence, or -1 if there's none
+   */
+  long findNext(@NotNull StringSearcher searcher, long from, @NotNull ProgressIndicator indicator) throws IOException {
+    long chunkStart = from;
+    while (chunkStart < myLength) {
+      indicator.checkCanceled();
+      indicator.setFraction((double)chunkStart / myLength);
+
+      long chunkEnd = Math.min(myLength, chunkStart + PAGE_SIZE);
+      byte[] bytes = getBytes(chunkStart, chunkEnd);
+      int length = bytes.length;
+      if (chunkEnd < myLength) {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+          if (bytes[i] == '\n') {
+            length = i + 1;
+            break;
+          }
+        }
+      }
+
+      String text = new String(bytes, 0, length, myCharset);
+      int found = searcher.scan(text);
+      if (found >= 0) {
+        return chunkStart + text.substring(0, found).getBytes(myCharset).length;
+      }
+      chunkStart += length;
+    }
+    return -1;
+  }
+
+  @NotNull
+  private ByteBuffer getPage(int index) throws IOException {
+    if (myDisposed) throw new IOException("Closed: " + myFile);
+
+    MappedBufferWrapper page = myPages.get(index);
+    if (page == null) {
+      if (myPages.size() >= MAX_MAPPED_PAGES) {
+        Iterator<MappedBufferWrapper> eldest = myPages.values().iterator();
+        eldest.next().unmap();
+        eldest.remove();
+      }
+      long start = (long)index * PAGE_SIZE;
+      page = new PageBuffer(myFile, start, Math.min(PAGE_SIZE, myLength - start));
+      myPages.put(index, page);
+    }
+    return page.getBuffer();
+  }
+
+  @Override
+  public synchronized void dispose() {
+    myDisposed = true;
+    for (MappedBufferWrapper page : myPages.values()) {
+      page.unmap();
+    }
+    myPages.clear();
+  }
+
+  private static class PageBuffer extends MappedBufferWrapper {
+    private PageBuffer(@NotNull File file, long pos, long length) {
+      super(file, pos, length);
+    }
+
+    @Override
+    protected MappedByteBuffer map() throws IOException {
+      FileInputStream stream = new FileInputStream(myFile);
+      try {
+        FileChannel channel = stream.getChannel();
+        try {
+          return channel.map(FileChannel.MapMode.READ_ONLY, myPosition, myLength);
+        }
+        finally {
+          channel.close();
+        }
+      }
+      finally {
+        stream.close();
+      }
+    }
+  }
+}
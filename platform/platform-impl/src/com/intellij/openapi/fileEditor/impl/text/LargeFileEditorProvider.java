@@ -23,6 +23,7 @@ import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.UserDataHolderBase;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.SingleRootFileViewProvider;
 import org.jdom.Element;
@@ -79,14 +80,27 @@ public class LargeFileEditorProvider implements FileEditorProvider, DumbAware {
 
   private static class LargeFileEditor extends UserDataHolderBase implements FileEditor {
     private final VirtualFile myFile;
+    private final LargeFileViewer myViewer;
 
     public LargeFileEditor(VirtualFile file) {
       myFile = file;
+
+      // local files in a charset with single-byte line breaks are shown read-only page by page, others can't be shown at all
+      if (file.isInLocalFileSystem() && LargeFileContent.isSupported(file.getCharset())) {
+        myViewer = new LargeFileViewer(new LargeFileContent(VfsUtilCore.virtualToIoFile(file), file.getCharset()));
+        Disposer.register(this, myViewer);
+      }
+      else {
+        myViewer = null;
+      }
     }
 
     @NotNull
     @Override
     public JComponent getComponent() {
+      if (myViewer != null) {
+        return myViewer;
+      }
       JLabel label = new JLabel(
         "File " + myFile.getPath() + " is too large for " + ApplicationNamesInfo.getInstance().getFullProductName() + " editor");
       label.setHorizontalAlignment(SwingConstants.CENTER);
@@ -95,7 +109,7 @@ public class LargeFileEditorProvider implements FileEditorProvider, DumbAware {
 
     @Override
     public JComponent getPreferredFocusedComponent() {
-      return null;
+      return myViewer != null ? myViewer.getPreferredFocusedComponent() : null;
     }
 
     @NotNull
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.fileEditor.impl.text;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.colors.EditorColors;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.EditorFontType;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.ui.SearchTextField;
+import com.intellij.util.Alarm;
+import com.intellij.util.text.StringSearcher;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.IOException;
+
+/**
+ * Read-only viewer of {@link LargeFileContent}: shows a screenful of lines starting at some line start offset,
+ * the scroll bar is proportional to byte offsets, so it works before the line index is built.
+ */
+class LargeFileViewer extends JPanel implements Disposable {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.fileEditor.impl.text.LargeFileViewer");
+
+  private static final int SCROLL_RANGE = 1 << 20;
+  private static final int MAX_VISIBLE_BYTES = 256 * 1024;
+
+  private final LargeFileContent myContent;
+  private final JTextArea myTextArea = new JTextArea();
+  private final JScrollBar myScrollBar = new JScrollBar(Adjustable.VERTICAL, 0, 0, 0, SCROLL_RANGE);
+  private final SearchTextField mySearchField = new SearchTextField();
+  private final JLabel myStatus = new JLabel();
+  private final Alarm myStatusAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+  private final ProgressIndicatorBase myIndexingIndicator = new ProgressIndicatorBase();
+  private ProgressIndicatorBase mySearchIndicator;
+
+  private long myTopOffset;
+  private long myOccurrenceStart = -1;
+  private long myOccurrenceEnd = -1;
+  private boolean myUpdatingScrollBar;
+  private String mySearchStatus = "";
+
+  LargeFileViewer(@NotNull LargeFileContent content) {
+    super(new BorderLayout());
+    myContent = content;
+
+    myTextArea.setEditable(false);
+    myTextArea.setFont(EditorColorsManager.getInstance().getGlobalScheme().getFont(EditorFontType.PLAIN));
+    myTextArea.addMouseWheelListener(new MouseWheelListener() {
+      @Override
+      public void mouseWheelMoved(MouseWheelEvent e) {
+        scrollByLines(e.getWheelRotation() * 3);
+      }
+    });
+    myTextArea.addComponentListener(new ComponentAdapter() {
+      @Override
+      public void componentResized(ComponentEvent e) {
+        refresh();
+      }
+    });
+
+    myScrollBar.addAdjustmentListener(new AdjustmentListener() {
+      @Override
+      public void adjustmentValueChanged(AdjustmentEvent e) {
+        if (!myUpdatingScrollBar) {
+          scrollToOffset(myContent.getLength() * e.getValue() / SCROLL_RANGE);
+        }
+      }
+    });
+
+    mySearchField.addKeyboardListener(new KeyAdapter() {
+      @Override
+      public void keyPressed(KeyEvent e) {
+        if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+          findNext();
+        }
+      }
+    });
+
+    JPanel toolbar = new JPanel(new BorderLayout());
+    toolbar.add(mySearchField, BorderLayout.WEST);
+    toolbar.add(myStatus, BorderLayout.EAST);
+    add(toolbar, BorderLayout.NORTH);
+
+    JPanel text = new JPanel(new BorderLayout());
+    text.add(myTextArea, BorderLayout.CENTER);
+    text.add(myScrollBar, BorderLayout.EAST);
+    add(text, BorderLayout.CENTER);
+
+    startIndexing();
+    refresh();
+  }
+
+  @NotNull
+  JComponent getPreferredFocusedComponent() {
+    return myTextArea;
+  }
+
+  private void startIndexing() {
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          myContent.buildLineIndex(myIndexingIndicator);
+        }
+        catch (ProcessCanceledException ignored) { }
+        catch (IOException e) {
+          LOG.info(e);
+        }
+      }
+    });
+    updateStatus();
+  }
+
+  private void updateStatus() {
+    String lines;
+    if (myContent.isLineIndexComplete()) {
+      lines = myContent.getLineCount() + " lines";
+    }
+    else {
+      lines = "Indexing lines: " + (int)(myIndexingIndicator.getFraction() * 100) + "%";
+      myStatusAlarm.cancelAllRequests();
+      myStatusAlarm.addRequest(new Runnable() {
+        @Override
+        public void run() {
+          updateStatus();
+        }
+      }, 500);
+    }
+
+    String position = "";
+    try {
+      int line = myContent.getLineNumber(myTopOffset);
+      if (line >= 0) position = "Line " + (line + 1) + ", ";
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+
+    myStatus.setText((mySearchStatus.isEmpty() ? "" : mySearchStatus + "   ") + position + lines);
+  }
+
+  private void scrollByLines(int lines) {
+    try {
+      long offset = myTopOffset;
+      for (int i = 0; i < lines && offset < myContent.getLength(); i++) {
+        offset = myContent.getNextLineStart(offset);
+      }
+      for (int i = 0; i > lines && offset > 0; i--) {
+        offset = myContent.getLineStart(offset - 1);
+      }
+      myTopOffset = offset;
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    refresh();
+  }
+
+  private void scrollToOffset(long offset) {
+    try {
+      myTopOffset = myContent.getLineStart(offset);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    refresh();
+  }
+
+  private void refresh() {
+    int lineHeight = myTextArea.getFontMetrics(myTextArea.getFont()).getHeight();
+    int visibleLines = Math.max(1, myTextArea.getHeight() / Math.max(1, lineHeight));
+
+    try {
+      byte[] bytes = myContent.getBytes(myTopOffset, Math.min(myContent.getLength(), myTopOffset + MAX_VISIBLE_BYTES));
+      int length = bytes.length;
+      int lines = 0;
+      for (int i = 0; i < bytes.length; i++) {
+        if (bytes[i] == '\n' && ++lines == visibleLines) {
+          length = i;
+          break;
+        }
+      }
+      myTextArea.setText(new String(bytes, 0, length, myContent.getCharset()));
+
+      myTextArea.getHighlighter().removeAllHighlights();
+      if (myOccurrenceStart >= myTopOffset && myOccurrenceEnd <= myTopOffset + length) {
+        int start = new String(bytes, 0, (int)(myOccurrenceStart - myTopOffset), myContent.getCharset()).length();
+        int end = new String(bytes, 0, (int)(myOccurrenceEnd - myTopOffset), myContent.getCharset()).length();
+        Color color = EditorColorsManager.getInstance().getGlobalScheme().getAttributes(EditorColors.SEARCH_RESULT_ATTRIBUTES).getBackgroundColor();
+        myTextArea.getHighlighter().addHighlight(start, end, new DefaultHighlighter.DefaultHighlightPainter(color));
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      myTextArea.setText(e.getMessage());
+    }
+    catch (BadLocationException e) {
+      LOG.error(e);
+    }
+
+    myUpdatingScrollBar = true;
+    try {
+      long length = myContent.getLength();
+      myScrollBar.setValue(length == 0 ? 0 : (int)(myTopOffset * SCROLL_RANGE / length));
+    }
+    finally {
+      myUpdatingScrollBar = false;
+    }
+    updateStatus();
+  }
+
+  private void findNext() {
+    final String pattern = mySearchField.getText();
+    if (pattern.isEmpty()) return;
+    mySearchField.addCurrentTextToHistory();
+
+    if (mySearchIndicator != null) mySearchIndicator.cancel();
+    final ProgressIndicatorBase indicator = mySearchIndicator = new ProgressIndicatorBase();
+    final long from = myOccurrenceStart >= 0 ? myOccurrenceEnd : myTopOffset;
+    mySearchStatus = "Searching...";
+    updateStatus();
+
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          final long found = myContent.findNext(new StringSearcher(pattern, false, true), from, indicator);
+          UIUtil.invokeLaterIfNeeded(new Runnable() {
+            @Override
+            public void run() {
+              if (indicator.isCanceled()) return;
+              if (found < 0) {
+                mySearchStatus = "'" + pattern + "' not found";
+                myOccurrenceStart = myOccurrenceEnd = -1;
+                updateStatus();
+              }
+              else {
+                mySearchStatus = "";
+                myOccurrenceStart = found;
+                myOccurrenceEnd = found + pattern.getBytes(myContent.getCharset()).length;
+                scrollToOffset(found);
+              }
+            }
+          });
+        }
+        catch (ProcessCanceledException ignored) { }
+        catch (IOException e) {
+          LOG.info(e);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void dispose() {
+    myIndexingIndicator.cancel();
+    if (mySearchIndicator != null) mySearchIndicator.cancel();
+    Disposer.dispose(myContent);
+  }
+}
@@ -30,6 +30,7 @@ import com.intellij.openapi.vfs.JarFile;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VfsBundle;
 import com.intellij.openapi.vfs.impl.ZipHandler;
+import com.intellij.openapi.vfs.impl.ZipIndex;
 import com.intellij.openapi.vfs.newvfs.persistent.FSRecords;
 import com.intellij.openapi.vfs.newvfs.persistent.FlushingDaemon;
 import com.intellij.util.io.DataExternalizer;
@@ -52,6 +53,7 @@ public class JarHandler extends ZipHandler {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.impl.jar.JarHandler");
 
   private static final String JARS_FOLDER = "jars";
+  private static final String INDEX_FILE = "index";
   private static final int FS_TIME_RESOLUTION = 2000;
 
   private final JarFileSystemImpl myFileSystem;
@@ -72,6 +74,20 @@ public class JarHandler extends ZipHandler {
     return fileWithMirrorResolved;
   }
 
+  @NotNull
+  @Override
+  protected ZipIndex loadIndex(@NotNull File file) throws IOException {
+    return ourIndexCache.getValue().getIndex(file);
+  }
+
+  private static final NotNullLazyValue<ZipIndexCache> ourIndexCache = new NotNullLazyValue<ZipIndexCache>() {
+    @NotNull
+    @Override
+    protected ZipIndexCache compute() {
+      return new ZipIndexCache(new File(new File(getJarsDir()), INDEX_FILE));
+    }
+  };
+
   private File getMirrorFile(@NotNull File originalFile) {
     if (!myFileSystem.isMakeCopyOfJar(originalFile)) return originalFile;
 
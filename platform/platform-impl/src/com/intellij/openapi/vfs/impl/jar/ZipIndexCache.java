@@ -0,0 +1,137 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.impl.jar;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.ShutDownTracker;
+import com.intellij.openapi.util.io.FileAttributes;
+import com.intellij.openapi.util.io.FileSystemUtil;
+import com.intellij.openapi.vfs.impl.ZipIndex;
+import com.intellij.openapi.vfs.newvfs.persistent.FlushingDaemon;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Persists {@link ZipIndex} entry tables of archives between sessions, so that opening a large classpath
+ * does not require re-reading central directories of all its .jar files.
+ * A stored table is used only while the archive keeps its length and timestamp.
+ */
+class ZipIndexCache {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.impl.jar.ZipIndexCache");
+
+  private static class Record {
+    private final long myLength;
+    private final long myTimestamp;
+    private final ZipIndex myIndex;
+
+    private Record(long length, long timestamp, @NotNull ZipIndex index) {
+      myLength = length;
+      myTimestamp = timestamp;
+      myIndex = index;
+    }
+  }
+
+  private final PersistentHashMap<String, Record> myRecords;
+
+  ZipIndexCache(@NotNull File file) {
+    PersistentHashMap<String, Record> records = null;
+    for (int i = 0; i < 2; ++i) {
+      try {
+        records = new PersistentHashMap<String, Record>(file, new EnumeratorStringDescriptor(), new DataExternalizer<Record>() {
+          @Override
+          public void save(@NotNull DataOutput out, Record value) throws IOException {
+            out.writeLong(value.myLength);
+            out.writeLong(value.myTimestamp);
+            value.myIndex.save(out);
+          }
+
+          @Override
+          public Record read(@NotNull DataInput in) throws IOException {
+            return new Record(in.readLong(), in.readLong(), ZipIndex.load(in));
+          }
+        });
+        break;
+      }
+      catch (IOException e) {
+        LOG.info(e);
+        PersistentHashMap.deleteFilesStartingWith(file);
+      }
+    }
+    myRecords = records;
+
+    if (records != null) {
+      FlushingDaemon.everyFiveSeconds(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      });
+
+      ShutDownTracker.getInstance().registerShutdownTask(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      });
+    }
+  }
+
+  @NotNull
+  ZipIndex getIndex(@NotNull File archive) throws IOException {
+    FileAttributes attributes = FileSystemUtil.getAttributes(archive);
+    if (attributes == null || myRecords == null) {
+      return ZipIndex.read(archive);
+    }
+
+    String path = archive.getPath();
+    Record record = get(path);
+    if (record != null && record.myLength == attributes.length && record.myTimestamp == attributes.lastModified) {
+      return record.myIndex;
+    }
+
+    ZipIndex index = ZipIndex.read(archive);
+    try {
+      myRecords.put(path, new Record(attributes.length, attributes.lastModified, index));
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    return index;
+  }
+
+  @Nullable
+  private Record get(@NotNull String path) {
+    try {
+      return myRecords.get(path);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return null;
+    }
+  }
+
+  private void flush() {
+    if (myRecords.isDirty()) myRecords.force();
+  }
+}
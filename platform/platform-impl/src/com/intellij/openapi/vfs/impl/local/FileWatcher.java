@@ -75,6 +75,7 @@ public class FileWatcher {
 
   private static final String PROPERTY_WATCHER_DISABLED = "idea.filewatcher.disabled";
   private static final String PROPERTY_WATCHER_EXECUTABLE_PATH = "idea.filewatcher.executable.path";
+  private static final String PROPERTY_JAVA_WATCHER = "idea.filewatcher.java";
   private static final String ROOTS_COMMAND = "ROOTS";
   private static final String EXIT_COMMAND = "EXIT";
   private static final int MAX_PROCESS_LAUNCH_ATTEMPT_COUNT = 10;
@@ -82,6 +83,7 @@ public class FileWatcher {
   private final ManagingFS myManagingFS;
   private final File myExecutable;
   private volatile MyProcessHandler myProcessHandler;
+  private volatile Nio2FileWatcher myJavaWatcher;
   private volatile int myStartAttemptCount = 0;
   private volatile boolean myIsShuttingDown = false;
   private final AtomicBoolean myFailureShownToTheUser = new AtomicBoolean(false);
@@ -106,19 +108,28 @@ public class FileWatcher {
     if (disabled) {
       LOG.info("Native file watcher is disabled");
     }
+    else if (Boolean.parseBoolean(System.getProperty(PROPERTY_JAVA_WATCHER))) {
+      if (!startJavaWatcher()) {
+        notifyOnFailure(ApplicationBundle.message("watcher.failed.to.start"), null);
+      }
+    }
     else if (myExecutable == null) {
       LOG.info("Native file watcher is not supported on this platform");
     }
     else if (!myExecutable.exists()) {
-      notifyOnFailure(ApplicationBundle.message("watcher.exe.not.found"), null);
+      if (!startJavaWatcher()) {
+        notifyOnFailure(ApplicationBundle.message("watcher.exe.not.found"), null);
+      }
     }
     else if (!myExecutable.canExecute()) {
-      notifyOnFailure(ApplicationBundle.message("watcher.exe.not.exe", myExecutable), new NotificationListener() {
-        @Override
-        public void hyperlinkUpdate(@NotNull Notification notification, @NotNull HyperlinkEvent event) {
-          ShowFilePathAction.openFile(myExecutable);
-        }
-      });
+      if (!startJavaWatcher()) {
+        notifyOnFailure(ApplicationBundle.message("watcher.exe.not.exe", myExecutable), new NotificationListener() {
+          @Override
+          public void hyperlinkUpdate(@NotNull Notification notification, @NotNull HyperlinkEvent event) {
+            ShowFilePathAction.openFile(myExecutable);
+          }
+        });
+      }
     }
     else {
       try {
@@ -127,7 +138,9 @@ public class FileWatcher {
       }
       catch (IOException e) {
         LOG.warn(e.getMessage());
-        notifyOnFailure(ApplicationBundle.message("watcher.failed.to.start"), null);
+        if (!startJavaWatcher()) {
+          notifyOnFailure(ApplicationBundle.message("watcher.failed.to.start"), null);
+        }
       }
     }
   }
@@ -135,13 +148,16 @@ public class FileWatcher {
   public void dispose() {
     myIsShuttingDown = true;
     shutdownProcess();
+    shutdownJavaWatcher();
   }
 
   public boolean isOperational() {
-    return myProcessHandler != null;
+    return myProcessHandler != null || myJavaWatcher != null;
   }
 
   public boolean isSettingRoots() {
+    Nio2FileWatcher javaWatcher = myJavaWatcher;
+    if (javaWatcher != null) return javaWatcher.isSettingRoots();
     return isOperational() && mySettingRoots.get() > 0;
   }
 
@@ -198,6 +214,52 @@ public class FileWatcher {
     return null;
   }
 
+  /**
+   * Starts a Java (JDK 7 WatchService-based) backend instead of the native one. It is used only on Linux
+   * (where the JDK service is backed by inotify) unless explicitly requested by the "idea.filewatcher.java" property.
+   */
+  private boolean startJavaWatcher() {
+    String property = System.getProperty(PROPERTY_JAVA_WATCHER);
+    boolean allowed = property != null ? Boolean.parseBoolean(property) : SystemInfo.isLinux;
+    if (!allowed || !SystemInfo.isJavaVersionAtLeast("1.7") || myIsShuttingDown) {
+      return false;
+    }
+
+    try {
+      myJavaWatcher = new Nio2FileWatcher(new Nio2FileWatcher.Listener() {
+        @Override
+        public void processChange(@NotNull String path, @NotNull WatcherOp op) {
+          FileWatcher.this.processChange(path, op);
+        }
+
+        @Override
+        public void processUnwatchable(@NotNull List<String> roots) {
+          FileWatcher.this.processUnwatchable(roots);
+        }
+      });
+      LOG.info("Java file watcher is operational.");
+    }
+    catch (Exception e) {
+      LOG.warn("Java file watcher failed to start", e);
+      return false;
+    }
+
+    List<String> recursive = myRecursiveWatchRoots;
+    List<String> flat = myFlatWatchRoots;
+    if (recursive.size() + flat.size() > 0) {
+      setWatchRoots(recursive, flat, true);
+    }
+    return true;
+  }
+
+  private void shutdownJavaWatcher() {
+    Nio2FileWatcher javaWatcher = myJavaWatcher;
+    if (javaWatcher != null) {
+      javaWatcher.dispose();
+      myJavaWatcher = null;
+    }
+  }
+
   public void notifyOnFailure(final String cause, @Nullable final NotificationListener listener) {
     LOG.warn(cause);
 
@@ -222,7 +284,9 @@ public class FileWatcher {
     }
 
     if (myStartAttemptCount++ > MAX_PROCESS_LAUNCH_ATTEMPT_COUNT) {
-      notifyOnFailure(ApplicationBundle.message("watcher.failed.to.start"), null);
+      if (!startJavaWatcher()) {
+        notifyOnFailure(ApplicationBundle.message("watcher.failed.to.start"), null);
+      }
       return;
     }
 
@@ -269,7 +333,8 @@ public class FileWatcher {
   }
 
   private synchronized void setWatchRoots(List<String> recursive, List<String> flat, boolean restart) {
-    if (myProcessHandler == null || myProcessHandler.isProcessTerminated()) return;
+    Nio2FileWatcher javaWatcher = myJavaWatcher;
+    if (javaWatcher == null && (myProcessHandler == null || myProcessHandler.isProcessTerminated())) return;
 
     if (ApplicationManager.getApplication().isDisposeInProgress()) {
       recursive = flat = Collections.emptyList();
@@ -279,11 +344,17 @@ public class FileWatcher {
       return;
     }
 
-    mySettingRoots.incrementAndGet();
     myMapping = emptyList();
     myRecursiveWatchRoots = recursive;
     myFlatWatchRoots = flat;
 
+    if (javaWatcher != null) {
+      javaWatcher.setWatchRoots(recursive, flat);
+      return;
+    }
+
+    mySettingRoots.incrementAndGet();
+
     try {
       writeLine(ROOTS_COMMAND);
       for (String path : recursive) {
@@ -388,7 +459,7 @@ public class FileWatcher {
   }
 
   @SuppressWarnings("SpellCheckingInspection")
-  private enum WatcherOp {
+  enum WatcherOp {
     GIVEUP, RESET, UNWATCHEABLE, REMAP, MESSAGE, CREATE, DELETE, STATS, CHANGE, DIRTY, RECDIRTY
   }
 
@@ -437,7 +508,9 @@ public class FileWatcher {
         }
 
         if (watcherOp == WatcherOp.GIVEUP) {
-          notifyOnFailure(ApplicationBundle.message("watcher.gave.up"), null);
+          if (!startJavaWatcher()) {
+            notifyOnFailure(ApplicationBundle.message("watcher.gave.up"), null);
+          }
           myIsShuttingDown = true;
         }
         else if (watcherOp == WatcherOp.RESET) {
@@ -458,7 +531,7 @@ public class FileWatcher {
           }
           else {
             mySettingRoots.decrementAndGet();
-            processUnwatchable();
+            processUnwatchable(myLines);
           }
           myLines.clear();
           myLastOp = null;
@@ -490,11 +563,6 @@ public class FileWatcher {
       return localPath.endsWith(File.separator) ? localPath : localPath + File.separator;
     }
 
-    private void processUnwatchable() {
-      myManualWatchRoots = Collections.unmodifiableList(newArrayList(myLines));
-      notifyOnEvent();
-    }
-
     private void reset() {
       VirtualFile[] localRoots = myManagingFS.getLocalRoots();
       synchronized (myLock) {
@@ -504,81 +572,86 @@ public class FileWatcher {
       }
       notifyOnEvent();
     }
+  }
 
-    private void processChange(String path, WatcherOp op) {
-      if (SystemInfo.isWindows && op == WatcherOp.RECDIRTY && path.length() == 3 && Character.isLetter(path.charAt(0))) {
-        VirtualFile root = LocalFileSystem.getInstance().findFileByPath(path);
-        if (root != null) {
-          synchronized (myLock) {
-            myDirtyPaths.dirtyPathsRecursive.add(root.getPresentableUrl());
-          }
+  void processUnwatchable(@NotNull List<String> roots) {
+    myManualWatchRoots = Collections.unmodifiableList(newArrayList(roots));
+    notifyOnEvent();
+  }
+
+  void processChange(@NotNull String path, @NotNull WatcherOp op) {
+    if (SystemInfo.isWindows && op == WatcherOp.RECDIRTY && path.length() == 3 && Character.isLetter(path.charAt(0))) {
+      VirtualFile root = LocalFileSystem.getInstance().findFileByPath(path);
+      if (root != null) {
+        synchronized (myLock) {
+          myDirtyPaths.dirtyPathsRecursive.add(root.getPresentableUrl());
         }
-        notifyOnEvent();
-        return;
       }
+      notifyOnEvent();
+      return;
+    }
 
-      if (op == WatcherOp.CHANGE) {
-        // collapse subsequent change file change notifications that happen once we copy large file,
-        // this allows reduction of path checks at least 20% for Windows
-        synchronized (myLock) {
-          for (int i = 0; i < myLastChangedPaths.length; ++i) {
-            int last = myLastChangedPathIndex - i - 1;
-            if (last < 0) last += myLastChangedPaths.length;
-            String lastChangedPath = myLastChangedPaths[last];
-            if (lastChangedPath != null && lastChangedPath.equals(path)) {
-              return;
-            }
+    if (op == WatcherOp.CHANGE) {
+      // collapse subsequent change file change notifications that happen once we copy large file,
+      // this allows reduction of path checks at least 20% for Windows
+      synchronized (myLock) {
+        for (int i = 0; i < myLastChangedPaths.length; ++i) {
+          int last = myLastChangedPathIndex - i - 1;
+          if (last < 0) last += myLastChangedPaths.length;
+          String lastChangedPath = myLastChangedPaths[last];
+          if (lastChangedPath != null && lastChangedPath.equals(path)) {
+            return;
           }
-          myLastChangedPaths[myLastChangedPathIndex++] = path;
-          if (myLastChangedPathIndex == myLastChangedPaths.length) myLastChangedPathIndex = 0;
         }
+        myLastChangedPaths[myLastChangedPathIndex++] = path;
+        if (myLastChangedPathIndex == myLastChangedPaths.length) myLastChangedPathIndex = 0;
       }
+    }
 
-      int length = path.length();
-      if (length > 1 && path.charAt(length - 1) == '/') path = path.substring(0, length - 1);
-      boolean exactPath = op != WatcherOp.DIRTY && op != WatcherOp.RECDIRTY;
-      Collection<String> paths = checkWatchable(path, exactPath, false);
+    int length = path.length();
+    if (length > 1 && path.charAt(length - 1) == '/') path = path.substring(0, length - 1);
+    boolean exactPath = op != WatcherOp.DIRTY && op != WatcherOp.RECDIRTY;
+    Collection<String> paths = checkWatchable(path, exactPath, false);
 
-      if (paths.isEmpty()) {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Not watchable, filtered: " + path);
-        }
-        return;
+    if (paths.isEmpty()) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Not watchable, filtered: " + path);
       }
+      return;
+    }
 
-      synchronized (myLock) {
-        switch (op) {
-          case STATS:
-          case CHANGE:
-            myDirtyPaths.dirtyPaths.addAll(paths);
-            break;
-
-          case CREATE:
-          case DELETE:
-            for (String p : paths) {
-              myDirtyPaths.dirtyPaths.add(p);
-              String parentPath = new File(p).getParent();
-              if (parentPath != null) {
-                myDirtyPaths.dirtyPaths.add(parentPath);
-              }
+    synchronized (myLock) {
+      switch (op) {
+        case STATS:
+        case CHANGE:
+          myDirtyPaths.dirtyPaths.addAll(paths);
+          break;
+
+        case CREATE:
+        case DELETE:
+          for (String p : paths) {
+            myDirtyPaths.dirtyPaths.add(p);
+            String parentPath = new File(p).getParent();
+            if (parentPath != null) {
+              myDirtyPaths.dirtyPaths.add(parentPath);
             }
-            break;
+          }
+          break;
 
-          case DIRTY:
-            myDirtyPaths.dirtyDirectories.addAll(paths);
-            break;
+        case DIRTY:
+          myDirtyPaths.dirtyDirectories.addAll(paths);
+          break;
 
-          case RECDIRTY:
-            myDirtyPaths.dirtyPathsRecursive.addAll(paths);
-            break;
+        case RECDIRTY:
+          myDirtyPaths.dirtyPathsRecursive.addAll(paths);
+          break;
 
-          default:
-            LOG.error("Unexpected op: " + op);
-        }
+        default:
+          LOG.error("Unexpected op: " + op);
       }
-
-      notifyOnEvent();
     }
+
+    notifyOnEvent();
   }
 
   /* test data and methods */
@@ -612,6 +685,7 @@ public class FileWatcher {
     assert app != null && app.isUnitTestMode() : app;
 
     myNotifier = null;
+    shutdownJavaWatcher();
 
     final MyProcessHandler processHandler = myProcessHandler;
     if (processHandler != null) {
@@ -0,0 +1,522 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.impl.local;
+
+import com.intellij.Patches;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileSystemUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pure-Java file watcher backend built on top of JDK 7 {@code java.nio.file.WatchService}.
+ * Used by {@link FileWatcher} when the native helper is not available.
+ * <p/>
+ * The JDK service watches single directories only, so recursive roots are registered directory by directory
+ * (and newly created subdirectories are picked up on the fly), and file roots (e.g. jars) are watched through their parent
+ * directories, reporting only the events of the root files themselves. Events are accumulated for a short period and
+ * coalesced before being reported: repeated notifications for the same path are merged, and a storm of events
+ * in the directories of a root is collapsed into one "dirty root" notification. The events of file roots are always reported
+ * as they are, since a dirty parent directory would make the VFS refresh its unrelated children too.
+ * <p/>
+ * The JDK 7 API is accessed via reflection, since the platform still has to run on JDK 6.
+ */
+final class Nio2FileWatcher {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.impl.local.FileWatcher");
+
+  private static final long POLL_INTERVAL = 100;     // ms; how often pending root changes are picked up
+  private static final long COALESCE_DELAY = 50;     // ms; quiet period after which collected events are flushed
+  private static final long MAX_COALESCE_TIME = 500; // ms; upper limit for holding collected events
+  private static final int DIRECTORY_STORM_THRESHOLD = 100;  // events per directory before collapsing them
+  private static final int BATCH_STORM_THRESHOLD = 10000;    // events per batch before giving up on precise paths
+
+  interface Listener {
+    void processChange(@NotNull String path, @NotNull FileWatcher.WatcherOp op);
+
+    void processUnwatchable(@NotNull List<String> roots);
+  }
+
+  private final Listener myOwner;
+  private final Nio2 myNio;
+  private final Object myWatchService;
+  private final Thread myThread;
+  private volatile boolean myStopped = false;
+
+  private final Object myLock = new Object();
+  private List<String> myPendingRecursiveRoots = null;
+  private List<String> myPendingFlatRoots = null;
+  private volatile boolean mySettingRoots = false;
+
+  // accessed from the watcher thread only
+  private final Map<Object, WatchedDir> myKeys = new HashMap<Object, WatchedDir>();
+  private final Map<String, Object> myDirKeys = new THashMap<String, Object>(FileUtil.PATH_HASHING_STRATEGY);
+  private final Map<String, Boolean> myRoots = new THashMap<String, Boolean>(FileUtil.PATH_HASHING_STRATEGY);
+  private final Set<String> myUnwatchable = new THashSet<String>(FileUtil.PATH_HASHING_STRATEGY);
+  private final Batch myBatch = new Batch();
+
+  // a directory may be watched on behalf of several roots: e.g. a flat root nested in a recursive one, or the parent of several jars
+  private static class WatchedDir {
+    private final String path;
+    private boolean recursive;
+    @Nullable private Set<String> files;  // names of the file roots in the directory, or null when all children are reported
+    @Nullable private String root;        // the directory root reported dirty on a storm of events, or null for file roots' parents
+
+    private WatchedDir(String path, boolean recursive, @Nullable Set<String> files, @Nullable String root) {
+      this.path = path;
+      this.recursive = recursive;
+      this.files = files;
+      this.root = root;
+    }
+  }
+
+  Nio2FileWatcher(@NotNull Listener owner) throws Exception {
+    myOwner = owner;
+    myNio = new Nio2();
+    myWatchService = myNio.newWatchService.invoke(myNio.fileSystem);
+
+    myThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        watch();
+      }
+    }, "Java File Watcher");
+    myThread.setPriority(Thread.MIN_PRIORITY);
+    myThread.setDaemon(true);
+    myThread.start();
+  }
+
+  void setWatchRoots(@NotNull List<String> recursive, @NotNull List<String> flat) {
+    synchronized (myLock) {
+      myPendingRecursiveRoots = recursive;
+      myPendingFlatRoots = flat;
+      mySettingRoots = true;
+    }
+  }
+
+  boolean isSettingRoots() {
+    return mySettingRoots;
+  }
+
+  void dispose() {
+    myStopped = true;
+    try {
+      myNio.close.invoke(myWatchService);
+    }
+    catch (Exception e) {
+      LOG.warn(e);
+    }
+    try {
+      myThread.join(1000);
+    }
+    catch (InterruptedException ignored) { }
+  }
+
+  /* watcher thread */
+
+  private void watch() {
+    try {
+      while (!myStopped) {
+        applyPendingRoots();
+
+        Object key = myNio.poll(myWatchService, myBatch.isEmpty() ? POLL_INTERVAL : COALESCE_DELAY);
+        if (key != null) {
+          do {
+            processKey(key);
+            key = myNio.poll(myWatchService, 0);
+          }
+          while (key != null);
+        }
+        else {
+          myBatch.flush(myOwner);
+        }
+
+        if (myBatch.isOverdue()) {
+          myBatch.flush(myOwner);
+        }
+      }
+    }
+    catch (InvocationTargetException e) {
+      if (!myStopped || !"java.nio.file.ClosedWatchServiceException".equals(e.getCause().getClass().getName())) {
+        LOG.warn("Java file watcher has failed", e.getCause());
+      }
+    }
+    catch (Throwable t) {
+      LOG.error(t);
+    }
+    finally {
+      myStopped = true;
+    }
+  }
+
+  private void applyPendingRoots() throws Exception {
+    List<String> recursive, flat;
+    synchronized (myLock) {
+      recursive = myPendingRecursiveRoots;
+      flat = myPendingFlatRoots;
+      myPendingRecursiveRoots = myPendingFlatRoots = null;
+    }
+    if (recursive == null || flat == null) return;
+
+    Map<String, Boolean> newRoots = new THashMap<String, Boolean>(FileUtil.PATH_HASHING_STRATEGY);
+    for (String root : flat) newRoots.put(root, Boolean.FALSE);
+    for (String root : recursive) newRoots.put(root, Boolean.TRUE);
+
+    boolean removed = false;
+    for (Map.Entry<String, Boolean> entry : myRoots.entrySet()) {
+      if (!entry.getValue().equals(newRoots.get(entry.getKey()))) {
+        removed = true;
+        break;
+      }
+    }
+    if (removed) {
+      // the directories of a removed root may still be needed by the roots nested in it or containing it,
+      // so instead of tracking which root needs which directory the remaining roots are registered anew
+      for (Object key : myKeys.keySet()) {
+        myNio.cancel.invoke(key);
+      }
+      myKeys.clear();
+      myDirKeys.clear();
+      myRoots.clear();
+    }
+    myUnwatchable.clear();
+
+    // recursive roots go first, so that flat roots nested in them find their directories already watched
+    for (boolean isRecursive : new boolean[]{true, false}) {
+      for (Map.Entry<String, Boolean> entry : newRoots.entrySet()) {
+        String root = entry.getKey();
+        if (entry.getValue() != isRecursive || myRoots.containsKey(root)) continue;
+        if (registerRoot(root, isRecursive)) {
+          myRoots.put(root, isRecursive);
+        }
+        else {
+          myUnwatchable.add(root);
+        }
+      }
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Java watcher: " + myKeys.size() + " directories registered, " + myUnwatchable.size() + " roots not watchable");
+    }
+    synchronized (myLock) {
+      mySettingRoots = myPendingRecursiveRoots != null;
+    }
+    myOwner.processUnwatchable(ContainerUtil.newArrayList(myUnwatchable));
+  }
+
+  private void markUnwatchable(@NotNull String root) {
+    if (myUnwatchable.add(root)) {
+      myOwner.processUnwatchable(ContainerUtil.newArrayList(myUnwatchable));
+    }
+  }
+
+  @Nullable
+  private WatchedDir getWatchedDir(@NotNull String path) {
+    Object key = myDirKeys.get(path);
+    return key != null ? myKeys.get(key) : null;
+  }
+
+  private boolean registerRoot(@NotNull String root, boolean recursive) throws Exception {
+    File file = new File(root);
+    if (!file.isFile()) {
+      return registerTree(file, recursive, root);
+    }
+
+    File parent = file.getParentFile();
+    if (parent == null) return false;
+    WatchedDir watched = getWatchedDir(parent.getPath());
+    if (watched == null) {
+      Object key = tryRegister(parent);
+      if (key == null) return false;
+      watched = new WatchedDir(parent.getPath(), false, new THashSet<String>(FileUtil.PATH_HASHING_STRATEGY), null);
+      myKeys.put(key, watched);
+      myDirKeys.put(watched.path, key);
+    }
+    if (watched.files != null) {
+      watched.files.add(file.getName());
+    }
+    return true;
+  }
+
+  private boolean registerTree(@NotNull File dir, boolean recursive, @NotNull String root) throws Exception {
+    Deque<File> queue = new ArrayDeque<File>();
+    queue.add(dir);
+    while (!queue.isEmpty()) {
+      File next = queue.removeFirst();
+      String path = next.getPath();
+
+      WatchedDir watched = getWatchedDir(path);
+      if (watched != null) {
+        // already watched on behalf of another root: now all its children are to be reported
+        if (watched.files != null) {
+          watched.files = null;
+          watched.root = root;
+        }
+        if (watched.recursive || !recursive) continue;
+        watched.recursive = true;
+        watched.root = root;
+      }
+      else {
+        Object key;
+        try {
+          key = myNio.register(next, myWatchService);
+        }
+        catch (InvocationTargetException e) {
+          Throwable cause = e.getCause();
+          if (next == dir || !(cause instanceof IOException) || !"java.nio.file.NoSuchFileException".equals(cause.getClass().getName())) {
+            // a root which is not there, or an inotify watch limit; the root is reported as unwatchable
+            LOG.info("Cannot watch " + path + ": " + cause);
+            return false;
+          }
+          continue;  // a subdirectory deleted while walking
+        }
+        myKeys.put(key, new WatchedDir(path, recursive, null, root));
+        myDirKeys.put(path, key);
+      }
+
+      if (recursive) {
+        File[] children = next.listFiles();
+        if (children != null) {
+          for (File child : children) {
+            if (child.isDirectory() && !FileSystemUtil.isSymLink(child)) {
+              queue.add(child);
+            }
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  private Object tryRegister(@NotNull File dir) throws Exception {
+    try {
+      return myNio.register(dir, myWatchService);
+    }
+    catch (InvocationTargetException e) {
+      LOG.info("Cannot watch " + dir + ": " + e.getCause());
+      return null;
+    }
+  }
+
+  @NotNull
+  private static String getRoot(@NotNull WatchedDir dir) {
+    return dir.root != null ? dir.root : dir.path;
+  }
+
+  private void processKey(@NotNull Object key) throws Exception {
+    WatchedDir dir = myKeys.get(key);
+    List<?> events = (List<?>)myNio.pollEvents.invoke(key);
+    if (dir == null) return;
+
+    for (Object event : events) {
+      Object kind = myNio.kind.invoke(event);
+      if (kind == myNio.overflow) {
+        if (dir.files != null) {
+          for (String name : dir.files) {
+            myBatch.add(dir.path + File.separatorChar + name, FileWatcher.WatcherOp.CHANGE, dir);
+          }
+        }
+        else {
+          myBatch.add(dir.path, dir.recursive ? FileWatcher.WatcherOp.RECDIRTY : FileWatcher.WatcherOp.DIRTY, dir);
+        }
+        continue;
+      }
+
+      Object context = myNio.context.invoke(event);
+      if (context == null) continue;
+      String name = context.toString();
+      if (dir.files != null && !dir.files.contains(name)) continue;
+      String path = dir.path + File.separatorChar + name;
+
+      if (kind == myNio.create) {
+        myBatch.add(path, FileWatcher.WatcherOp.CREATE, dir);
+        File file = new File(path);
+        if (dir.recursive && file.isDirectory() && !FileSystemUtil.isSymLink(file) && !registerTree(file, true, getRoot(dir))) {
+          markUnwatchable(getRoot(dir));
+        }
+      }
+      else if (kind == myNio.delete) {
+        myBatch.add(path, FileWatcher.WatcherOp.DELETE, dir);
+      }
+      else {
+        myBatch.add(path, FileWatcher.WatcherOp.CHANGE, dir);
+      }
+    }
+
+    if (!(Boolean)myNio.reset.invoke(key)) {
+      // the directory is gone, or the watch service is closed
+      myKeys.remove(key);
+      if (myDirKeys.get(dir.path) == key) {
+        myDirKeys.remove(dir.path);
+      }
+      if (!myStopped) {
+        // a re-created root won't be noticed, so it is left to the manual refresh
+        if (myRoots.remove(dir.path) != null) {
+          markUnwatchable(dir.path);
+        }
+        if (dir.files != null) {
+          for (String name : dir.files) {
+            String root = dir.path + File.separatorChar + name;
+            if (myRoots.remove(root) != null) {
+              markUnwatchable(root);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static class Batch {
+    private final Map<String, FileWatcher.WatcherOp> myChanges = new LinkedHashMap<String, FileWatcher.WatcherOp>();
+    private final Map<String, WatchedDir> myParents = new THashMap<String, WatchedDir>();
+    private final TObjectIntHashMap<String> myDirCounts = new TObjectIntHashMap<String>();
+    private long myStarted = 0;
+    private int myEventCount = 0;
+
+    private boolean isEmpty() {
+      return myChanges.isEmpty();
+    }
+
+    private boolean isOverdue() {
+      return !isEmpty() && System.currentTimeMillis() - myStarted > MAX_COALESCE_TIME;
+    }
+
+    private void add(@NotNull String path, @NotNull FileWatcher.WatcherOp op, @NotNull WatchedDir dir) {
+      if (isEmpty()) myStarted = System.currentTimeMillis();
+      myEventCount++;
+
+      FileWatcher.WatcherOp existing = myChanges.get(path);
+      myChanges.put(path, merge(existing, op));
+      if (existing == null) {
+        myParents.put(path, dir);
+        if (!myDirCounts.adjustValue(dir.path, 1)) myDirCounts.put(dir.path, 1);
+      }
+    }
+
+    // CREATE and DELETE refresh both a file and its parent, so they subsume other events
+    @NotNull
+    private static FileWatcher.WatcherOp merge(@Nullable FileWatcher.WatcherOp existing, @NotNull FileWatcher.WatcherOp op) {
+      if (existing == null || existing == op) return op;
+      if (existing == FileWatcher.WatcherOp.RECDIRTY || op == FileWatcher.WatcherOp.RECDIRTY) return FileWatcher.WatcherOp.RECDIRTY;
+      if (existing == FileWatcher.WatcherOp.DIRTY || op == FileWatcher.WatcherOp.DIRTY) return FileWatcher.WatcherOp.DIRTY;
+      if (existing == FileWatcher.WatcherOp.CHANGE) return op;
+      return existing;
+    }
+
+    private void flush(@NotNull Listener owner) {
+      if (isEmpty()) return;
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Java watcher: " + myEventCount + " events coalesced into " + myChanges.size() + " paths");
+      }
+
+      // on a storm only directory roots are reported dirty, the events of file roots are few enough to be reported as they are
+      boolean batchStorm = myEventCount > BATCH_STORM_THRESHOLD;
+      Set<String> collapsed = ContainerUtil.newHashSet();
+      for (Map.Entry<String, FileWatcher.WatcherOp> entry : myChanges.entrySet()) {
+        String path = entry.getKey();
+        WatchedDir dir = myParents.get(path);
+        if (dir.root != null && (batchStorm || myDirCounts.get(dir.path) > DIRECTORY_STORM_THRESHOLD)) {
+          if (collapsed.add(dir.root)) {
+            owner.processChange(dir.root, dir.recursive ? FileWatcher.WatcherOp.RECDIRTY : FileWatcher.WatcherOp.DIRTY);
+          }
+        }
+        else {
+          owner.processChange(path, entry.getValue());
+        }
+      }
+
+      myChanges.clear();
+      myParents.clear();
+      myDirCounts.clear();
+      myEventCount = 0;
+    }
+  }
+
+  private static class Nio2 {
+    private final Object fileSystem;
+    private final Method newWatchService;
+    private final Method toPath;
+    private final Method register;
+    private final Object kinds;
+    private final Object create;
+    private final Object delete;
+    private final Object overflow;
+    private final Method poll;
+    private final Method close;
+    private final Method pollEvents;
+    private final Method reset;
+    private final Method cancel;
+    private final Method kind;
+    private final Method context;
+    private final Object timeUnit = TimeUnit.MILLISECONDS;
+
+    private Nio2() throws Exception {
+      //noinspection ConstantConditions
+      assert Patches.USE_REFLECTION_TO_ACCESS_JDK7;
+
+      fileSystem = Class.forName("java.nio.file.FileSystems").getMethod("getDefault").invoke(null);
+      newWatchService = Class.forName("java.nio.file.FileSystem").getMethod("newWatchService");
+      toPath = File.class.getMethod("toPath");
+
+      Class<?> watchServiceClass = Class.forName("java.nio.file.WatchService");
+      Class<?> kindClass = Class.forName("java.nio.file.WatchEvent$Kind");
+      Class<?> kindsClass = Class.forName("java.nio.file.StandardWatchEventKinds");
+      create = kindsClass.getField("ENTRY_CREATE").get(null);
+      delete = kindsClass.getField("ENTRY_DELETE").get(null);
+      overflow = kindsClass.getField("OVERFLOW").get(null);
+      kinds = Array.newInstance(kindClass, 3);
+      Array.set(kinds, 0, create);
+      Array.set(kinds, 1, delete);
+      Array.set(kinds, 2, kindsClass.getField("ENTRY_MODIFY").get(null));
+      register = Class.forName("java.nio.file.Path").getMethod("register", watchServiceClass, kinds.getClass());
+
+      poll = watchServiceClass.getMethod("poll", long.class, TimeUnit.class);
+      close = watchServiceClass.getMethod("close");
+
+      Class<?> keyClass = Class.forName("java.nio.file.WatchKey");
+      pollEvents = keyClass.getMethod("pollEvents");
+      reset = keyClass.getMethod("reset");
+      cancel = keyClass.getMethod("cancel");
+
+      Class<?> eventClass = Class.forName("java.nio.file.WatchEvent");
+      kind = eventClass.getMethod("kind");
+      context = eventClass.getMethod("context");
+    }
+
+    private Object register(File dir, Object watchService) throws Exception {
+      return register.invoke(toPath.invoke(dir), watchService, kinds);
+    }
+
+    @Nullable
+    private Object poll(Object watchService, long timeout) throws Exception {
+      return poll.invoke(watchService, timeout, timeUnit);
+    }
+  }
+}
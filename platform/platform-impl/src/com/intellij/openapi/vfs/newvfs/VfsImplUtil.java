@@ -15,9 +15,11 @@
  */
 package com.intellij.openapi.vfs.newvfs;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.ZipFileCache;
@@ -240,6 +242,19 @@ public class VfsImplUtil {
   private static void checkSubscription() {
     if (ourSubscribed.getAndSet(true)) return;
 
+    Disposer.register(ApplicationManager.getApplication(), new Disposable() {
+      @Override
+      public void dispose() {
+        synchronized (ourLock) {
+          for (Pair<ArchiveFileSystem, ArchiveHandler> record : ourHandlers.values()) {
+            record.second.dispose();
+          }
+          ourHandlers.clear();
+          ourDominatorsMap.clear();
+        }
+      }
+    });
+
     MessageBus bus = ApplicationManager.getApplication().getMessageBus();
     bus.connect().subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
       @Override
@@ -301,6 +316,7 @@ public class VfsImplUtil {
             return true;
           }
         });
+        handlerPair.second.dispose();
         registerPathToRefresh(handlerPair, path);
       }
       return handlerPair != null;
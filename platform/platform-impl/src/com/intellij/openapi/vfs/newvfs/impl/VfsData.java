@@ -250,20 +250,134 @@ public class VfsData {
 
   // non-final field accesses are synchronized on this instance, but this happens in VirtualDirectoryImpl
   public static class DirectoryData {
+    // directories with fewer children are looked up by binary search over names only
+    private static final int NAME_ID_INDEX_THRESHOLD = 256;
+
     private static final AtomicFieldUpdater<DirectoryData, KeyFMap> updater = AtomicFieldUpdater.forFieldOfType(DirectoryData.class, KeyFMap.class);
     @NotNull volatile KeyFMap myUserMap = KeyFMap.EMPTY_MAP;
-    @NotNull int[] myChildrenIds = ArrayUtil.EMPTY_INT_ARRAY;
+    // children ids sorted by name, only first myChildrenCount elements are used; the rest is a reserve for insertions
+    @NotNull private int[] myChildrenIds = ArrayUtil.EMPTY_INT_ARRAY;
+    private int myChildrenCount;
+    // (nameId << 32 | childId) pairs sorted by name id, built lazily for big directories
+    @Nullable private long[] myNameIdIndex;
+    private int myModificationCount;
     private Set<String> myAdoptedNames;
 
     VirtualFileSystemEntry[] getFileChildren(int fileId, VirtualDirectoryImpl parent) {
       assert fileId > 0;
-      VirtualFileSystemEntry[] children = new VirtualFileSystemEntry[myChildrenIds.length];
-      for (int i = 0; i < myChildrenIds.length; i++) {
+      VirtualFileSystemEntry[] children = new VirtualFileSystemEntry[myChildrenCount];
+      for (int i = 0; i < myChildrenCount; i++) {
         children[i] = assertNotNull(getFileById(myChildrenIds[i], parent));
       }
       return children;
     }
 
+    int getChildCount() {
+      return myChildrenCount;
+    }
+
+    int getChildId(int index) {
+      return myChildrenIds[index];
+    }
+
+    /**
+     * Incremented on every change of the children list, so that callers can detect that it was modified in the middle of their work.
+     */
+    int getModificationCount() {
+      return myModificationCount;
+    }
+
+    @NotNull
+    int[] getChildrenIds() {
+      return myChildrenCount == 0 ? ArrayUtil.EMPTY_INT_ARRAY : Arrays.copyOf(myChildrenIds, myChildrenCount);
+    }
+
+    void setChildrenIds(@NotNull int[] ids) {
+      myChildrenIds = ids;
+      myChildrenCount = ids.length;
+      myNameIdIndex = null;
+      myModificationCount++;
+    }
+
+    int indexOfChild(int id) {
+      for (int i = 0; i < myChildrenCount; i++) {
+        if (myChildrenIds[i] == id) return i;
+      }
+      return -1;
+    }
+
+    void insertChildAt(int index, int id) {
+      if (myChildrenCount == myChildrenIds.length) {
+        myChildrenIds = Arrays.copyOf(myChildrenIds, Math.max(4, myChildrenCount + (myChildrenCount >> 1)));
+      }
+      System.arraycopy(myChildrenIds, index, myChildrenIds, index + 1, myChildrenCount - index);
+      myChildrenIds[index] = id;
+
+      long[] nameIndex = myNameIdIndex;
+      if (nameIndex != null) {
+        long entry = nameIdEntry(id);
+        int pos = Arrays.binarySearch(nameIndex, 0, myChildrenCount, entry);
+        if (pos < 0) pos = -pos - 1;
+        if (myChildrenCount == nameIndex.length) {
+          myNameIdIndex = nameIndex = Arrays.copyOf(nameIndex, myChildrenCount + (myChildrenCount >> 1));
+        }
+        System.arraycopy(nameIndex, pos, nameIndex, pos + 1, myChildrenCount - pos);
+        nameIndex[pos] = entry;
+      }
+
+      myChildrenCount++;
+      myModificationCount++;
+    }
+
+    void removeChildAt(int index) {
+      int id = myChildrenIds[index];
+      System.arraycopy(myChildrenIds, index + 1, myChildrenIds, index, myChildrenCount - index - 1);
+
+      long[] nameIndex = myNameIdIndex;
+      if (nameIndex != null) {
+        for (int i = 0; i < myChildrenCount; i++) {
+          if ((int)nameIndex[i] == id) {
+            System.arraycopy(nameIndex, i + 1, nameIndex, i, myChildrenCount - i - 1);
+            break;
+          }
+        }
+      }
+
+      myChildrenCount--;
+      myModificationCount++;
+    }
+
+    /**
+     * Big directories are cheaper to search by name id than by name: comparing names requires fetching them from the name cache.
+     * Name ids are only equal for equal names, so this is applicable to case-sensitive file systems only.
+     */
+    boolean isNameIdIndexUseful() {
+      return myChildrenCount >= NAME_ID_INDEX_THRESHOLD;
+    }
+
+    /**
+     * @return id of the child with the given name id, or 0 if there's no such child
+     */
+    int findChildByNameId(int nameId) {
+      long[] index = myNameIdIndex;
+      if (index == null) {
+        index = new long[myChildrenCount + (myChildrenCount >> 2)];
+        for (int i = 0; i < myChildrenCount; i++) {
+          index[i] = nameIdEntry(myChildrenIds[i]);
+        }
+        Arrays.sort(index, 0, myChildrenCount);
+        myNameIdIndex = index;
+      }
+
+      int pos = Arrays.binarySearch(index, 0, myChildrenCount, (long)nameId << 32);
+      if (pos < 0) pos = -pos - 1;
+      return pos < myChildrenCount && (int)(index[pos] >>> 32) == nameId ? (int)index[pos] : 0;
+    }
+
+    private static long nameIdEntry(int id) {
+      return (long)assertNotNull(getSegment(id, false)).getNameId(id) << 32 | id;
+    }
+
     boolean changeUserMap(KeyFMap oldMap, KeyFMap newMap) {
       return updater.compareAndSet(this, oldMap, newMap);
     }
@@ -296,7 +410,7 @@ public class VfsData {
     public String toString() {
       return "DirectoryData{" +
              "myUserMap=" + myUserMap +
-             ", myChildrenIds=" + Arrays.toString(myChildrenIds) +
+             ", myChildrenIds=" + Arrays.toString(getChildrenIds()) +
              ", myAdoptedNames=" + myAdoptedNames +
              '}';
     }
@@ -111,7 +111,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
       myData.addAdoptedName(name, getFileSystem().isCaseSensitive());
     }
 
-    int indexInReal = findIndex(myData.myChildrenIds, name, ignoreCase);
+    int indexInReal = findIndex(myData, name, ignoreCase);
     if (indexInReal >= 0) {
       // there suddenly can be that we ask to add name to adopted whereas it already contains in the real part
       // in this case we should remove it from there
@@ -125,10 +125,16 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
     synchronized (myData) {
       if (myData.isAdoptedName(name)) return NULL_VIRTUAL_FILE;
 
-      int[] array = myData.myChildrenIds;
-      int indexInReal = findIndex(array, name, ignoreCase);
+      if (!ignoreCase && myData.isNameIdIndexUseful()) {
+        // a name which was never enumerated can't belong to any child
+        int nameId = FSRecords.findNameId(name);
+        int id = nameId > 0 ? myData.findChildByNameId(nameId) : 0;
+        return id > 0 ? VfsData.getFileById(id, this) : null;
+      }
+
+      int indexInReal = findIndex(myData, name, ignoreCase);
       if (indexInReal >= 0) {
-        return VfsData.getFileById(array[indexInReal], this);
+        return VfsData.getFileById(myData.getChildId(indexInReal), this);
       }
       return null;
     }
@@ -163,11 +169,11 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
       // maybe another doFindChild() sneaked in the middle
       if (myData.isAdoptedName(name)) return NULL_VIRTUAL_FILE;
 
-      int[] array = myData.myChildrenIds;
-      int indexInReal = findIndex(array, name, ignoreCase);
+      int modificationCount = myData.getModificationCount();
+      int indexInReal = findIndex(myData, name, ignoreCase);
       // double check
       if (indexInReal >= 0) {
-        return VfsData.getFileById(array[indexInReal], this);
+        return VfsData.getFileById(myData.getChildId(indexInReal), this);
       }
 
       // do not extract getId outside the synchronized block since it will cause a concurrency problem.
@@ -177,8 +183,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
       }
       child = createChild(FileNameCache.storeName(name), id, delegate);
 
-      int[] after = myData.myChildrenIds;
-      if (after != array)  {
+      if (myData.getModificationCount() != modificationCount)  {
         // in tests when we call assertAccessInTests it can load a huge number of files which lead to children modification
         // so fall back to slow path
         addChild(child);
@@ -311,7 +316,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
             return cmp;
           }
         });
-        TIntHashSet prevChildren = new TIntHashSet(myData.myChildrenIds);
+        TIntHashSet prevChildren = new TIntHashSet(myData.getChildrenIds());
         result = new int[childrenIds.length];
         for (int i = 0; i < childrenIds.length; i++) {
           FSRecords.NameId child = childrenIds[i];
@@ -330,7 +335,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
       }
 
       if (getId() > 0) {
-        myData.myChildrenIds = result;
+        myData.setChildrenIds(result);
         if (CHECK) {
           assertConsistency(ignoreCase, Arrays.asList(childrenIds));
         }
@@ -343,10 +348,9 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
 
   private void assertConsistency(boolean ignoreCase, @NotNull Object details) {
     if (!CHECK || ApplicationInfoImpl.isInPerformanceTest()) return;
-    int[] childrenIds = myData.myChildrenIds;
-    for (int i = 1; i < childrenIds.length; i++) {
-      int id = childrenIds[i];
-      int prev = childrenIds[i - 1];
+    for (int i = 1; i < myData.getChildCount(); i++) {
+      int id = myData.getChildId(i);
+      int prev = myData.getChildId(i - 1);
       CharSequence name = VfsData.getNameByFileId(id);
       CharSequence prevName = VfsData.getNameByFileId(prev);
       int cmp = compareNames(name, prevName, ignoreCase);
@@ -392,7 +396,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
 
   public VirtualFileSystemEntry findChildById(int id, boolean cachedOnly) {
     synchronized (myData) {
-      if (ArrayUtil.indexOf(myData.myChildrenIds, id) >= 0) {
+      if (myData.indexOfChild(id) >= 0) {
         return VfsData.getFileById(id, this);
       }
     }
@@ -412,7 +416,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
     final String childName = child.getName();
     final boolean ignoreCase = !getFileSystem().isCaseSensitive();
     synchronized (myData) {
-      int indexInReal = findIndex(myData.myChildrenIds, childName, ignoreCase);
+      int indexInReal = findIndex(myData, childName, ignoreCase);
 
       myData.removeAdoptedName(childName);
       if (indexInReal < 0) {
@@ -424,14 +428,9 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
   }
 
   private void insertChildAt(@NotNull VirtualFileSystemEntry file, int negativeIndex) {
-    @NotNull int[] array = myData.myChildrenIds;
-    int[] appended = new int[array.length + 1];
-    int i = -negativeIndex -1;
-    System.arraycopy(array, 0, appended, 0, i);
-    appended[i] = file.getId();
-    assert appended[i] > 0 : file;
-    System.arraycopy(array, i, appended, i + 1, array.length - i);
-    myData.myChildrenIds = appended;
+    int id = file.getId();
+    assert id > 0 : file;
+    myData.insertChildAt(-negativeIndex - 1, id);
   }
 
   public void removeChild(@NotNull VirtualFile file) {
@@ -444,7 +443,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
   }
 
   private void removeFromArray(int index) {
-    myData.myChildrenIds = ArrayUtil.remove(myData.myChildrenIds, index);
+    myData.removeChildAt(index);
   }
 
   public boolean allChildrenLoaded() {
@@ -461,13 +460,13 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
     }
   }
 
-  private static int findIndex(final int[] array, @NotNull CharSequence name, boolean ignoreCase) {
+  private static int findIndex(@NotNull VfsData.DirectoryData data, @NotNull CharSequence name, boolean ignoreCase) {
     int low = 0;
-    int high = array.length - 1;
+    int high = data.getChildCount() - 1;
 
     while (low <= high) {
       int mid = low + high >>> 1;
-      int cmp = -compareNames(VfsData.getNameByFileId(array[mid]), name, ignoreCase);
+      int cmp = -compareNames(VfsData.getNameByFileId(data.getChildId(mid)), name, ignoreCase);
       if (cmp > 0) {
         low = mid + 1;
       }
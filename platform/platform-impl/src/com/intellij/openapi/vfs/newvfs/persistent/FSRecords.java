@@ -60,7 +60,7 @@ public class FSRecords implements Forceable {
 
   public static final boolean weHaveContentHashes = SystemProperties.getBooleanProperty("idea.share.contents", true);
   public static final boolean lazyVfsDataCleaning = SystemProperties.getBooleanProperty("idea.lazy.vfs.data.cleaning", true);
-  private static final int VERSION = 20 + (weHaveContentHashes ? 0x10:0) + (IOUtil.ourByteBuffersUseNativeByteOrder ? 0x37:0);
+  private static final int VERSION = 21 + (weHaveContentHashes ? 0x10:0) + (IOUtil.ourByteBuffersUseNativeByteOrder ? 0x37:0);
 
   private static final int PARENT_OFFSET = 0;
   private static final int PARENT_SIZE = 4;
@@ -839,10 +839,9 @@ public class FSRecords implements Forceable {
 
         final int count = DataInputOutputUtil.readINT(input);
         final int[] result = ArrayUtil.newIntArray(count);
+        int prevId = id;
         for (int i = 0; i < count; i++) {
-          int childId = DataInputOutputUtil.readINT(input);
-          childId = childId >= 0 ? childId + id : -childId;
-          result[i] = childId;
+          prevId = result[i] = DataInputOutputUtil.readINT(input) + prevId;
         }
         input.close();
         return result;
@@ -884,9 +883,9 @@ public class FSRecords implements Forceable {
 
         int count = DataInputOutputUtil.readINT(input);
         NameId[] result = count == 0 ? NameId.EMPTY_ARRAY : new NameId[count];
+        int prevId = parentId;
         for (int i = 0; i < count; i++) {
-          int id = DataInputOutputUtil.readINT(input);
-          id = id >= 0 ? id + parentId : -id;
+          int id = prevId = DataInputOutputUtil.readINT(input) + prevId;
           int nameId = getNameId(id);
           result[i] = new NameId(id, nameId, FileNameCache.getVFileName(nameId));
         }
@@ -916,20 +915,30 @@ public class FSRecords implements Forceable {
     }
   }
 
+  // children are stored sorted by id, each one as a difference with the previous one (the first one - with the parent id),
+  // so that big directories with densely allocated ids take about a byte per child
   public static void updateList(int id, @NotNull int[] children) {
+    int[] sorted = children.clone();
+    Arrays.sort(sorted);
+    int count = 0;
+    for (int child : sorted) {
+      if (child == id) {
+        LOG.error("Cyclic parent child relations");
+      }
+      else {
+        sorted[count++] = child;
+      }
+    }
+
     try {
       w.lock();
       DbConnection.markDirty();
       final DataOutputStream record = writeAttribute(id, CHILDREN_ATT, false);
-      DataInputOutputUtil.writeINT(record, children.length);
-      for (int child : children) {
-        if (child == id) {
-          LOG.error("Cyclic parent child relations");
-        }
-        else {
-          child = child > id ? child - id : -child;
-          DataInputOutputUtil.writeINT(record, child);
-        }
+      DataInputOutputUtil.writeINT(record, count);
+      int prevId = id;
+      for (int i = 0; i < count; i++) {
+        DataInputOutputUtil.writeINT(record, sorted[i] - prevId);
+        prevId = sorted[i];
       }
       record.close();
     }
@@ -1028,6 +1037,24 @@ public class FSRecords implements Forceable {
     }
   }
 
+  /**
+   * @return id of the given name, or 0 if it has never been enumerated (unlike {@link #getNameId(String)}, doesn't enumerate it)
+   */
+  public static int findNameId(String name) {
+    try {
+      r.lock();
+      try {
+        return getNames().tryEnumerate(name);
+      }
+      finally {
+        r.unlock();
+      }
+    }
+    catch (Throwable e) {
+      throw DbConnection.handleError(e);
+    }
+  }
+
   public static int getNameId(String name) {
     try {
       r.lock();
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.editor.impl;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+
+public class DocumentPerformanceTest extends LightPlatformTestCase {
+  private static final int LINE_COUNT = 1000000;
+
+  public void testTypingInHugeDocument() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < LINE_COUNT; i++) {
+      text.append("    generatedCall(").append(i).append(");\n");
+    }
+    final Document document = EditorFactory.getInstance().createDocument(text);
+    final int start = document.getLineStartOffset(LINE_COUNT / 2);
+
+    PlatformTestUtil.startPerformanceTest("typing in a huge document", 3000, new ThrowableRunnable() {
+      @Override
+      public void run() {
+        WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+          @Override
+          public void run() {
+            // type some lines in the middle of the document and then delete them back char by char
+            int offset = start;
+            int line = LINE_COUNT / 2;
+            for (int i = 0; i < 1000; i++) {
+              document.insertString(offset, "x");
+              offset++;
+              assertEquals(line, document.getLineNumber(offset));
+              if (i % 50 == 49) {
+                document.insertString(offset, "\n");
+                offset++;
+                line++;
+              }
+            }
+            while (offset > start) {
+              document.deleteString(offset - 1, offset);
+              offset--;
+            }
+          }
+        });
+      }
+    }).cpuBound().assertTiming();
+
+    assertEquals(LINE_COUNT + 1, document.getLineCount());
+    Document fresh = EditorFactory.getInstance().createDocument(document.getImmutableCharSequence());
+    for (int line = 0; line <= LINE_COUNT; line += 997) {
+      assertEquals(fresh.getLineStartOffset(line), document.getLineStartOffset(line));
+      assertEquals(fresh.getLineEndOffset(line), document.getLineEndOffset(line));
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.editor.impl;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.testFramework.LightPlatformTestCase;
+
+public class DocumentSnapshotTest extends LightPlatformTestCase {
+  public void testSnapshotIsNotAffectedByModifications() {
+    final DocumentImpl document = new DocumentImpl("first\nsecond\n");
+    DocumentSnapshot before = document.getSnapshot();
+    assertEquals(document.getModificationStamp(), before.getModificationStamp());
+
+    WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(0, "zero\n");
+        document.deleteString(document.getTextLength() - 1, document.getTextLength());
+      }
+    });
+
+    assertEquals("first\nsecond\n", before.getText().toString());
+    assertEquals(3, before.getLineCount());
+    assertEquals(6, before.getLineStartOffset(1));
+    assertEquals(12, before.getLineEndOffset(1));
+    assertEquals(13, before.getLineStartOffset(2));
+    assertEquals(1, before.getLineNumber(6));
+    assertEquals(0, before.getLineNumber(5));
+
+    DocumentSnapshot after = document.getSnapshot();
+    assertNotSame(before, after);
+    assertEquals(document.getModificationStamp(), after.getModificationStamp());
+    assertEquals("zero\nfirst\nsecond", after.getText().toString());
+    assertEquals(document.getLineCount(), after.getLineCount());
+    for (int line = 0; line < document.getLineCount(); line++) {
+      assertEquals(document.getLineStartOffset(line), after.getLineStartOffset(line));
+      assertEquals(document.getLineEndOffset(line), after.getLineEndOffset(line));
+    }
+  }
+
+  public void testStampChangeRepublishesSnapshot() {
+    DocumentImpl document = new DocumentImpl("text");
+    DocumentSnapshot snapshot = document.getSnapshot();
+    document.setModificationStamp(snapshot.getModificationStamp() + 1);
+    assertEquals(snapshot.getModificationStamp() + 1, document.getSnapshot().getModificationStamp());
+    assertSame(snapshot.getText(), document.getSnapshot().getText());
+    assertEquals(1, document.getSnapshot().getLineCount());
+  }
+}
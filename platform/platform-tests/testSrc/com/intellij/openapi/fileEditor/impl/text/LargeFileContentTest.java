@@ -0,0 +1,104 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.fileEditor.impl.text;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.util.text.StringSearcher;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+public class LargeFileContentTest extends TestCase {
+  private static final int LINE_COUNT = 100000;
+
+  private File myFile;
+  private String myText;
+  private LargeFileContent myContent;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < LINE_COUNT; i++) {
+      builder.append("line ").append(i).append(" юникод").append(i % 10 == 0 ? " long line long line long line" : "").append('\n');
+    }
+    builder.append("last");
+    myText = builder.toString();
+
+    myFile = FileUtil.createTempFile("large", ".log");
+    FileUtil.writeToFile(myFile, myText.getBytes(CharsetToolkit.UTF8_CHARSET));
+    assertTrue(myFile.length() > 2 * LargeFileContent.PAGE_SIZE);
+
+    myContent = new LargeFileContent(myFile, CharsetToolkit.UTF8_CHARSET);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    myContent.dispose();
+    FileUtil.delete(myFile);
+    super.tearDown();
+  }
+
+  public void testLineIndex() throws IOException {
+    assertFalse(myContent.isLineIndexComplete());
+    assertEquals(-1, myContent.getLineNumber(myContent.getLength()));
+
+    myContent.buildLineIndex(new EmptyProgressIndicator());
+    assertTrue(myContent.isLineIndexComplete());
+    assertEquals(LINE_COUNT + 1, myContent.getLineCount());
+
+    for (int line : new int[]{0, 1, 63, 64, 65, 12345, LINE_COUNT - 1, LINE_COUNT}) {
+      long start = myContent.getLineStartOffset(line);
+      assertEquals(byteOffset(line == LINE_COUNT ? myText.lastIndexOf('\n') + 1 : myText.indexOf("line " + line + " ")), start);
+      assertEquals(line, myContent.getLineNumber(start));
+      assertEquals(line, myContent.getLineNumber(start + 3));
+      assertEquals(start, myContent.getLineStart(start + 3));
+    }
+  }
+
+  public void testText() throws IOException {
+    long start = myContent.getLineStartOffset(0);
+    long end = myContent.getNextLineStart(myContent.getNextLineStart(start));
+    assertEquals("line 0 юникод long line long line long line\nline 1 юникод\n", myContent.getText(start, end));
+    assertEquals("last", myContent.getText(myContent.getLength() - 4, myContent.getLength()));
+    assertEquals(myContent.getLength(), myContent.getNextLineStart(myContent.getLength() - 2));
+  }
+
+  public void testFind() throws IOException {
+    EmptyProgressIndicator indicator = new EmptyProgressIndicator();
+
+    long found = myContent.findNext(new StringSearcher("LINE 76543 ЮНИКОД", false, true), 0, indicator);
+    assertEquals(byteOffset(myText.indexOf("line 76543 ")), found);
+
+    assertEquals(byteOffset(myText.length() - 4), myContent.findNext(new StringSearcher("last", true, true), found, indicator));
+    assertEquals(-1, myContent.findNext(new StringSearcher("line 1 ", true, true), found, indicator));
+    assertEquals(-1, myContent.findNext(new StringSearcher("missing", true, true), 0, indicator));
+  }
+
+  public void testSupportedCharsets() {
+    assertTrue(LargeFileContent.isSupported(CharsetToolkit.UTF8_CHARSET));
+    assertTrue(LargeFileContent.isSupported(Charset.forName("ISO-8859-1")));
+    assertFalse(LargeFileContent.isSupported(CharsetToolkit.UTF_16LE_CHARSET));
+  }
+
+  private long byteOffset(int charOffset) {
+    return myText.substring(0, charOffset).getBytes(CharsetToolkit.UTF8_CHARSET).length;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.LightPlatformLangTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class VirtualDirectoryPerformanceTest extends LightPlatformLangTestCase {
+  private static final int FILE_COUNT = 50000;
+
+  private List<String> myNames;
+  private VirtualFile myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    final File dir = FileUtil.createTempDirectory("HugeDir", "");
+    disposeOnTearDown(new Disposable() {
+      @Override
+      public void dispose() {
+        FileUtil.delete(dir);
+      }
+    });
+
+    myNames = new ArrayList<String>(FILE_COUNT);
+    for (int i = 0; i < FILE_COUNT; i++) {
+      String name = "Generated" + i + ".java";
+      assertTrue(new File(dir, name).createNewFile());
+      myNames.add(name);
+    }
+    Collections.shuffle(myNames, new Random(42));
+
+    myDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(dir);
+    assertNotNull(myDir);
+  }
+
+  public void testFindChildInHugeDirectory() throws IOException {
+    PlatformTestUtil.startPerformanceTest("findChild() in a huge directory performance failed", 3000, new ThrowableRunnable() {
+      @Override
+      public void run() {
+        // the first pass loads the children one by one, the next ones find them among the loaded
+        for (int pass = 0; pass < 10; pass++) {
+          for (String name : myNames) {
+            assertNotNull(myDir.findChild(name));
+          }
+          for (int i = 0; i < 1000; i++) {
+            assertNull(myDir.findChild("Missing" + i + ".java"));
+          }
+        }
+      }
+    }).cpuBound().assertTiming();
+
+    assertEquals(FILE_COUNT, myDir.getChildren().length);
+  }
+}
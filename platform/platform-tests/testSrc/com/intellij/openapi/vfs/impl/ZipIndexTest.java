@@ -0,0 +1,188 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.impl;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.util.io.UnsyncByteArrayInputStream;
+import com.intellij.util.io.UnsyncByteArrayOutputStream;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+public class ZipIndexTest extends TestCase {
+  private File myZip;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myZip = FileUtil.createTempFile("test", ".zip");
+
+    ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(myZip));
+    try {
+      zip.putNextEntry(new ZipEntry("dir/"));
+      zip.closeEntry();
+
+      zip.putNextEntry(new ZipEntry("dir/deflated.txt"));
+      zip.write(content("deflated"));
+      zip.closeEntry();
+
+      byte[] stored = content("stored");
+      ZipEntry entry = new ZipEntry("dir/sub/stored.txt");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(stored.length);
+      CRC32 crc = new CRC32();
+      crc.update(stored);
+      entry.setCrc(crc.getValue());
+      zip.putNextEntry(entry);
+      zip.write(stored);
+      zip.closeEntry();
+
+      zip.putNextEntry(new ZipEntry("юникод.txt"));
+      zip.closeEntry();
+    }
+    finally {
+      zip.close();
+    }
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    FileUtil.delete(myZip);
+    super.tearDown();
+  }
+
+  public void testRead() throws IOException {
+    assertIndex(ZipIndex.read(myZip));
+  }
+
+  public void testSaveLoad() throws IOException {
+    UnsyncByteArrayOutputStream bytes = new UnsyncByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    ZipIndex.read(myZip).save(out);
+    out.close();
+
+    DataInputStream in = new DataInputStream(new UnsyncByteArrayInputStream(bytes.toByteArray()));
+    assertIndex(ZipIndex.load(in));
+  }
+
+  public void testNotAnArchive() throws IOException {
+    File file = FileUtil.createTempFile("test", ".zip");
+    try {
+      FileUtil.writeToFile(file, "not a zip file");
+      ZipIndex.read(file);
+      fail();
+    }
+    catch (IOException ignored) { }
+    finally {
+      FileUtil.delete(file);
+    }
+  }
+
+  public void testHandlerRetriesIndexAfterTransientFailure() throws IOException {
+    CountingHandler handler = new CountingHandler(myZip, new IOException("transient"));
+    try {
+      assertTrue(Arrays.equals(content("stored"), handler.contentsToByteArray("dir/sub/stored.txt")));
+      assertTrue(Arrays.equals(content("stored"), handler.contentsToByteArray("dir/sub/stored.txt")));
+      assertEquals(2, handler.myLoads);
+    }
+    finally {
+      handler.dispose();
+    }
+  }
+
+  public void testHandlerFallsBackForUnsupportedArchive() throws IOException {
+    CountingHandler handler = new CountingHandler(myZip, new ZipException("unsupported"));
+    try {
+      assertTrue(Arrays.equals(content("stored"), handler.contentsToByteArray("dir/sub/stored.txt")));
+      assertTrue(Arrays.equals(content("deflated"), handler.contentsToByteArray("dir/deflated.txt")));
+      assertEquals(1, handler.myLoads);
+    }
+    finally {
+      handler.dispose();
+    }
+  }
+
+  public void testDisposedHandlerStillReads() throws IOException {
+    ZipHandler handler = new ZipHandler(myZip.getPath());
+    assertTrue(Arrays.equals(content("deflated"), handler.contentsToByteArray("dir/deflated.txt")));
+    handler.dispose();
+    assertTrue(Arrays.equals(content("stored"), handler.contentsToByteArray("dir/sub/stored.txt")));
+  }
+
+  private static class CountingHandler extends ZipHandler {
+    private final IOException myFirstFailure;
+    private int myLoads = 0;
+
+    private CountingHandler(File zip, IOException firstFailure) {
+      super(zip.getPath());
+      myFirstFailure = firstFailure;
+    }
+
+    @NotNull
+    @Override
+    protected ZipIndex loadIndex(@NotNull File file) throws IOException {
+      if (myLoads++ == 0) throw myFirstFailure;
+      return super.loadIndex(file);
+    }
+  }
+
+  private void assertIndex(ZipIndex index) throws IOException {
+    assertEquals(4, index.size());
+
+    int dir = index.find("dir/");
+    assertTrue(dir >= 0);
+    assertTrue(index.isDirectory(dir));
+    assertEquals(-1, index.find("dir"));
+
+    RandomAccessFile archive = new RandomAccessFile(myZip, "r");
+    try {
+      FileChannel channel = archive.getChannel();
+
+      int deflated = index.find("dir/deflated.txt");
+      assertFalse(index.isDirectory(deflated));
+      assertEquals(content("deflated").length, index.getSize(deflated));
+      assertTrue(Arrays.equals(content("deflated"), index.getContent(channel, deflated)));
+
+      int stored = index.find("dir/sub/stored.txt");
+      assertEquals("dir/sub/stored.txt", index.getName(stored));
+      assertTrue(Arrays.equals(content("stored"), index.getContent(channel, stored)));
+      assertTrue(Arrays.equals(content("deflated"), index.getContent(channel, deflated)));
+
+      int unicode = index.find("юникод.txt");
+      assertTrue(unicode >= 0);
+      assertEquals(0, index.getContent(channel, unicode).length);
+    }
+    finally {
+      archive.close();
+    }
+
+    assertEquals(-1, index.find("missing.txt"));
+  }
+
+  private static byte[] content(String text) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100; i++) builder.append(text).append(' ').append(i).append('\n');
+    return builder.toString().getBytes(CharsetToolkit.UTF8_CHARSET);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.impl.local;
+
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.TimeoutUtil;
+import com.intellij.util.containers.ContainerUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class Nio2FileWatcherTest extends TestCase {
+  private static final long TIMEOUT = 10000;
+
+  private File myDir;
+  private Nio2FileWatcher myWatcher;
+  private final Set<String> myChanges = Collections.synchronizedSet(ContainerUtil.<String>newHashSet());
+  private volatile List<String> myUnwatchable = Collections.emptyList();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("watcher", null);
+    if (SystemInfo.isLinux && SystemInfo.isJavaVersionAtLeast("1.7")) {
+      myWatcher = new Nio2FileWatcher(new Nio2FileWatcher.Listener() {
+        @Override
+        public void processChange(@NotNull String path, @NotNull FileWatcher.WatcherOp op) {
+          myChanges.add(path);
+        }
+
+        @Override
+        public void processUnwatchable(@NotNull List<String> roots) {
+          myUnwatchable = roots;
+        }
+      });
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      if (myWatcher != null) myWatcher.dispose();
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testFlatFileRoot() throws Exception {
+    if (myWatcher == null) {
+      System.err.println("Ignored: inotify-backed JDK 7 watch service required");
+      return;
+    }
+
+    File jar = createFile("lib/a.jar");
+    File sibling = createFile("lib/b.txt");
+    setRoots(Collections.<String>emptyList(), Collections.singletonList(jar.getPath()));
+    assertEmpty(myUnwatchable);
+
+    Set<String> changes = touch(sibling, jar);
+    assertFalse(changes.contains(sibling.getPath()));
+  }
+
+  public void testNestedRootSurvivesRemovalOfOuterRoot() throws Exception {
+    if (myWatcher == null) {
+      System.err.println("Ignored: inotify-backed JDK 7 watch service required");
+      return;
+    }
+
+    File inner = createFile("top/sub/a.txt");
+    File outer = createFile("top/b.txt");
+    String top = outer.getParent(), sub = inner.getParent();
+    setRoots(ContainerUtil.newArrayList(top, sub), Collections.<String>emptyList());
+    touch(outer);
+
+    setRoots(Collections.singletonList(sub), Collections.<String>emptyList());
+    Set<String> changes = touch(outer, inner);
+    assertFalse(changes.contains(outer.getPath()));
+  }
+
+  public void testRecursiveRootAddedOverFlatRoot() throws Exception {
+    if (myWatcher == null) {
+      System.err.println("Ignored: inotify-backed JDK 7 watch service required");
+      return;
+    }
+
+    File deep = createFile("top/sub/deeper/a.txt");
+    String top = new File(myDir, "top").getPath(), sub = new File(myDir, "top/sub").getPath();
+    setRoots(Collections.<String>emptyList(), Collections.singletonList(sub));
+
+    setRoots(Collections.singletonList(top), Collections.singletonList(sub));
+    touch(deep);
+  }
+
+  public void testRootsAddedAndRemoved() throws Exception {
+    if (myWatcher == null) {
+      System.err.println("Ignored: inotify-backed JDK 7 watch service required");
+      return;
+    }
+
+    File first = createFile("first/a.txt");
+    File second = createFile("second/b.txt");
+    setRoots(Collections.singletonList(first.getParent()), Collections.<String>emptyList());
+    touch(first);
+
+    setRoots(ContainerUtil.newArrayList(first.getParent(), second.getParent()), Collections.<String>emptyList());
+    touch(second);
+
+    setRoots(Collections.singletonList(second.getParent()), Collections.<String>emptyList());
+    Set<String> changes = touch(first, second);
+    assertFalse(changes.contains(first.getPath()));
+  }
+
+  public void testStormReportedAsDirtyRoot() throws Exception {
+    if (myWatcher == null) {
+      System.err.println("Ignored: inotify-backed JDK 7 watch service required");
+      return;
+    }
+
+    File sub = createFile("top/sub/a.txt").getParentFile();
+    String top = sub.getParent();
+    setRoots(Collections.singletonList(top), Collections.<String>emptyList());
+
+    myChanges.clear();
+    for (int i = 0; i < 500; i++) {
+      FileUtil.writeToFile(new File(sub, "storm" + i + ".txt"), "");
+    }
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (!myChanges.contains(top) && System.currentTimeMillis() < deadline) {
+      TimeoutUtil.sleep(10);
+    }
+    assertTrue("Storm not reported: " + myChanges, myChanges.contains(top));
+    assertFalse(myChanges.contains(sub.getPath()));
+  }
+
+  private File createFile(String relativePath) throws IOException {
+    File file = new File(myDir, relativePath);
+    FileUtil.writeToFile(file, "");
+    return file;
+  }
+
+  private void setRoots(List<String> recursive, List<String> flat) {
+    myWatcher.setWatchRoots(recursive, flat);
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (myWatcher.isSettingRoots() && System.currentTimeMillis() < deadline) {
+      TimeoutUtil.sleep(10);
+    }
+    assertFalse(myWatcher.isSettingRoots());
+  }
+
+  /**
+   * Modifies the files, waits until the change of the last one is reported and returns all the changes reported by then
+   * (the events of a single watch service arrive in order).
+   */
+  private Set<String> touch(File... files) throws IOException {
+    myChanges.clear();
+    for (File file : files) {
+      FileUtil.writeToFile(file, "changed");
+    }
+    String last = files[files.length - 1].getPath();
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (!myChanges.contains(last) && System.currentTimeMillis() < deadline) {
+      TimeoutUtil.sleep(10);
+    }
+    assertTrue("Change of " + last + " not reported: " + myChanges, myChanges.contains(last));
+    synchronized (myChanges) {
+      return ContainerUtil.newHashSet(myChanges);
+    }
+  }
+
+  private static void assertEmpty(List<String> list) {
+    assertTrue(list.toString(), list.isEmpty());
+  }
+}
@@ -44,6 +44,8 @@ import com.intellij.util.ui.UIUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class PsiDocumentManagerImplTest extends PlatformLangTestCase {
@@ -323,6 +325,42 @@ public class PsiDocumentManagerImplTest extends PlatformLangTestCase {
     assertEquals(2, count.get());
   }
 
+  public void testManyDocumentsCommittedInBackground() {
+    final List<Document> documents = new ArrayList<Document>();
+    List<PsiFile> files = new ArrayList<PsiFile>();
+    for (int i = 0; i < 50; i++) {
+      PsiFile file = getPsiManager().findFile(new LightVirtualFile("foo" + i + ".txt", "text " + i));
+      assertNotNull(file);
+      files.add(file);
+      documents.add(getPsiDocumentManager().getDocument(file));
+    }
+
+    WriteCommandAction.runWriteCommandAction(null, new Runnable() {
+      @Override
+      public void run() {
+        for (Document document : documents) {
+          document.insertString(0, "changed ");
+        }
+      }
+    });
+    assertEquals(documents.size(), getPsiDocumentManager().getUncommittedDocuments().length);
+
+    final Semaphore semaphore = new Semaphore();
+    semaphore.down();
+    getPsiDocumentManager().performWhenAllCommitted(new Runnable() {
+      @Override
+      public void run() {
+        semaphore.up();
+      }
+    });
+    waitAndPump(semaphore, 30000);
+
+    for (int i = 0; i < documents.size(); i++) {
+      assertTrue(getPsiDocumentManager().isCommitted(documents.get(i)));
+      assertEquals("changed text " + i, files.get(i).getText());
+    }
+  }
+
   private static void waitAndPump(Semaphore semaphore, int timeout) {
     final long limit = System.currentTimeMillis() + timeout;
     while (System.currentTimeMillis() < limit) {
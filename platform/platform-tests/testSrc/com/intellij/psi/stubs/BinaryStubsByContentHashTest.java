@@ -0,0 +1,96 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.stubs;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.security.MessageDigest;
+
+public class BinaryStubsByContentHashTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("binaryStubs", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testStubIsFoundByHashAfterReopening() throws Exception {
+    BinaryStubsByContentHash stubs = new BinaryStubsByContentHash(myDir);
+    SerializedStubTree tree = tree("stub");
+    stubs.put(hash("a"), tree);
+    assertEquals(tree, stubs.get(hash("a")));
+    assertNull(stubs.get(hash("b")));
+    stubs.flush();
+    stubs.close();
+
+    stubs = new BinaryStubsByContentHash(myDir);
+    try {
+      assertEquals(tree, stubs.get(hash("a")));
+    }
+    finally {
+      stubs.close();
+    }
+  }
+
+  public void testClear() throws Exception {
+    BinaryStubsByContentHash stubs = new BinaryStubsByContentHash(myDir);
+    try {
+      stubs.put(hash("a"), tree("stub"));
+      stubs.clear();
+      assertNull(stubs.get(hash("a")));
+
+      stubs.put(hash("a"), tree("other stub"));
+      assertEquals(tree("other stub"), stubs.get(hash("a")));
+    }
+    finally {
+      stubs.close();
+    }
+  }
+
+  public void testDroppedWhenTooLarge() throws Exception {
+    BinaryStubsByContentHash stubs = new BinaryStubsByContentHash(myDir, 1);
+    try {
+      stubs.put(hash("a"), tree("stub"));
+      stubs.flush();
+      assertNull(stubs.get(hash("a")));
+
+      stubs.put(hash("a"), tree("stub"));
+      assertEquals(tree("stub"), stubs.get(hash("a")));
+    }
+    finally {
+      stubs.close();
+    }
+  }
+
+  private static byte[] hash(String text) throws Exception {
+    return MessageDigest.getInstance("SHA-1").digest(text.getBytes(CharsetToolkit.UTF8_CHARSET));
+  }
+
+  private static SerializedStubTree tree(String text) {
+    byte[] bytes = text.getBytes(CharsetToolkit.UTF8_CHARSET);
+    return new SerializedStubTree(bytes, bytes.length, null, bytes.length, -1);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2000-2014 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.util.CachedValueProfiler.ProviderStatistics;
+
+import java.util.List;
+
+public class CachedValueProfilerTest extends LightPlatformTestCase {
+  @Override
+  protected void tearDown() throws Exception {
+    CachedValueProfiler.setEnabled(false);
+    CachedValueProfiler.reset();
+    super.tearDown();
+  }
+
+  public void testComputationsHitsAndCauses() {
+    final SimpleModificationTracker tracker = new SimpleModificationTracker();
+    CachedValueProvider<String> provider = new CachedValueProvider<String>() {
+      @Override
+      public Result<String> compute() {
+        return Result.create("value", tracker);
+      }
+    };
+    CachedValueImpl<String> value = new CachedValueImpl<String>(provider);
+
+    value.getValue();
+    assertTrue(CachedValueProfiler.getStatistics().isEmpty());
+
+    CachedValueProfiler.setEnabled(true);
+    value.getValue();
+    value.getValue();
+    tracker.incModificationCount();
+    value.getValue();
+    value.clear();
+    value.getValue();
+    CachedValueProfiler.setEnabled(false);
+    value.getValue();
+
+    List<ProviderStatistics> statistics = CachedValueProfiler.getStatistics();
+    assertEquals(1, statistics.size());
+    ProviderStatistics providerStatistics = statistics.get(0);
+    assertEquals(provider.getClass().getName(), providerStatistics.getProviderClass());
+    assertEquals(2, providerStatistics.getHitCount());
+    assertEquals(2, providerStatistics.getComputationCount());
+    assertEquals(0.5, providerStatistics.getHitRatio(), 0.001);
+
+    List<Pair<String, Integer>> causes = providerStatistics.getInvalidationCauses();
+    assertEquals(2, causes.size());
+    assertTrue(causes.contains(Pair.create(SimpleModificationTracker.class.getName(), 1)));
+    assertTrue(causes.contains(Pair.create(CachedValueProfiler.NOT_COMPUTED, 1)));
+  }
+}
@@ -15,7 +15,7 @@
  */
 package org.jetbrains.plugins.groovy.editor;
 
-import com.intellij.lang.ImportOptimizer;
+import com.intellij.lang.ConcurrentImportOptimizer;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
@@ -39,7 +39,7 @@ import java.util.*;
 /**
  * @author ven
  */
-public class GroovyImportOptimizer implements ImportOptimizer {
+public class GroovyImportOptimizer implements ConcurrentImportOptimizer {
 
   public static Comparator<GrImportStatement> getComparator(final GroovyCodeStyleSettings settings) {
     return new Comparator<GrImportStatement>() {
@@ -15,9 +15,12 @@
  */
 package org.jetbrains.plugins.groovy.lang.parser
 
+import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiFileFactory
 import com.intellij.psi.impl.DebugUtil
 import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase
+import org.jetbrains.plugins.groovy.GroovyFileType
 import org.jetbrains.plugins.groovy.util.TestUtils
 
 /**
@@ -200,5 +203,24 @@ class a {
 ''', '\b'
   }
 
-
+  public void testFullReparseOfBigFileMatchesFreshParse() {
+    // the lexer keeps a stack of braces and string kinds, which isn't seen in its state
+    def text = new StringBuilder()
+    for (i in 0..<3000) {
+      text.append('def x').append(i).append(' = "a${b').append(i).append('}c" + { "${it}" }\n')
+    }
+    myFixture.configureByText("a.groovy", text.toString())
+    def document = myFixture.editor.document
+    def edits = [['"a${b1000}c"', '"a${b1000 + "${c}"}c"'], ['def x2000 = ', 'def x2000 = "${ '], ['{ "${it}" }\ndef x2500', '{ "${it}" }}\ndef x2500']]
+    for (edit in edits) {
+      WriteCommandAction.runWriteCommandAction(project) {
+        int offset = document.text.indexOf(edit[0])
+        assert offset >= 0
+        document.replaceString(offset, offset + edit[0].length(), edit[1])
+        PsiDocumentManager.getInstance(project).commitDocument(document)
+      }
+      def fresh = PsiFileFactory.getInstance(project).createFileFromText("a.groovy", GroovyFileType.GROOVY_FILE_TYPE, document.text)
+      assertEquals(DebugUtil.psiToString(fresh, false), DebugUtil.psiToString(myFixture.file, false))
+    }
+  }
 }
@@ -17,7 +17,7 @@ package org.jetbrains.plugins.javaFX.fxml.codeInsight;
 
 import com.intellij.injected.editor.VirtualFileWindow;
 import com.intellij.lang.ASTNode;
-import com.intellij.lang.ImportOptimizer;
+import com.intellij.lang.ConcurrentImportOptimizer;
 import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootManager;
@@ -46,7 +46,7 @@ import java.util.*;
  * User: anna
  * Date: 2/22/13
  */
-public class JavaFxImportsOptimizer implements ImportOptimizer {
+public class JavaFxImportsOptimizer implements ConcurrentImportOptimizer {
   @Override
   public boolean supports(PsiFile file) {
     return JavaFxFileTypeFactory.isFxml(file);
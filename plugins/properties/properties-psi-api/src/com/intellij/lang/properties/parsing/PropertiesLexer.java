@@ -16,13 +16,14 @@
 package com.intellij.lang.properties.parsing;
 
 import com.intellij.lexer.FlexAdapter;
+import com.intellij.lexer.RestartableLexer;
 
 import java.io.Reader;
 
 /**
  * @author max
  */
-public class PropertiesLexer extends FlexAdapter {
+public class PropertiesLexer extends FlexAdapter implements RestartableLexer {
   public PropertiesLexer() {
     super(new _PropertiesLexer((Reader)null));
   }
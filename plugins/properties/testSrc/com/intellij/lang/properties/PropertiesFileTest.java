@@ -20,6 +20,10 @@ import com.intellij.lang.properties.psi.PropertiesFile;
 import com.intellij.lang.properties.psi.Property;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.DebugUtil;
 import com.intellij.testFramework.LightPlatformTestCase;
 import com.intellij.testFramework.PlatformTestCase;
 import com.intellij.util.IncorrectOperationException;
@@ -179,4 +183,29 @@ public class PropertiesFileTest extends LightPlatformTestCase {
     assertEquals(" e=f", properties.get(2).getUnescapedKey());
     assertEquals("\u1234\\uxyzt", properties.get(3).getUnescapedKey());
   }
+
+  public void testIncrementalRelexingOfBigFile() throws IncorrectOperationException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      text.append("key").append(i).append("=value ").append(i).append(i % 100 == 0 ? " \\\n  continued" : "").append("\n");
+    }
+    PsiFile file = createFile("big.properties", text.toString());
+    final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+    assertNotNull(document);
+
+    String[][] edits = {{"key5000=", "key5000=x"}, {"value 6000\n", "value 6000 \\\n"}, {"\nkey7000", "key7000"},
+      {"continued\nkey101=", "continued\nnew=1\nkey101="}, {"key0=", "#key0="}};
+    for (final String[] edit : edits) {
+      WriteCommandAction.runWriteCommandAction(null, new Runnable() {
+        public void run() {
+          int offset = document.getText().indexOf(edit[0]);
+          assertTrue(edit[0], offset >= 0);
+          document.replaceString(offset, offset + edit[0].length(), edit[1]);
+          PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+        }
+      });
+      assertEquals(DebugUtil.psiToString(createLightFile("big.properties", document.getText()), false),
+                   DebugUtil.psiToString(file, false));
+    }
+  }
 }
@@ -21,7 +21,7 @@ import com.intellij.codeInspection.InspectionManager;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.codeInspection.QuickFix;
-import com.intellij.lang.ImportOptimizer;
+import com.intellij.lang.ConcurrentImportOptimizer;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Condition;
 import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
@@ -41,7 +41,7 @@ import java.util.Map;
  * @author Dmitry Avdeev
  *         Date: 11/7/11
  */
-public class XmlImportOptimizer implements ImportOptimizer {
+public class XmlImportOptimizer implements ConcurrentImportOptimizer {
   
   private final XmlUnusedNamespaceInspection myInspection = new XmlUnusedNamespaceInspection();
   private final Condition<ProblemDescriptor> myCondition = new Condition<ProblemDescriptor>() {